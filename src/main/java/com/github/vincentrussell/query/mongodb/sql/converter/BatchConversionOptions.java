@@ -0,0 +1,129 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import static org.apache.commons.lang.Validate.isTrue;
+
+/**
+ * Options for {@link QueryConverter#convertAll(Iterable, BatchConversionOptions)}.
+ */
+public class BatchConversionOptions {
+    private final Map<String, FieldType> fieldNameToFieldTypeMapping;
+    private final FieldType defaultFieldType;
+    private final ExecutorService executorService;
+    private final int parallelism;
+    private final boolean writeShellText;
+    private final QueryConverterCache queryConverterCache;
+
+    private BatchConversionOptions(Builder builder) {
+        this.fieldNameToFieldTypeMapping = builder.fieldNameToFieldTypeMapping;
+        this.defaultFieldType = builder.defaultFieldType;
+        this.executorService = builder.executorService;
+        this.parallelism = builder.parallelism;
+        this.writeShellText = builder.writeShellText;
+        this.queryConverterCache = builder.queryConverterCache;
+    }
+
+    public Map<String, FieldType> getFieldNameToFieldTypeMapping() {
+        return fieldNameToFieldTypeMapping;
+    }
+
+    public FieldType getDefaultFieldType() {
+        return defaultFieldType;
+    }
+
+    /**
+     * @return the executor the statements are converted on or null if a
+     * {@link java.util.concurrent.ForkJoinPool} should be created for each batch
+     */
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public boolean isWriteShellText() {
+        return writeShellText;
+    }
+
+    public QueryConverterCache getQueryConverterCache() {
+        return queryConverterCache;
+    }
+
+    public static class Builder {
+        private Map<String, FieldType> fieldNameToFieldTypeMapping = Collections.emptyMap();
+        private FieldType defaultFieldType = FieldType.UNKNOWN;
+        private ExecutorService executorService;
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+        private boolean writeShellText = false;
+        private QueryConverterCache queryConverterCache;
+
+        private Builder() {
+        }
+
+        public Builder fieldNameToFieldTypeMapping(Map<String, FieldType> fieldNameToFieldTypeMapping) {
+            this.fieldNameToFieldTypeMapping = fieldNameToFieldTypeMapping != null
+                    ? fieldNameToFieldTypeMapping : Collections.<String, FieldType>emptyMap();
+            return this;
+        }
+
+        public Builder defaultFieldType(FieldType defaultFieldType) {
+            this.defaultFieldType = defaultFieldType != null ? defaultFieldType : FieldType.UNKNOWN;
+            return this;
+        }
+
+        /**
+         * Convert the statements on an executor owned by the caller.  The executor is not shut down after the batch.
+         * @param executorService the executor
+         * @return this builder
+         */
+        public Builder executorService(ExecutorService executorService) {
+            this.executorService = executorService;
+            return this;
+        }
+
+        /**
+         * The parallelism of the {@link java.util.concurrent.ForkJoinPool} created for each batch when no
+         * executor is set.  Defaults to the number of available processors.
+         * @param parallelism the parallelism
+         * @return this builder
+         */
+        public Builder parallelism(int parallelism) {
+            isTrue(parallelism > 0, "parallelism must be greater than 0");
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Also render the mongo shell text (see {@link QueryConverter#write(java.io.OutputStream)}) for each statement
+         * @param writeShellText true to render the shell text
+         * @return this builder
+         */
+        public Builder writeShellText(boolean writeShellText) {
+            this.writeShellText = writeShellText;
+            return this;
+        }
+
+        /**
+         * Look up the statements in a {@link QueryConverterCache} instead of always converting them
+         * @param queryConverterCache the cache
+         * @return this builder
+         */
+        public Builder queryConverterCache(QueryConverterCache queryConverterCache) {
+            this.queryConverterCache = queryConverterCache;
+            return this;
+        }
+
+        public BatchConversionOptions build() {
+            return new BatchConversionOptions(this);
+        }
+
+        public static Builder create() {
+            return new Builder();
+        }
+    }
+}
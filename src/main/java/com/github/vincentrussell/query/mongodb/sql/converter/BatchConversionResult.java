@@ -0,0 +1,69 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+/**
+ * The result of converting one statement of a batch with
+ * {@link QueryConverter#convertAll(Iterable, BatchConversionOptions)} or of a script with {@link SqlScriptIterator}.
+ * Holds either the converted query or the {@link ParseException} that the statement failed with.
+ */
+public class BatchConversionResult {
+    private final int index;
+    private final String sql;
+    private final QueryConverter queryConverter;
+    private final String shellText;
+    private final ParseException parseException;
+
+    BatchConversionResult(int index, String sql, QueryConverter queryConverter, String shellText,
+                          ParseException parseException) {
+        this.index = index;
+        this.sql = sql;
+        this.queryConverter = queryConverter;
+        this.shellText = shellText;
+        this.parseException = parseException;
+    }
+
+    /**
+     * @return the position of the statement in the batch or script
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the sql statement or null if a statement of a script could not be parsed
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    public boolean isSuccess() {
+        return parseException == null;
+    }
+
+    /**
+     * @return the converter or null if the statement could not be converted
+     */
+    public QueryConverter getQueryConverter() {
+        return queryConverter;
+    }
+
+    /**
+     * @return the converted query or null if the statement could not be converted
+     */
+    public MongoDBQueryHolder getMongoQuery() {
+        return queryConverter != null ? queryConverter.getMongoQuery() : null;
+    }
+
+    /**
+     * @return the mongo shell text or null if it was not requested or the statement could not be converted
+     */
+    public String getShellText() {
+        return shellText;
+    }
+
+    /**
+     * @return the exception the statement failed with or null if it was converted
+     */
+    public ParseException getParseException() {
+        return parseException;
+    }
+}
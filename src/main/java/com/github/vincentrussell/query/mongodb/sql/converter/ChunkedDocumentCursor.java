@@ -0,0 +1,133 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import com.mongodb.MongoInterruptedException;
+import com.mongodb.ServerAddress;
+import com.mongodb.ServerCursor;
+import com.mongodb.client.MongoCursor;
+import org.bson.Document;
+import org.calrissian.mango.collect.AbstractCloseableIterator;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * The results of the queries of a split <code>$in</code> list one after the other.  The next queries are started on
+ * the executor while the documents of a query are read, but only a limited number of them, because the server closes
+ * cursors that are not read for a while.  A document that more than one query returns, because it has an array field,
+ * is only returned once, so the _ids of the returned documents are kept until the cursor is closed.
+ */
+final class ChunkedDocumentCursor extends AbstractCloseableIterator<Document> implements MongoCursor<Document> {
+
+    private final List<Callable<MongoCursor<Document>>> queries;
+    private final Deque<Future<MongoCursor<Document>>> cursors = new ArrayDeque<>();
+    private final Set<Object> returnedIds = new HashSet<>();
+    private final boolean removeId;
+    private final ExecutorService executorService;
+    private final int maximumAhead;
+    private MongoCursor<Document> current;
+    private int next;
+
+    /**
+     * @param queries opens the cursor of each query, the documents must have an _id
+     * @param removeId true to remove the _id from the returned documents
+     * @param executorService runs the queries, it is not shut down by this cursor
+     * @param maximumAhead the maximum number of queries that are started before their documents are read
+     */
+    ChunkedDocumentCursor(List<Callable<MongoCursor<Document>>> queries, boolean removeId,
+                          ExecutorService executorService, int maximumAhead) {
+        this.queries = queries;
+        this.removeId = removeId;
+        this.executorService = executorService;
+        this.maximumAhead = Math.max(1, maximumAhead);
+        submitAhead();
+    }
+
+    private void submitAhead() {
+        while (cursors.size() < maximumAhead && next < queries.size()) {
+            cursors.add(executorService.submit(queries.get(next++)));
+        }
+    }
+
+    @Override
+    protected Document computeNext() {
+        while (true) {
+            if (current != null && current.hasNext()) {
+                Document document = current.next();
+                Object id = document.get("_id");
+                if (id != null && !returnedIds.add(id)) {
+                    continue;
+                }
+                if (removeId) {
+                    document.remove("_id");
+                }
+                return document;
+            }
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+            if (cursors.isEmpty()) {
+                return endOfData();
+            }
+            current = get(cursors.poll());
+            submitAhead();
+        }
+    }
+
+    private static MongoCursor<Document> get(Future<MongoCursor<Document>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MongoInterruptedException("interrupted while waiting for a query", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    @Override
+    public Document tryNext() {
+        return hasNext() ? next() : null;
+    }
+
+    @Override
+    public ServerCursor getServerCursor() {
+        return current != null ? current.getServerCursor() : null;
+    }
+
+    @Override
+    public ServerAddress getServerAddress() {
+        return current != null ? current.getServerAddress() : null;
+    }
+
+    @Override
+    public void close() {
+        if (current != null) {
+            current.close();
+            current = null;
+        }
+        //queries that have not started are cancelled, the cursors of the others are closed once they are open
+        next = queries.size();
+        for (Future<MongoCursor<Document>> future = cursors.poll(); future != null; future = cursors.poll()) {
+            if (!future.cancel(false)) {
+                try {
+                    future.get().close();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    //the query failed, so there is nothing to close
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import org.bson.Document;
+
+/**
+ * Source of sample documents for {@link SchemaInference}.  {@link MongoDocumentSampler} samples a mongo collection,
+ * tests and other callers can supply documents from anywhere else.
+ */
+public interface DocumentSampler {
+
+    /**
+     * @param collectionName the name of the collection
+     * @param sampleSize the maximum number of documents to return
+     * @return up to sampleSize documents of the collection
+     */
+    Iterable<Document> sample(String collectionName, int sampleSize);
+}
@@ -0,0 +1,395 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import com.github.vincentrussell.query.mongodb.sql.converter.holder.TablesHolder;
+import com.google.common.collect.ImmutableSet;
+import net.sf.jsqlparser.expression.DoubleValue;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.StringValue;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.relational.ComparisonOperator;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThan;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.IsNullExpression;
+import net.sf.jsqlparser.expression.operators.relational.LikeExpression;
+import net.sf.jsqlparser.expression.operators.relational.MinorThan;
+import net.sf.jsqlparser.expression.operators.relational.MinorThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.NotEqualsTo;
+import net.sf.jsqlparser.parser.CCJSqlParserConstants;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.statement.select.AllColumns;
+import net.sf.jsqlparser.statement.select.OrderByElement;
+import net.sf.jsqlparser.statement.select.SelectExpressionItem;
+import net.sf.jsqlparser.statement.select.SelectItem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Recognizer for the most common form of query,
+ * <code>SELECT a, b FROM t WHERE x = 'v' AND y &gt; 3 ORDER BY z LIMIT n OFFSET m</code>, that builds the
+ * {@link SQLCommandInfoHolder} without running the generic JSqlParser grammar.  The where clause may only contain
+ * columns compared with numbers or strings, <code>IS [NOT] NULL</code> and <code>[NOT] LIKE</code>, joined with
+ * <code>AND</code>.  Anything else, including comments, aliases, functions and keywords used as names, is not
+ * recognized and is left to the full parser.
+ */
+final class FastPathSelectParser {
+
+    private static final Set<String> KEYWORDS = getKeywords();
+    //keywords that the full parser also accepts as column names
+    private static final Set<String> KEYWORD_COLUMN_NAMES = ImmutableSet.of("value", "type", "key", "comment", "index");
+    private static final int MAX_LONG_DIGITS = 18;
+
+    private final String sql;
+    private final int length;
+    private int position;
+
+    private FastPathSelectParser(String sql) {
+        this.sql = sql;
+        this.length = sql.length();
+    }
+
+    /**
+     * Recognize a simple select statement
+     * @param sql the sql statement
+     * @return the holder for the statement, or null when the statement has to be parsed by the full parser
+     */
+    static SQLCommandInfoHolder parse(String sql) {
+        return new FastPathSelectParser(sql).parseSelect();
+    }
+
+    private SQLCommandInfoHolder parseSelect() {
+        if (!keyword("select")) {
+            return null;
+        }
+        List<SelectItem> selectItems = new ArrayList<>();
+        if (symbol("*")) {
+            selectItems.add(new AllColumns());
+        } else {
+            do {
+                Column column = column();
+                if (column == null) {
+                    return null;
+                }
+                selectItems.add(new SelectExpressionItem(column));
+            } while (symbol(","));
+        }
+        if (!keyword("from")) {
+            return null;
+        }
+        String table = identifier();
+        if (table == null || peek() == '.') {
+            return null;
+        }
+        Expression whereClause = null;
+        if (keyword("where")) {
+            do {
+                Expression condition = condition();
+                if (condition == null) {
+                    return null;
+                }
+                whereClause = whereClause == null ? condition : new AndExpression(whereClause, condition);
+            } while (keyword("and"));
+        }
+        List<OrderByElement> orderByElements = null;
+        if (keyword("order")) {
+            if (!keyword("by")) {
+                return null;
+            }
+            orderByElements = new ArrayList<>();
+            do {
+                OrderByElement orderByElement = orderByElement();
+                if (orderByElement == null) {
+                    return null;
+                }
+                orderByElements.add(orderByElement);
+            } while (symbol(","));
+        }
+        long limit = -1;
+        long offset = -1;
+        if (keyword("limit")) {
+            limit = longValue();
+            if (limit < 0) {
+                return null;
+            }
+            if (keyword("offset")) {
+                offset = longValue();
+                if (offset < 0) {
+                    return null;
+                }
+            }
+        }
+        symbol(";");
+        skipWhitespace();
+        if (position != length) {
+            return null;
+        }
+        TablesHolder tablesHolder = new TablesHolder();
+        tablesHolder.addTable(table, null);
+        return new SQLCommandInfoHolder(SQLCommandType.SELECT, whereClause, false, false, tablesHolder,
+                limit, offset, selectItems, null, new ArrayList<String>(), orderByElements,
+                new HashMap<String, String>());
+    }
+
+    private Expression condition() {
+        Column column = column();
+        if (column == null) {
+            return null;
+        }
+        if (keyword("is")) {
+            boolean not = keyword("not");
+            if (!keyword("null")) {
+                return null;
+            }
+            IsNullExpression isNullExpression = new IsNullExpression();
+            isNullExpression.setLeftExpression(column);
+            isNullExpression.setNot(not);
+            return isNullExpression;
+        }
+        boolean not = keyword("not");
+        if (keyword("like")) {
+            Expression pattern = stringValue();
+            if (pattern == null) {
+                return null;
+            }
+            LikeExpression likeExpression = new LikeExpression();
+            likeExpression.setLeftExpression(column);
+            likeExpression.setRightExpression(pattern);
+            if (not) {
+                likeExpression.setNot();
+            }
+            return likeExpression;
+        } else if (not) {
+            return null;
+        }
+        ComparisonOperator comparisonOperator = comparisonOperator();
+        if (comparisonOperator == null) {
+            return null;
+        }
+        Expression value = literal();
+        if (value == null) {
+            return null;
+        }
+        comparisonOperator.setLeftExpression(column);
+        comparisonOperator.setRightExpression(value);
+        return comparisonOperator;
+    }
+
+    private ComparisonOperator comparisonOperator() {
+        if (symbol("=")) {
+            return new EqualsTo();
+        } else if (symbol("!=")) {
+            return new NotEqualsTo("!=");
+        } else if (symbol("<>")) {
+            return new NotEqualsTo("<>");
+        } else if (symbol(">=")) {
+            return new GreaterThanEquals();
+        } else if (symbol(">")) {
+            return new GreaterThan();
+        } else if (symbol("<=")) {
+            return new MinorThanEquals();
+        } else if (symbol("<")) {
+            return new MinorThan();
+        }
+        return null;
+    }
+
+    private OrderByElement orderByElement() {
+        Column column = column();
+        if (column == null) {
+            return null;
+        }
+        OrderByElement orderByElement = new OrderByElement();
+        orderByElement.setExpression(column);
+        if (keyword("asc")) {
+            orderByElement.setAscDescPresent(true);
+        } else if (keyword("desc")) {
+            orderByElement.setAsc(false);
+            orderByElement.setAscDescPresent(true);
+        }
+        return orderByElement;
+    }
+
+    private Column column() {
+        List<String> nameParts = new ArrayList<>();
+        do {
+            String namePart = identifier();
+            if (namePart == null) {
+                return null;
+            }
+            nameParts.add(namePart);
+        } while (nextIs('.') && isIdentifierStart(peek()));
+        if (sql.charAt(position - 1) == '.') {
+            return null;
+        }
+        return new Column(nameParts);
+    }
+
+    private Expression literal() {
+        skipWhitespace();
+        char c = peek();
+        if (c == '\'') {
+            return stringValue();
+        } else if (c == '"') {
+            String quoted = quoted('"');
+            //a double quoted string is a quoted column name for JSqlParser
+            return quoted != null ? new Column(quoted) : null;
+        }
+        int start = position;
+        int digits = digits();
+        if (digits == 0) {
+            return null;
+        }
+        if (peek() == '.') {
+            position++;
+            if (digits() == 0 || !endOfWord()) {
+                return null;
+            }
+            return new DoubleValue(sql.substring(start, position));
+        }
+        if (digits > MAX_LONG_DIGITS || !endOfWord()) {
+            return null;
+        }
+        return new LongValue(sql.substring(start, position));
+    }
+
+    //a limit or offset, values above Integer.MAX_VALUE are left to the full parser, which rejects a limit like that
+    private long longValue() {
+        skipWhitespace();
+        int start = position;
+        int digits = digits();
+        if (digits == 0 || digits > MAX_LONG_DIGITS || !endOfWord()) {
+            return -1;
+        }
+        long value = Long.parseLong(sql.substring(start, position));
+        return value <= Integer.MAX_VALUE ? value : -1;
+    }
+
+    private Expression stringValue() {
+        skipWhitespace();
+        String quoted = quoted('\'');
+        return quoted != null ? new StringValue(quoted) : null;
+    }
+
+    //a quoted string, including the quotes, without escapes or line breaks
+    private String quoted(char quote) {
+        if (peek() != quote) {
+            return null;
+        }
+        int start = position++;
+        while (position < length) {
+            char c = sql.charAt(position++);
+            if (c == quote) {
+                if (peek() == quote) {
+                    return null;
+                }
+                return sql.substring(start, position);
+            } else if (c == '\\' || c == '\n' || c == '\r') {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private int digits() {
+        int start = position;
+        while (position < length && isDigit(sql.charAt(position))) {
+            position++;
+        }
+        return position - start;
+    }
+
+    private String identifier() {
+        skipWhitespace();
+        int start = position;
+        if (position >= length || !isIdentifierStart(sql.charAt(position))) {
+            return null;
+        }
+        while (position < length && isIdentifierPart(sql.charAt(position))) {
+            position++;
+        }
+        String identifier = sql.substring(start, position);
+        String lowerCase = identifier.toLowerCase(Locale.ENGLISH);
+        if (KEYWORDS.contains(lowerCase) && !KEYWORD_COLUMN_NAMES.contains(lowerCase)
+                || "true".equals(lowerCase) || "false".equals(lowerCase)) {
+            return null;
+        }
+        return identifier;
+    }
+
+    private boolean keyword(String keyword) {
+        skipWhitespace();
+        int end = position + keyword.length();
+        if (end > length || !sql.regionMatches(true, position, keyword, 0, keyword.length())
+                || end < length && isIdentifierPart(sql.charAt(end))) {
+            return false;
+        }
+        position = end;
+        return true;
+    }
+
+    private boolean symbol(String symbol) {
+        skipWhitespace();
+        if (!sql.startsWith(symbol, position)) {
+            return false;
+        }
+        position += symbol.length();
+        return true;
+    }
+
+    private boolean nextIs(char c) {
+        if (peek() != c) {
+            return false;
+        }
+        position++;
+        return true;
+    }
+
+    private char peek() {
+        return position < length ? sql.charAt(position) : 0;
+    }
+
+    private boolean endOfWord() {
+        return position >= length || !isIdentifierPart(sql.charAt(position)) && sql.charAt(position) != '.';
+    }
+
+    private void skipWhitespace() {
+        while (position < length && isWhitespace(sql.charAt(position))) {
+            position++;
+        }
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return isIdentifierStart(c) || isDigit(c);
+    }
+
+    private static Set<String> getKeywords() {
+        ImmutableSet.Builder<String> keywords = ImmutableSet.builder();
+        //keywords that are defined with a pattern and so do not have their own token image
+        keywords.add("select", "sel", "date", "time", "timestamp", "current_date", "current_time",
+                "current_timestamp", "localtime", "localtimestamp");
+        for (String tokenImage : Arrays.asList(CCJSqlParserConstants.tokenImage)) {
+            if (tokenImage.matches("\"[A-Za-z_]+\"")) {
+                keywords.add(tokenImage.substring(1, tokenImage.length() - 1).toLowerCase(Locale.ENGLISH));
+            }
+        }
+        return keywords.build();
+    }
+}
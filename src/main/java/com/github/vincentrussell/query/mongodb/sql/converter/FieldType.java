@@ -1,5 +1,11 @@
 package com.github.vincentrussell.query.mongodb.sql.converter;
 
+/**
+ * The type that literals compared to a field are converted to.  NUMBER converts to a Long or a Double, depending on
+ * the literal.  INT32, INT64, DOUBLE and DECIMAL128 convert to exactly that bson type, and fail when the literal does
+ * not fit it.  OBJECTID converts a hex string to an ObjectId, and UUID converts to a {@link java.util.UUID}, which is
+ * written with the uuid representation of the codec registry in use.
+ */
 public enum FieldType {
-    STRING, NUMBER, DATE, UNKNOWN, BOOLEAN;
+    STRING, NUMBER, DATE, UNKNOWN, BOOLEAN, INT32, INT64, DOUBLE, DECIMAL128, OBJECTID, UUID;
 }
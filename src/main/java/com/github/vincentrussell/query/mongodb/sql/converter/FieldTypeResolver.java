@@ -0,0 +1,185 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+/**
+ * Finds the {@link FieldType} of a field.  A resolver compiled with {@link #compile(Map)} also understands rules with
+ * <code>*</code> segments, each matching exactly one segment of a dotted field name, like <code>*.createdAt</code>
+ * or <code>metrics.*</code>.  Fields without a wildcard are looked up in a hash map, the wildcard rules are kept in a
+ * trie of path segments that is walked without allocating, in time proportional to the length of the field name.
+ * When more than one rule matches, the rule with a literal segment at the first differing position wins.
+ *
+ * A compiled resolver is immutable and can be shared between threads and conversions, so large mappings should be
+ * compiled once and passed to {@link QueryConverter#QueryConverter(String, FieldTypeResolver, FieldType)}.
+ */
+public final class FieldTypeResolver {
+
+    public static final String WILDCARD = "*";
+
+    private static final FieldTypeResolver EMPTY = new FieldTypeResolver(Collections.<String, FieldType>emptyMap(), null);
+
+    private final Map<String, FieldType> exactMatches;
+    private final Node wildcardRules;
+
+    private FieldTypeResolver(Map<String, FieldType> exactMatches, Node wildcardRules) {
+        this.exactMatches = exactMatches;
+        this.wildcardRules = wildcardRules;
+    }
+
+    /**
+     * @return a resolver without any rules
+     */
+    public static FieldTypeResolver empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Look up field names in a plain mapping, without wildcard rules and without copying it, so that changes to the
+     * mapping are seen by the resolver.
+     * @param fieldNameToFieldTypeMapping mapping for each field, may be null
+     * @return the resolver
+     */
+    public static FieldTypeResolver of(Map<String, FieldType> fieldNameToFieldTypeMapping) {
+        if (fieldNameToFieldTypeMapping == null) {
+            return EMPTY;
+        }
+        return new FieldTypeResolver(fieldNameToFieldTypeMapping, null);
+    }
+
+    /**
+     * Compile a mapping whose keys may contain <code>*</code> segments.
+     * @param fieldNameToFieldTypeMapping mapping for each field or field pattern
+     * @return the compiled resolver
+     */
+    public static FieldTypeResolver compile(Map<String, FieldType> fieldNameToFieldTypeMapping) {
+        notNull(fieldNameToFieldTypeMapping, "fieldNameToFieldTypeMapping is null");
+        Map<String, FieldType> exactMatches = new HashMap<>();
+        NodeBuilder wildcardRules = null;
+        for (Map.Entry<String, FieldType> entry : fieldNameToFieldTypeMapping.entrySet()) {
+            String[] segments = entry.getKey().split("\\.", -1);
+            if (!containsWildcard(segments)) {
+                exactMatches.put(entry.getKey(), entry.getValue());
+                continue;
+            }
+            if (wildcardRules == null) {
+                wildcardRules = new NodeBuilder();
+            }
+            NodeBuilder node = wildcardRules;
+            for (String segment : segments) {
+                node = node.child(segment);
+            }
+            node.fieldType = entry.getValue();
+        }
+        return new FieldTypeResolver(exactMatches, wildcardRules != null ? wildcardRules.build() : null);
+    }
+
+    /**
+     * @param fieldName the dotted field name
+     * @return the field type of the field, or null when no rule matches
+     */
+    public FieldType resolve(String fieldName) {
+        FieldType fieldType = exactMatches.get(fieldName);
+        if (fieldType != null || wildcardRules == null || fieldName == null) {
+            return fieldType;
+        }
+        return wildcardRules.find(fieldName, 0);
+    }
+
+    private static boolean containsWildcard(String[] segments) {
+        for (String segment : segments) {
+            if (WILDCARD.equals(segment)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class NodeBuilder {
+        private final Map<String, NodeBuilder> children = new LinkedHashMap<>();
+        private NodeBuilder wildcard;
+        private FieldType fieldType;
+
+        private NodeBuilder child(String segment) {
+            if (WILDCARD.equals(segment)) {
+                if (wildcard == null) {
+                    wildcard = new NodeBuilder();
+                }
+                return wildcard;
+            }
+            NodeBuilder child = children.get(segment);
+            if (child == null) {
+                child = new NodeBuilder();
+                children.put(segment, child);
+            }
+            return child;
+        }
+
+        private Node build() {
+            //open addressing table with at least one free slot, so that unsuccessful probes end
+            int capacity = Integer.highestOneBit(children.size() * 2 + 1) << 1;
+            String[] segments = new String[capacity];
+            Node[] nodes = new Node[capacity];
+            for (Map.Entry<String, NodeBuilder> entry : children.entrySet()) {
+                int slot = entry.getKey().hashCode() & (capacity - 1);
+                while (segments[slot] != null) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                segments[slot] = entry.getKey();
+                nodes[slot] = entry.getValue().build();
+            }
+            return new Node(segments, nodes, wildcard != null ? wildcard.build() : null, fieldType);
+        }
+    }
+
+    private static final class Node {
+        private final String[] segments;
+        private final Node[] children;
+        private final Node wildcard;
+        private final FieldType fieldType;
+
+        private Node(String[] segments, Node[] children, Node wildcard, FieldType fieldType) {
+            this.segments = segments;
+            this.children = children;
+            this.wildcard = wildcard;
+            this.fieldType = fieldType;
+        }
+
+        //the field type of the rest of the field name from start, preferring literal segments over wildcards
+        private FieldType find(String fieldName, int start) {
+            int end = fieldName.indexOf('.', start);
+            if (end < 0) {
+                end = fieldName.length();
+            }
+            FieldType fieldType = find(child(fieldName, start, end), fieldName, end);
+            return fieldType != null ? fieldType : find(wildcard, fieldName, end);
+        }
+
+        private static FieldType find(Node node, String fieldName, int end) {
+            if (node == null) {
+                return null;
+            }
+            return end == fieldName.length() ? node.fieldType : node.find(fieldName, end + 1);
+        }
+
+        private Node child(String fieldName, int start, int end) {
+            int length = end - start;
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + fieldName.charAt(i);
+            }
+            int mask = segments.length - 1;
+            for (int slot = hash & mask; segments[slot] != null; slot = (slot + 1) & mask) {
+                String segment = segments[slot];
+                if (segment.length() == length && fieldName.regionMatches(start, segment, 0, length)) {
+                    return children[slot];
+                }
+            }
+            return null;
+        }
+    }
+}
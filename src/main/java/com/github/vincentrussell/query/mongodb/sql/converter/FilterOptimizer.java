@@ -0,0 +1,272 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import org.bson.BsonRegularExpression;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * Simplifies a mongo filter without changing which documents it matches, also for fields that hold arrays:
+ * <ul>
+ *     <li>nested <code>$and</code> and <code>$or</code> operands are flattened and duplicate operands removed</li>
+ *     <li>the operands of an <code>$and</code> become one document with a condition per field where possible</li>
+ *     <li>bounds on the same field are merged into one range, keeping the tighter bound of numbers and dates</li>
+ *     <li>range conditions that are implied by an equality on the same field are dropped</li>
+ *     <li>equalities on the same field in an <code>$or</code> become one <code>$in</code></li>
+ * </ul>
+ * Conditions that look contradictory, like <code>a = 1 and a = 2</code>, are kept, because they are both true for a
+ * document with an array that contains 1 and 2.  Enable it with the <code>optimizeFilter</code> system property, see
+ * {@link QueryConverter#D_OPTIMIZE_FILTER}.
+ */
+public final class FilterOptimizer {
+
+    private static final List<String> LOWER_BOUNDS = Arrays.asList("$gt", "$gte");
+    private static final List<String> UPPER_BOUNDS = Arrays.asList("$lt", "$lte");
+
+    private FilterOptimizer() {
+    }
+
+    /**
+     * @param filter the filter, which is not modified
+     * @return the simplified filter
+     */
+    public static Document optimize(Document filter) {
+        List<Document> terms = new ArrayList<>();
+        for (Map.Entry<String, Object> entry : filter.entrySet()) {
+            if ("$and".equals(entry.getKey()) && entry.getValue() instanceof List) {
+                for (Object operand : (List<?>) entry.getValue()) {
+                    terms.add(operand instanceof Document ? optimize((Document) operand) : new Document());
+                }
+            } else if ("$or".equals(entry.getKey()) && entry.getValue() instanceof List) {
+                terms.add(optimizeOr((List<?>) entry.getValue()));
+            } else {
+                terms.add(new Document(entry.getKey(), entry.getValue()));
+            }
+        }
+        return and(terms);
+    }
+
+    private static Document and(List<Document> terms) {
+        Document merged = new Document();
+        List<Document> unmerged = new ArrayList<>();
+        for (Document term : terms) {
+            for (Map.Entry<String, Object> entry : term.entrySet()) {
+                String key = entry.getKey();
+                if ("$and".equals(key) && entry.getValue() instanceof List) {
+                    //unmerged operands of an optimized operand
+                    for (Object operand : (List<?>) entry.getValue()) {
+                        addUnmerged(unmerged, (Document) operand);
+                    }
+                } else if (!merged.containsKey(key)) {
+                    merged.put(key, entry.getValue());
+                } else {
+                    Object condition = key.startsWith("$") ? null : mergeConditions(merged.get(key), entry.getValue());
+                    if (condition != null) {
+                        merged.put(key, condition);
+                    } else if (!Objects.equals(merged.get(key), entry.getValue())) {
+                        addUnmerged(unmerged, new Document(key, entry.getValue()));
+                    }
+                }
+            }
+        }
+        if (!unmerged.isEmpty()) {
+            merged.put("$and", unmerged);
+        }
+        return merged;
+    }
+
+    private static void addUnmerged(List<Document> unmerged, Document operand) {
+        if (!unmerged.contains(operand)) {
+            unmerged.add(operand);
+        }
+    }
+
+    private static Document optimizeOr(List<?> operands) {
+        List<Document> flattened = new ArrayList<>();
+        for (Object operand : operands) {
+            Document optimized = operand instanceof Document ? optimize((Document) operand) : new Document();
+            List<?> nestedOr = optimized.size() == 1 ? optimized.get("$or", List.class) : null;
+            if (nestedOr != null) {
+                for (Object nested : nestedOr) {
+                    addUnmerged(flattened, (Document) nested);
+                }
+            } else {
+                addUnmerged(flattened, optimized);
+            }
+        }
+
+        //equalities on the same field, in the position of the first one
+        Map<String, List<Object>> equalities = new LinkedHashMap<>();
+        List<Object> alternatives = new ArrayList<>();
+        for (Document operand : flattened) {
+            String field = operand.size() == 1 ? operand.keySet().iterator().next() : null;
+            List<?> values = field != null && !field.startsWith("$") ? equalityValues(operand.get(field)) : null;
+            if (values == null) {
+                alternatives.add(operand);
+                continue;
+            }
+            List<Object> fieldValues = equalities.get(field);
+            if (fieldValues == null) {
+                fieldValues = new ArrayList<>();
+                equalities.put(field, fieldValues);
+                alternatives.add(field);
+            }
+            for (Object value : values) {
+                if (!fieldValues.contains(value)) {
+                    fieldValues.add(value);
+                }
+            }
+        }
+        List<Document> result = new ArrayList<>(alternatives.size());
+        for (Object alternative : alternatives) {
+            if (alternative instanceof String) {
+                List<Object> values = equalities.get(alternative);
+                result.add(new Document((String) alternative, values.size() == 1 && isEqualityValue(values.get(0))
+                        ? values.get(0) : new Document("$in", values)));
+            } else {
+                result.add((Document) alternative);
+            }
+        }
+        return result.size() == 1 ? result.get(0) : new Document("$or", result);
+    }
+
+    //the values that a field must be equal to one of, or null when the condition is something else
+    private static List<?> equalityValues(Object condition) {
+        if (isEqualityValue(condition)) {
+            return Arrays.asList(condition);
+        }
+        if (condition instanceof Document && ((Document) condition).size() == 1
+                && ((Document) condition).get("$in") instanceof List) {
+            for (Object value : (List<?>) ((Document) condition).get("$in")) {
+                if (!isEqualityValue(value)) {
+                    return null;
+                }
+            }
+            return (List<?>) ((Document) condition).get("$in");
+        }
+        return null;
+    }
+
+    //values that match by equality, both as the condition of a field and in $in
+    private static boolean isEqualityValue(Object value) {
+        return !(value instanceof Map || value instanceof List || value instanceof Pattern
+                || value instanceof BsonRegularExpression);
+    }
+
+    private static boolean isOperatorDocument(Object condition) {
+        if (!(condition instanceof Document) || ((Document) condition).isEmpty()) {
+            return false;
+        }
+        for (String key : ((Document) condition).keySet()) {
+            if (!key.startsWith("$")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //one condition that is true when both conditions are true, or null when they can not be merged
+    private static Object mergeConditions(Object first, Object second) {
+        if (Objects.equals(first, second)) {
+            return first;
+        } else if (isOperatorDocument(first) && isOperatorDocument(second)) {
+            Document merged = new Document((Document) first);
+            for (Map.Entry<String, Object> entry : ((Document) second).entrySet()) {
+                Object existing = merged.get(entry.getKey());
+                if (existing == null) {
+                    merged.put(entry.getKey(), entry.getValue());
+                } else if (!Objects.equals(existing, entry.getValue())) {
+                    Object tighter = tighterBound(entry.getKey(), existing, entry.getValue());
+                    if (tighter == null) {
+                        return null;
+                    }
+                    merged.put(entry.getKey(), tighter);
+                }
+            }
+            removeLooserBound(merged, "$gt", "$gte", 1);
+            removeLooserBound(merged, "$lt", "$lte", -1);
+            return merged;
+        } else if (isOperatorDocument(first) && isEqualityValue(second)) {
+            return mergeEquality(second, (Document) first);
+        } else if (isOperatorDocument(second) && isEqualityValue(first)) {
+            return mergeEquality(first, (Document) second);
+        }
+        return null;
+    }
+
+    private static Object mergeEquality(Object value, Document operators) {
+        boolean implied = true;
+        for (Map.Entry<String, Object> entry : operators.entrySet()) {
+            Integer comparison = compare(value, entry.getValue());
+            if (comparison == null
+                    || ("$gt".equals(entry.getKey()) && comparison <= 0)
+                    || ("$gte".equals(entry.getKey()) && comparison < 0)
+                    || ("$lt".equals(entry.getKey()) && comparison >= 0)
+                    || ("$lte".equals(entry.getKey()) && comparison > 0)
+                    || !(LOWER_BOUNDS.contains(entry.getKey()) || UPPER_BOUNDS.contains(entry.getKey()))) {
+                implied = false;
+            }
+        }
+        if (implied) {
+            return value;
+        }
+        if (operators.containsKey("$eq")) {
+            return null;
+        }
+        Document merged = new Document("$eq", value);
+        merged.putAll(operators);
+        return merged;
+    }
+
+    private static Object tighterBound(String key, Object first, Object second) {
+        Integer comparison = compare(first, second);
+        if (comparison == null) {
+            return null;
+        } else if (LOWER_BOUNDS.contains(key)) {
+            return comparison >= 0 ? first : second;
+        } else if (UPPER_BOUNDS.contains(key)) {
+            return comparison <= 0 ? first : second;
+        }
+        return null;
+    }
+
+    //for $gt 5 and $gte 5 only $gt is needed, sign is 1 for lower bounds and -1 for upper bounds
+    private static void removeLooserBound(Document operators, String exclusive, String inclusive, int sign) {
+        if (operators.containsKey(exclusive) && operators.containsKey(inclusive)) {
+            Integer comparison = compare(operators.get(exclusive), operators.get(inclusive));
+            if (comparison != null) {
+                operators.remove(comparison * sign >= 0 ? inclusive : exclusive);
+            }
+        }
+    }
+
+    //numbers are compared with numbers and dates with dates, anything else is not compared
+    private static Integer compare(Object first, Object second) {
+        if (isComparableNumber(first) && isComparableNumber(second)) {
+            if (isIntegral(first) && isIntegral(second)) {
+                return Long.compare(((Number) first).longValue(), ((Number) second).longValue());
+            }
+            return Double.compare(((Number) first).doubleValue(), ((Number) second).doubleValue());
+        } else if (first instanceof Date && second instanceof Date) {
+            return ((Date) first).compareTo((Date) second);
+        }
+        return null;
+    }
+
+    private static boolean isComparableNumber(Object value) {
+        return value instanceof Number && !(value instanceof Decimal128)
+                && !(value instanceof Double && ((Double) value).isNaN());
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+    }
+}
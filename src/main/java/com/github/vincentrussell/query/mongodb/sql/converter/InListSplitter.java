@@ -0,0 +1,88 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Splits a filter with a long <code>$in</code> list into filters that each have a part of the list, so that every
+ * query stays far below the maximum BSON document size and the parts can run in parallel.  Together the filters match
+ * the same documents as the original filter, but a document with an array field can be matched by more than one of
+ * them.
+ */
+final class InListSplitter {
+
+    private InListSplitter() {
+    }
+
+    /**
+     * @param filter the filter
+     * @param chunkSize the maximum number of values in the <code>$in</code> list of each filter
+     * @return the filters, or a list with only the filter itself when it does not have an <code>$in</code> list with
+     * more than chunkSize values at the top level or in a top level <code>$and</code>
+     */
+    static List<Document> split(Document filter, int chunkSize) {
+        if (filter == null || chunkSize <= 0) {
+            return Collections.singletonList(filter);
+        }
+        InList inList = findLongestInList(filter, null, -1);
+        if (inList == null || inList.values.size() <= chunkSize) {
+            return Collections.singletonList(filter);
+        }
+        List<Document> filters = new ArrayList<>();
+        for (int start = 0; start < inList.values.size(); start += chunkSize) {
+            List<?> chunk = inList.values.subList(start, Math.min(start + chunkSize, inList.values.size()));
+            filters.add(withInList(filter, inList, new ArrayList<Object>(chunk)));
+        }
+        return filters;
+    }
+
+    private static InList findLongestInList(Document filter, InList longest, int andOperand) {
+        for (String key : filter.keySet()) {
+            Object value = filter.get(key);
+            if ("$and".equals(key) && andOperand == -1 && value instanceof List) {
+                List<?> operands = (List<?>) value;
+                for (int i = 0; i < operands.size(); i++) {
+                    if (operands.get(i) instanceof Document) {
+                        longest = findLongestInList((Document) operands.get(i), longest, i);
+                    }
+                }
+            } else if (!key.startsWith("$") && value instanceof Document && ((Document) value).size() == 1
+                    && ((Document) value).get("$in") instanceof List) {
+                List<?> values = (List<?>) ((Document) value).get("$in");
+                if (longest == null || values.size() > longest.values.size()) {
+                    longest = new InList(key, andOperand, values);
+                }
+            }
+        }
+        return longest;
+    }
+
+    private static Document withInList(Document filter, InList inList, List<Object> values) {
+        Document copy = new Document(filter);
+        if (inList.andOperand == -1) {
+            copy.put(inList.field, new Document("$in", values));
+        } else {
+            List<Object> operands = new ArrayList<Object>((List<?>) filter.get("$and"));
+            Document operand = new Document((Document) operands.get(inList.andOperand));
+            operand.put(inList.field, new Document("$in", values));
+            operands.set(inList.andOperand, operand);
+            copy.put("$and", operands);
+        }
+        return copy;
+    }
+
+    private static final class InList {
+        private final String field;
+        private final int andOperand;
+        private final List<?> values;
+
+        private InList(String field, int andOperand, List<?> values) {
+            this.field = field;
+            this.andOperand = andOperand;
+            this.values = values;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import com.github.vincentrussell.query.mongodb.sql.converter.util.DocumentUtils;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.bson.Document;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+/**
+ * The indexes of the collections, so that a query can be converted to a filter, sort and hint that use them.  The
+ * indexes are cached per collection and listed again after the expiry.
+ *
+ * Pass it to {@link QueryConverter#plan(IndexCatalog)} or
+ * {@link QueryConverter#run(com.mongodb.client.MongoDatabase, IndexCatalog)}.  Instances are thread-safe.
+ */
+public class IndexCatalog {
+
+    private final IndexSource indexSource;
+    private final Cache<String, List<Index>> cache;
+
+    private IndexCatalog(IndexSource indexSource, Cache<String, List<Index>> cache) {
+        this.indexSource = indexSource;
+        this.cache = cache;
+    }
+
+    /**
+     * @param collectionName the name of the collection
+     * @return the indexes of the collection
+     */
+    public List<Index> getIndexes(final String collectionName) {
+        notNull(collectionName, "collectionName is null");
+        try {
+            return cache.get(collectionName, new Callable<List<Index>>() {
+                @Override
+                public List<Index> call() {
+                    ImmutableList.Builder<Index> indexes = ImmutableList.builder();
+                    for (Document document : indexSource.listIndexes(collectionName)) {
+                        if (document.get("key") instanceof Document) {
+                            indexes.add(new Index(document));
+                        }
+                    }
+                    return indexes.build();
+                }
+            });
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } catch (UncheckedExecutionException | ExecutionError e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * List the indexes of a collection again the next time they are needed
+     * @param collectionName the name of the collection
+     */
+    public void invalidate(String collectionName) {
+        cache.invalidate(collectionName);
+    }
+
+    /**
+     * List the indexes of every collection again the next time they are needed
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * An index of a collection.
+     */
+    public static final class Index {
+        private final String name;
+        private final Document keys;
+        private final boolean ordered;
+
+        private Index(Document document) {
+            this.keys = DocumentUtils.deepCopy(document.get("key", Document.class));
+            this.name = document.get("name") != null ? document.get("name").toString() : null;
+            //hashed, text and geo indexes can't return a range or a sort, sparse and partial indexes don't have every
+            //document, so hinting one of them could change the result.  The queries have no collation, so an index
+            //with a collation other than simple compares strings differently and can't be used for them either
+            boolean ordered = !keys.isEmpty() && !Boolean.TRUE.equals(document.get("sparse"))
+                    && document.get("partialFilterExpression") == null && hasSimpleCollation(document);
+            for (Map.Entry<String, Object> key : keys.entrySet()) {
+                ordered &= key.getValue() instanceof Number && ((Number) key.getValue()).doubleValue() != 0;
+            }
+            this.ordered = ordered;
+        }
+
+        private static boolean hasSimpleCollation(Document document) {
+            Object collation = document.get("collation");
+            return collation == null
+                    || (collation instanceof Document && "simple".equals(((Document) collation).get("locale")));
+        }
+
+        /**
+         * @return the name of the index, or null when the description didn't have one
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the key pattern of the index, like <code>{a: 1, b: -1}</code>
+         */
+        public Document getKeys() {
+            return DocumentUtils.deepCopy(keys);
+        }
+
+        /**
+         * @return true if this is a b-tree index of every document with the simple collation, which the planning of a
+         * query can use
+         */
+        public boolean isOrdered() {
+            return ordered;
+        }
+
+        Document getSharedKeys() {
+            return keys;
+        }
+
+        @Override
+        public String toString() {
+            return name != null ? name : keys.toJson();
+        }
+    }
+
+    public static class Builder {
+        private final IndexSource indexSource;
+        private long expireAfterWriteNanos = TimeUnit.MINUTES.toNanos(10);
+        private long maximumSize = -1;
+
+        private Builder(IndexSource indexSource) {
+            this.indexSource = indexSource;
+        }
+
+        /**
+         * List the indexes of a collection again when they were listed longer ago than the duration, 10 minutes
+         * by default
+         * @param duration the duration
+         * @param unit the unit of the duration
+         * @return this builder
+         */
+        public Builder expireAfterWrite(long duration, TimeUnit unit) {
+            notNull(unit, "unit is null");
+            this.expireAfterWriteNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Limit the number of collections whose indexes are held in the cache
+         * @param maximumSize the maximum number of collections
+         * @return this builder
+         */
+        public Builder maximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        public IndexCatalog build() {
+            CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder()
+                    .expireAfterWrite(expireAfterWriteNanos, TimeUnit.NANOSECONDS);
+            if (maximumSize >= 0) {
+                cacheBuilder.maximumSize(maximumSize);
+            }
+            return new IndexCatalog(indexSource, cacheBuilder.<String, List<Index>>build());
+        }
+
+        /**
+         * @param indexSource the source of the index descriptions, like a {@link MongoIndexSource}
+         * @return a new builder
+         */
+        public static Builder create(IndexSource indexSource) {
+            notNull(indexSource, "indexSource is null");
+            return new Builder(indexSource);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import org.bson.Document;
+
+import java.util.List;
+
+/**
+ * The filter, hint and warnings of a query that were chosen with the indexes of an {@link IndexCatalog}, see
+ * {@link QueryConverter#plan(IndexCatalog)}.  The filter matches the same documents as the converted filter.
+ */
+public final class IndexPlan {
+
+    private final Document query;
+    private final IndexCatalog.Index index;
+    private final List<String> warnings;
+
+    IndexPlan(Document query, IndexCatalog.Index index, List<String> warnings) {
+        this.query = query;
+        this.index = index;
+        this.warnings = warnings;
+    }
+
+    /**
+     * @return the filter, with the conditions on the fields of the chosen index first, in the order of its keys
+     */
+    public Document getQuery() {
+        return query;
+    }
+
+    /**
+     * @return the index that fits the filter and the sort best, or null when no index fits them
+     */
+    public IndexCatalog.Index getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the key pattern of the chosen index, to pass as the hint of the query, or null
+     */
+    public Document getHint() {
+        return index != null ? index.getKeys() : null;
+    }
+
+    /**
+     * @return the parts of the query that can't use an index, like an <code>ORDER BY</code> with a
+     * <code>LIMIT</code> that has to sort the matching documents in memory
+     */
+    public List<String> getWarnings() {
+        return warnings;
+    }
+}
@@ -0,0 +1,326 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import com.google.common.collect.ImmutableSet;
+import org.bson.BsonRegularExpression;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Chooses the index of a query with the equality, sort, range rule: the best index has the most fields with an
+ * equality condition as the first keys, then the sort keys in the same or the reverse direction, then a field with a
+ * range condition.  The conditions of the filter are ordered like the keys of the chosen index, and an
+ * <code>$or</code> of equalities on the first field of an index becomes an <code>$in</code>, which is one index scan
+ * instead of one per branch.  Only the top level of the filter and the operands of a top level <code>$and</code> are
+ * looked at.
+ */
+final class IndexPlanner {
+
+    private static final Set<String> RANGE_OPERATORS = ImmutableSet.of("$gt", "$gte", "$lt", "$lte");
+    private static final Set<String> EQUALITY_OPERATORS = ImmutableSet.of("$eq", "$in");
+
+    private enum Condition {
+        OTHER, RANGE, EQUALITY
+    }
+
+    private IndexPlanner() {
+    }
+
+    /**
+     * @param collection the name of the collection
+     * @param filter the filter, which is not modified, the filter of the plan shares its values or is the filter
+     *               itself when no condition was rewritten or moved, so it must not be modified either
+     * @param sort the sort of the query, or null when the sort is not done on the documents of the collection
+     * @param limit the limit of the query, or -1
+     * @param indexes the indexes of the collection
+     * @return the plan
+     */
+    static IndexPlan plan(String collection, Document filter, Document sort, long limit,
+                          List<IndexCatalog.Index> indexes) {
+        List<IndexCatalog.Index> orderedIndexes = new ArrayList<>();
+        Set<String> leadingFields = new HashSet<>();
+        for (IndexCatalog.Index index : indexes) {
+            if (index.isOrdered()) {
+                orderedIndexes.add(index);
+                leadingFields.add(index.getSharedKeys().keySet().iterator().next());
+            }
+        }
+        List<String> warnings = new ArrayList<>();
+        Document query = rewriteOrs(filter, leadingFields, collection, warnings);
+
+        Map<String, Condition> conditions = new HashMap<>();
+        for (Map.Entry<String, Object> entry : query.entrySet()) {
+            if ("$and".equals(entry.getKey()) && entry.getValue() instanceof List) {
+                for (Object operand : (List<?>) entry.getValue()) {
+                    if (operand instanceof Document) {
+                        addConditions((Document) operand, conditions);
+                    }
+                }
+            } else {
+                addCondition(entry.getKey(), entry.getValue(), conditions);
+            }
+        }
+
+        //a field with an equality condition has the same value in every matching document, so it doesn't change
+        //the order
+        Document remainingSort = new Document();
+        if (sort != null) {
+            for (Map.Entry<String, Object> entry : sort.entrySet()) {
+                if (conditions.get(entry.getKey()) != Condition.EQUALITY) {
+                    remainingSort.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        IndexCatalog.Index best = null;
+        int[] bestScore = null;
+        IndexCatalog.Index sortIndex = null;
+        for (IndexCatalog.Index index : orderedIndexes) {
+            int[] score = score(index, conditions, remainingSort);
+            if (score[1] == 1 && sortIndex == null) {
+                sortIndex = index;
+            }
+            if ((score[0] > 0 || score[1] > 0 || score[2] > 0) && (bestScore == null || compare(score, bestScore) > 0)) {
+                best = index;
+                bestScore = score;
+            }
+        }
+
+        //the chosen index is the hint, so the sort is done in memory when that index doesn't cover it, even when
+        //another index would
+        if (!remainingSort.isEmpty() && limit != -1 && (bestScore == null || bestScore[1] == 0)) {
+            String reason = sortIndex == null
+                    ? "no index has the sort keys after the keys of the equality conditions"
+                    : "the chosen index " + best + " doesn't have the sort keys after the keys of the "
+                    + "equality conditions, " + sortIndex + " has them but fits fewer conditions";
+            warnings.add("ORDER BY " + sort.toJson() + " with LIMIT " + limit + " on " + collection
+                    + " sorts the matching documents in memory, because " + reason);
+        }
+
+        if (best != null) {
+            query = orderLike(query, best);
+        }
+        return new IndexPlan(query, best, Collections.unmodifiableList(warnings));
+    }
+
+    //equality fields, sort covered, range field, fewer keys
+    private static int[] score(IndexCatalog.Index index, Map<String, Condition> conditions, Document sort) {
+        List<String> keys = new ArrayList<>(index.getSharedKeys().keySet());
+        int position = 0;
+        while (position < keys.size() && conditions.get(keys.get(position)) == Condition.EQUALITY) {
+            position++;
+        }
+        int equalities = position;
+        boolean sortCovered = !sort.isEmpty() && coversSort(index.getSharedKeys(), keys, position, sort);
+        if (sortCovered) {
+            position += sort.size();
+        }
+        boolean range = position < keys.size() && conditions.get(keys.get(position)) == Condition.RANGE;
+        return new int[] {equalities, sortCovered ? 1 : 0, range ? 1 : 0, -keys.size()};
+    }
+
+    private static int compare(int[] score, int[] other) {
+        for (int i = 0; i < score.length; i++) {
+            if (score[i] != other[i]) {
+                return score[i] < other[i] ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    //the index is scanned forwards or backwards, so every sort direction has to match or every one be reversed
+    private static boolean coversSort(Document indexKeys, List<String> keys, int position, Document sort) {
+        if (position + sort.size() > keys.size()) {
+            return false;
+        }
+        Boolean reversed = null;
+        for (Map.Entry<String, Object> entry : sort.entrySet()) {
+            String key = keys.get(position++);
+            if (!key.equals(entry.getKey()) || !(entry.getValue() instanceof Number)) {
+                return false;
+            }
+            boolean sameDirection = (((Number) indexKeys.get(key)).doubleValue() > 0)
+                    == (((Number) entry.getValue()).doubleValue() > 0);
+            if (reversed != null && reversed == sameDirection) {
+                return false;
+            }
+            reversed = !sameDirection;
+        }
+        return true;
+    }
+
+    private static void addConditions(Document document, Map<String, Condition> conditions) {
+        for (Map.Entry<String, Object> entry : document.entrySet()) {
+            addCondition(entry.getKey(), entry.getValue(), conditions);
+        }
+    }
+
+    private static void addCondition(String field, Object value, Map<String, Condition> conditions) {
+        if (field.startsWith("$")) {
+            return;
+        }
+        Condition condition = condition(value);
+        Condition previous = conditions.get(field);
+        if (previous == null || previous.compareTo(condition) < 0) {
+            conditions.put(field, condition);
+        }
+    }
+
+    private static Condition condition(Object value) {
+        if (value instanceof Pattern || value instanceof BsonRegularExpression) {
+            return Condition.OTHER;
+        }
+        if (!isOperatorDocument(value)) {
+            return Condition.EQUALITY;
+        }
+        Condition condition = Condition.OTHER;
+        for (String operator : ((Document) value).keySet()) {
+            if (EQUALITY_OPERATORS.contains(operator)) {
+                return Condition.EQUALITY;
+            } else if (RANGE_OPERATORS.contains(operator)) {
+                condition = Condition.RANGE;
+            }
+        }
+        return condition;
+    }
+
+    private static boolean isOperatorDocument(Object value) {
+        return value instanceof Document && !((Document) value).isEmpty()
+                && ((Document) value).keySet().iterator().next().startsWith("$");
+    }
+
+    //the filter itself when no $or was rewritten
+    private static Document rewriteOrs(Document filter, Set<String> leadingFields, String collection,
+                                       List<String> warnings) {
+        Document rewritten = new Document();
+        boolean changed = false;
+        for (Map.Entry<String, Object> entry : filter.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            if ("$or".equals(key) && value instanceof List) {
+                String field = getEqualityField((List<?>) value);
+                if (field != null && leadingFields.contains(field) && !filter.containsKey(field)) {
+                    List<Object> values = new ArrayList<>();
+                    for (Object branch : (List<?>) value) {
+                        values.add(((Document) branch).get(field));
+                    }
+                    rewritten.put(field, new Document("$in", values));
+                    changed = true;
+                    continue;
+                }
+                warnUnindexedBranches((List<?>) value, leadingFields, collection, warnings);
+            } else if ("$and".equals(key) && value instanceof List) {
+                List<Object> operands = new ArrayList<>();
+                boolean operandChanged = false;
+                for (Object operand : (List<?>) value) {
+                    Object rewrittenOperand = operand instanceof Document
+                            ? rewriteOrs((Document) operand, leadingFields, collection, warnings) : operand;
+                    operandChanged |= rewrittenOperand != operand;
+                    operands.add(rewrittenOperand);
+                }
+                if (operandChanged) {
+                    value = operands;
+                    changed = true;
+                }
+            }
+            rewritten.put(key, value);
+        }
+        return changed ? rewritten : filter;
+    }
+
+    //the field when every branch is an equality on the same field
+    private static String getEqualityField(List<?> branches) {
+        String field = null;
+        for (Object branch : branches) {
+            if (!(branch instanceof Document) || ((Document) branch).size() != 1) {
+                return null;
+            }
+            Map.Entry<String, Object> entry = ((Document) branch).entrySet().iterator().next();
+            if (entry.getKey().startsWith("$") || isOperatorDocument(entry.getValue())
+                    || (field != null && !field.equals(entry.getKey()))) {
+                return null;
+            }
+            field = entry.getKey();
+        }
+        return field;
+    }
+
+    //every branch of an $or needs its own index, otherwise the collection is scanned
+    private static void warnUnindexedBranches(List<?> branches, Set<String> leadingFields, String collection,
+                                              List<String> warnings) {
+        for (Object branch : branches) {
+            if (branch instanceof Document && Collections.disjoint(((Document) branch).keySet(), leadingFields)) {
+                warnings.add("$or on " + collection + " scans the collection, because no index starts with one of "
+                        + "the fields " + ((Document) branch).keySet());
+                return;
+            }
+        }
+    }
+
+    //the query itself when its conditions are already in the order of the keys
+    private static Document orderLike(Document query, IndexCatalog.Index index) {
+        final Map<String, Integer> positions = new HashMap<>();
+        for (String key : index.getSharedKeys().keySet()) {
+            positions.put(key, positions.size());
+        }
+        Comparator<Object> byPosition = new Comparator<Object>() {
+            @Override
+            public int compare(Object operand, Object other) {
+                return Integer.compare(position(operand, positions), position(other, positions));
+            }
+        };
+        Comparator<Map.Entry<String, Object>> entriesByPosition = new Comparator<Map.Entry<String, Object>>() {
+            @Override
+            public int compare(Map.Entry<String, Object> entry, Map.Entry<String, Object> other) {
+                return Integer.compare(position(entry.getKey(), positions), position(other.getKey(), positions));
+            }
+        };
+        List<Map.Entry<String, Object>> entries = new ArrayList<>(query.entrySet());
+        boolean changed = !isSorted(entries, entriesByPosition);
+        Collections.sort(entries, entriesByPosition);
+        Document ordered = new Document();
+        for (Map.Entry<String, Object> entry : entries) {
+            Object value = entry.getValue();
+            if ("$and".equals(entry.getKey()) && value instanceof List && !isSorted((List<?>) value, byPosition)) {
+                List<Object> operands = new ArrayList<Object>((List<?>) value);
+                Collections.sort(operands, byPosition);
+                value = operands;
+                changed = true;
+            }
+            ordered.put(entry.getKey(), value);
+        }
+        return changed ? ordered : query;
+    }
+
+    private static <T> boolean isSorted(List<? extends T> list, Comparator<? super T> comparator) {
+        for (int i = 1; i < list.size(); i++) {
+            if (comparator.compare(list.get(i - 1), list.get(i)) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int position(Object operand, Map<String, Integer> positions) {
+        int position = Integer.MAX_VALUE;
+        if (operand instanceof Document) {
+            for (String key : ((Document) operand).keySet()) {
+                position = Math.min(position, position(key, positions));
+            }
+        }
+        return position;
+    }
+
+    private static int position(String key, Map<String, Integer> positions) {
+        Integer position = positions.get(key);
+        return position != null ? position : Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,17 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import org.bson.Document;
+
+/**
+ * Source of the index descriptions for {@link IndexCatalog}.  {@link MongoIndexSource} lists the indexes of a mongo
+ * collection, tests and other callers can supply descriptions from anywhere else.
+ */
+public interface IndexSource {
+
+    /**
+     * @param collectionName the name of the collection
+     * @return the indexes of the collection, in the format returned by the <code>listIndexes</code> command, with at
+     * least the <code>key</code> of each index
+     */
+    Iterable<Document> listIndexes(String collectionName);
+}
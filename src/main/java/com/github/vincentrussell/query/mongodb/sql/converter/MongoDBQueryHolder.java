@@ -1,13 +1,19 @@
 package com.github.vincentrussell.query.mongodb.sql.converter;
 
+import com.github.vincentrussell.query.mongodb.sql.converter.util.DocumentUtils;
 import org.bson.Document;
 
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import static org.apache.commons.lang.Validate.notNull;
 
+/**
+ * Holds the converted query.  A holder returned by {@link #toUnmodifiable()} can not be changed and is safe to share
+ * between threads; its getters return copies of the documents.  Other holders are not thread-safe.
+ */
 public class MongoDBQueryHolder {
     private final String collection;
     private final SQLCommandType sqlCommandType;
@@ -21,6 +27,7 @@ public class MongoDBQueryHolder {
     private List<String> groupBys = new ArrayList<>();
     private long limit = -1;
     private long offset = -1;
+    private boolean unmodifiable = false;
 
     /**
      * Pojo to hold the MongoDB data
@@ -38,7 +45,7 @@ public class MongoDBQueryHolder {
      * @return the fields to be returned by the quer
      */
     public Document getProjection() {
-        return projection;
+        return unmodifiable ? DocumentUtils.deepCopy(projection) : projection;
     }
 
     /**
@@ -46,7 +53,7 @@ public class MongoDBQueryHolder {
      * @return the where clause section of the query in mongo formt
      */
     public Document getQuery() {
-        return query;
+        return unmodifiable ? DocumentUtils.deepCopy(query) : query;
     }
 
     /**
@@ -62,25 +69,29 @@ public class MongoDBQueryHolder {
     }
 
     public void setQuery(Document query) {
+        checkModifiable();
         notNull(query, "query is null");
         this.query = query;
     }
 
     public void setProjection(Document projection) {
+        checkModifiable();
         notNull(projection, "projection is null");
         this.projection = projection;
     }
 
     public Document getSort() {
-        return sort;
+        return unmodifiable ? DocumentUtils.deepCopy(sort) : sort;
     }
 
     public void setSort(Document sort) {
+        checkModifiable();
         notNull(sort, "sort is null");
         this.sort = sort;
     }
 
     public void setDistinct(boolean distinct) {
+        checkModifiable();
         this.distinct = distinct;
     }
 
@@ -89,10 +100,12 @@ public class MongoDBQueryHolder {
     }
 
     public void setCountAll(boolean countAll) {
+        checkModifiable();
         this.countAll = countAll;
     }
 
     public void setGroupBys(List<String> groupBys) {
+        checkModifiable();
         this.groupBys = groupBys;
     }
 
@@ -101,10 +114,11 @@ public class MongoDBQueryHolder {
     }
     
 	public Document getAliasProjection() {
-		return aliasProjection;
+		return unmodifiable ? DocumentUtils.deepCopy(aliasProjection) : aliasProjection;
 	}
 
 	public void setAliasProjection(Document aliasProjection) {
+		checkModifiable();
 		this.aliasProjection = aliasProjection;
 	}
 
@@ -113,6 +127,7 @@ public class MongoDBQueryHolder {
     }
 
     public void setLimit(long limit) {
+        checkModifiable();
         this.limit = limit;
     }
     
@@ -121,6 +136,7 @@ public class MongoDBQueryHolder {
     }
 
     public void setOffset(long offset) {
+        checkModifiable();
         this.offset = offset;
     }
 
@@ -129,11 +145,94 @@ public class MongoDBQueryHolder {
     }
 
 	public List<Document> getJoinPipeline() {
-		return joinPipeline;
+		return unmodifiable ? DocumentUtils.deepCopy(joinPipeline) : joinPipeline;
 	}
 
 	public void setJoinPipeline(List<Document> joinPipeline) {
+		checkModifiable();
 		this.joinPipeline = joinPipeline;
 	}
-    
+
+    /**
+     * Create a copy of this holder that can not be modified.  The setters of the copy throw
+     * {@link UnsupportedOperationException} and the getters return copies of the documents, so the copy can be
+     * shared safely between threads.
+     * @return the unmodifiable copy
+     */
+    public MongoDBQueryHolder toUnmodifiable() {
+        if (unmodifiable) {
+            return this;
+        }
+        MongoDBQueryHolder copy = new MongoDBQueryHolder(collection, sqlCommandType);
+        copy.query = DocumentUtils.deepCopy(query);
+        copy.projection = DocumentUtils.deepCopy(projection);
+        copy.sort = DocumentUtils.deepCopy(sort);
+        copy.aliasProjection = DocumentUtils.deepCopy(aliasProjection);
+        copy.joinPipeline = DocumentUtils.deepCopy(joinPipeline);
+        copy.distinct = distinct;
+        copy.countAll = countAll;
+        copy.groupBys = Collections.unmodifiableList(new ArrayList<>(groupBys));
+        copy.limit = limit;
+        copy.offset = offset;
+        copy.unmodifiable = true;
+        return copy;
+    }
+
+    /**
+     * Create a modifiable deep copy of this holder, passing every value in the query and the join pipeline
+     * through a {@link DocumentUtils.ValueTransformer}.
+     * @param valueTransformer the transformer for the values
+     * @return the copy
+     * @throws ParseException when the {@link DocumentUtils.ValueTransformer} fails
+     */
+    MongoDBQueryHolder copy(DocumentUtils.ValueTransformer valueTransformer) throws ParseException {
+        MongoDBQueryHolder copy = new MongoDBQueryHolder(collection, sqlCommandType);
+        copy.query = DocumentUtils.deepCopy(query, valueTransformer);
+        copy.projection = DocumentUtils.deepCopy(projection);
+        copy.sort = DocumentUtils.deepCopy(sort);
+        copy.aliasProjection = DocumentUtils.deepCopy(aliasProjection);
+        copy.joinPipeline = DocumentUtils.deepCopy(joinPipeline, valueTransformer);
+        copy.distinct = distinct;
+        copy.countAll = countAll;
+        copy.groupBys = new ArrayList<>(groupBys);
+        copy.limit = limit;
+        copy.offset = offset;
+        return copy;
+    }
+
+    //The stored documents themselves, never copies.  Used while writing, compiling and running the query, which
+    //only read them, so a shared unmodifiable holder is not copied for every use.  Must not be modified.
+    Document getSharedQuery() {
+        return query;
+    }
+
+    Document getSharedProjection() {
+        return projection;
+    }
+
+    Document getSharedSort() {
+        return sort;
+    }
+
+    Document getSharedAliasProjection() {
+        return aliasProjection;
+    }
+
+    List<Document> getSharedJoinPipeline() {
+        return joinPipeline;
+    }
+
+    /**
+     * @return true if this holder was created by {@link #toUnmodifiable()}
+     */
+    public boolean isUnmodifiable() {
+        return unmodifiable;
+    }
+
+    private void checkModifiable() {
+        if (unmodifiable) {
+            throw new UnsupportedOperationException("MongoDBQueryHolder is unmodifiable");
+        }
+    }
+
 }
@@ -0,0 +1,31 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+
+import java.util.Collections;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+/**
+ * Samples the documents of a collection with a <code>$sample</code> aggregation stage, which picks random documents
+ * without scanning the whole collection.
+ */
+public class MongoDocumentSampler implements DocumentSampler {
+
+    private final MongoDatabase mongoDatabase;
+
+    /**
+     * @param mongoDatabase the database that holds the sampled collections
+     */
+    public MongoDocumentSampler(MongoDatabase mongoDatabase) {
+        notNull(mongoDatabase, "mongoDatabase is null");
+        this.mongoDatabase = mongoDatabase;
+    }
+
+    @Override
+    public Iterable<Document> sample(String collectionName, int sampleSize) {
+        return mongoDatabase.getCollection(collectionName).aggregate(Collections.singletonList(
+                new Document("$sample", new Document("size", sampleSize))));
+    }
+}
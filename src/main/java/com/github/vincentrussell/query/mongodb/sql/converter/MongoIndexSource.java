@@ -0,0 +1,27 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+/**
+ * Lists the indexes of a collection with the <code>listIndexes</code> command.
+ */
+public class MongoIndexSource implements IndexSource {
+
+    private final MongoDatabase mongoDatabase;
+
+    /**
+     * @param mongoDatabase the database that holds the collections
+     */
+    public MongoIndexSource(MongoDatabase mongoDatabase) {
+        notNull(mongoDatabase, "mongoDatabase is null");
+        this.mongoDatabase = mongoDatabase;
+    }
+
+    @Override
+    public Iterable<Document> listIndexes(String collectionName) {
+        return mongoDatabase.getCollection(collectionName).listIndexes();
+    }
+}
@@ -0,0 +1,154 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import com.github.vincentrussell.query.mongodb.sql.converter.util.BindParameter;
+import com.github.vincentrussell.query.mongodb.sql.converter.util.DocumentUtils;
+import com.github.vincentrussell.query.mongodb.sql.converter.util.SqlUtils;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+
+/**
+ * A sql statement with <code>?</code> and/or <code>:name</code> parameters that has been parsed and converted once.
+ * Every call to one of the bind methods copies the converted query, replacing the parameters with the bound values,
+ * without parsing the sql statement again.  Bound values are normalized with the {@link FieldType} of the field
+ * they are compared to, the same way literals in the sql statement are.  Instances are immutable and can be shared
+ * between threads.
+ */
+public class PreparedQuery {
+
+    private final QueryConverter template;
+    private final BindParameter limitParameter;
+    private final BindParameter offsetParameter;
+    private final SortedSet<Integer> parameterIndexes;
+    private final Set<String> parameterNames;
+    private final Multiset<Object> bindParameters = HashMultiset.create();
+
+    PreparedQuery(QueryConverter template, BindParameter limitParameter, BindParameter offsetParameter,
+                  StatementParameters statementParameters) throws ParseException {
+        this.template = template.toUnmodifiable();
+        this.limitParameter = limitParameter;
+        this.offsetParameter = offsetParameter;
+        this.parameterIndexes = statementParameters.getIndexes();
+        this.parameterNames = statementParameters.getNames().elementSet();
+        DocumentUtils.ValueTransformer collector = new DocumentUtils.ValueTransformer() {
+            @Override
+            public Object transform(Object value) {
+                if (BindParameter.class.isInstance(value)) {
+                    addParameter((BindParameter) value);
+                }
+                return value;
+            }
+        };
+        this.template.getMongoQuery().copy(collector);
+        if (limitParameter != null) {
+            addParameter(limitParameter);
+        }
+        if (offsetParameter != null) {
+            addParameter(offsetParameter);
+        }
+        //a parameter that was not converted to a BindParameter would be left in the query as text
+        for (Integer index : parameterIndexes) {
+            SqlUtils.isTrue(bindParameters.contains(index), "the parameter ? at position " + index
+                    + " can not be bound, parameters can only be compared to a field or be the limit or offset");
+        }
+        for (Multiset.Entry<String> name : statementParameters.getNames().entrySet()) {
+            SqlUtils.isTrue(bindParameters.count(name.getElement()) >= name.getCount(), "the parameter :"
+                    + name.getElement() + " can not be bound everywhere it is used, parameters can only be compared "
+                    + "to a field or be the limit or offset");
+        }
+    }
+
+    private void addParameter(BindParameter bindParameter) {
+        bindParameters.add(bindParameter.isNamed() ? bindParameter.getName() : bindParameter.getIndex());
+    }
+
+    /**
+     * @return the number of positional (<code>?</code>) parameters
+     */
+    public int getParameterCount() {
+        return parameterIndexes.isEmpty() ? 0 : parameterIndexes.last();
+    }
+
+    /**
+     * @return the names of the named (<code>:name</code>) parameters
+     */
+    public Set<String> getParameterNames() {
+        return Collections.unmodifiableSet(parameterNames);
+    }
+
+    /**
+     * Bind the positional parameters
+     * @param values the values for the <code>?</code> parameters, in the order they appear in the sql statement
+     * @return the {@link QueryConverter} for the bound values
+     * @throws ParseException when the values do not match the parameters or can not be normalized
+     */
+    public QueryConverter bind(Object... values) throws ParseException {
+        return bind(Arrays.asList(values), Collections.<String, Object>emptyMap());
+    }
+
+    /**
+     * Bind the named parameters
+     * @param namedValues the values for the <code>:name</code> parameters
+     * @return the {@link QueryConverter} for the bound values
+     * @throws ParseException when the values do not match the parameters or can not be normalized
+     */
+    public QueryConverter bind(Map<String, ?> namedValues) throws ParseException {
+        return bind(Collections.emptyList(), namedValues);
+    }
+
+    /**
+     * Bind the positional and the named parameters
+     * @param values the values for the <code>?</code> parameters, in the order they appear in the sql statement
+     * @param namedValues the values for the <code>:name</code> parameters
+     * @return the {@link QueryConverter} for the bound values
+     * @throws ParseException when the values do not match the parameters or can not be normalized
+     */
+    public QueryConverter bind(final List<?> values, final Map<String, ?> namedValues) throws ParseException {
+        SqlUtils.isTrue(values.size() == getParameterCount(),
+                "expected " + getParameterCount() + " positional parameter(s) but got " + values.size());
+        for (String name : parameterNames) {
+            SqlUtils.isTrue(namedValues.containsKey(name), "no value bound for parameter :" + name);
+        }
+
+        MongoDBQueryHolder mongoDBQueryHolder = template.getMongoQuery().copy(new DocumentUtils.ValueTransformer() {
+            @Override
+            public Object transform(Object value) throws ParseException {
+                if (BindParameter.class.isInstance(value)) {
+                    return getBoundValue((BindParameter) value, values, namedValues);
+                }
+                return value;
+            }
+        });
+        if (limitParameter != null) {
+            mongoDBQueryHolder.setLimit(getBoundLong(limitParameter, values, namedValues));
+        }
+        if (offsetParameter != null) {
+            mongoDBQueryHolder.setOffset(getBoundLong(offsetParameter, values, namedValues));
+        }
+        return template.withMongoQuery(mongoDBQueryHolder);
+    }
+
+    private static Object getBoundValue(BindParameter bindParameter, List<?> values,
+                                        Map<String, ?> namedValues) throws ParseException {
+        Object value = bindParameter.isNamed() ? namedValues.get(bindParameter.getName())
+                : values.get(bindParameter.getIndex() - 1);
+        return value != null ? SqlUtils.normalizeValue(value, bindParameter.getFieldType()) : null;
+    }
+
+    private static long getBoundLong(BindParameter bindParameter, List<?> values,
+                                     Map<String, ?> namedValues) throws ParseException {
+        Object value = getBoundValue(bindParameter, values, namedValues);
+        //the same range as a limit or an offset literal
+        SqlUtils.isTrue((value instanceof Long || value instanceof Integer) && ((Number) value).longValue() >= 0
+                        && ((Number) value).longValue() <= Integer.MAX_VALUE,
+                "parameter " + bindParameter + " must be bound to an integer from 0 to " + Integer.MAX_VALUE
+                        + " but was " + value);
+        return ((Number) value).longValue();
+    }
+}
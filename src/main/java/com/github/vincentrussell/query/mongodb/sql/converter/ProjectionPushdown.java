@@ -0,0 +1,218 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import com.google.common.collect.ImmutableSet;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Adds a <code>$project</code> stage after the first <code>$match</code> of an aggregation pipeline that only keeps
+ * the fields that the later stages read, so that the <code>$lookup</code>, <code>$unwind</code>, <code>$sort</code>
+ * and <code>$group</code> stages don't carry whole documents.  The fields are found by reading the later stages up to
+ * the first stage that replaces the documents, a <code>$group</code> or a <code>$project</code> that only includes
+ * fields.  The fields that the select items, the where clause, the group by, the order by and the join conditions
+ * refer to are all in those stages.  When a stage reads the whole document or can't be read, the pipeline is not
+ * changed.  Enable it with the <code>projectionPushdown</code> system property, see
+ * {@link QueryConverter#D_PROJECTION_PUSHDOWN}.
+ */
+final class ProjectionPushdown {
+
+    private static final Set<String> LOGICAL_OPERATORS = ImmutableSet.of("$and", "$or", "$nor");
+
+    private ProjectionPushdown() {
+    }
+
+    /**
+     * @param pipeline the pipeline, which is not modified
+     * @return the pipeline with the early <code>$project</code>, or the pipeline itself when the fields that are
+     * needed are not known or the next stage already replaces the documents
+     */
+    static List<Document> pushDown(List<Document> pipeline) {
+        int position = !pipeline.isEmpty() && pipeline.get(0).containsKey("$match") ? 1 : 0;
+        if (position == pipeline.size() || pipeline.get(position).containsKey("$group")
+                || pipeline.get(position).containsKey("$project")) {
+            return pipeline;
+        }
+        Set<String> fields = getRequiredFields(pipeline.subList(position, pipeline.size()));
+        if (fields == null) {
+            return pipeline;
+        }
+        Document projection = new Document();
+        for (String field : fields) {
+            projection.put(field, 1);
+        }
+        if (projection.isEmpty()) {
+            //a $project needs at least one field
+            projection.put("_id", 1);
+        }
+        List<Document> pushedDown = new ArrayList<>(pipeline.size() + 1);
+        pushedDown.addAll(pipeline.subList(0, position));
+        pushedDown.add(new Document("$project", projection));
+        pushedDown.addAll(pipeline.subList(position, pipeline.size()));
+        return pushedDown;
+    }
+
+    //the top level fields, because a projection of a.b and a together is a path collision.  The fields that a
+    //$lookup adds are left out, they don't have to be kept from the documents of the collection
+    private static Set<String> getRequiredFields(List<Document> stages) {
+        Set<String> fields = new TreeSet<>();
+        Set<String> addedFields = new HashSet<>();
+        for (Document stage : stages) {
+            if (stage.size() != 1) {
+                return null;
+            }
+            Map.Entry<String, Object> entry = stage.entrySet().iterator().next();
+            Object value = entry.getValue();
+            Set<String> stageFields = new HashSet<>();
+            boolean replacesDocuments = false;
+            switch (entry.getKey()) {
+                case "$match":
+                    if (!(value instanceof Document) || !addFilterFields((Document) value, stageFields)) {
+                        return null;
+                    }
+                    break;
+                case "$sort":
+                    if (!(value instanceof Document)) {
+                        return null;
+                    }
+                    addFields(((Document) value).keySet(), stageFields);
+                    break;
+                case "$skip":
+                case "$limit":
+                    break;
+                case "$unwind":
+                    if (!addReferences(value instanceof Document ? ((Document) value).get("path") : value,
+                            stageFields)) {
+                        return null;
+                    }
+                    break;
+                case "$lookup":
+                    if (!(value instanceof Document) || !addLookupFields((Document) value, stageFields)) {
+                        return null;
+                    }
+                    break;
+                case "$group":
+                    if (!addReferences(value, stageFields)) {
+                        return null;
+                    }
+                    replacesDocuments = true;
+                    break;
+                case "$project":
+                    if (!(value instanceof Document) || !addProjectionFields((Document) value, stageFields)) {
+                        return null;
+                    }
+                    replacesDocuments = true;
+                    break;
+                default:
+                    return null;
+            }
+            stageFields.removeAll(addedFields);
+            fields.addAll(stageFields);
+            if (replacesDocuments) {
+                return fields;
+            }
+            if ("$lookup".equals(entry.getKey()) && ((Document) value).get("as") instanceof String) {
+                addField((String) ((Document) value).get("as"), addedFields);
+            }
+        }
+        //the documents are returned as they are after the last stage
+        return null;
+    }
+
+    private static boolean addFilterFields(Document filter, Set<String> fields) {
+        for (Map.Entry<String, Object> entry : filter.entrySet()) {
+            String key = entry.getKey();
+            if (LOGICAL_OPERATORS.contains(key) && entry.getValue() instanceof List) {
+                for (Object operand : (List<?>) entry.getValue()) {
+                    if (!(operand instanceof Document) || !addFilterFields((Document) operand, fields)) {
+                        return false;
+                    }
+                }
+            } else if ("$expr".equals(key)) {
+                if (!addReferences(entry.getValue(), fields)) {
+                    return false;
+                }
+            } else if (key.startsWith("$")) {
+                //$text, $where and the like read the whole document
+                return false;
+            } else {
+                addField(key, fields);
+            }
+        }
+        return true;
+    }
+
+    //the fields that the stages of the pipeline of the lookup read belong to the joined collection
+    private static boolean addLookupFields(Document lookup, Set<String> fields) {
+        if (lookup.get("localField") instanceof String) {
+            addField((String) lookup.get("localField"), fields);
+        }
+        return lookup.get("let") == null || addReferences(lookup.get("let"), fields);
+    }
+
+    private static boolean addProjectionFields(Document projection, Set<String> fields) {
+        boolean includes = false;
+        for (Map.Entry<String, Object> entry : projection.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof Number || value instanceof Boolean) {
+                boolean included = value instanceof Boolean ? (Boolean) value : ((Number) value).doubleValue() != 0;
+                if (included) {
+                    addField(entry.getKey(), fields);
+                    includes = true;
+                } else if (!"_id".equals(entry.getKey())) {
+                    //an excluding projection returns every other field
+                    return false;
+                }
+            } else {
+                if (!addReferences(value, fields)) {
+                    return false;
+                }
+                includes = true;
+            }
+        }
+        return includes;
+    }
+
+    //the fields of the "$field" strings of an expression, false when it reads the whole document
+    private static boolean addReferences(Object expression, Set<String> fields) {
+        if (expression instanceof String) {
+            String string = (String) expression;
+            if (string.startsWith("$$")) {
+                return !string.startsWith("$$ROOT") && !string.startsWith("$$CURRENT");
+            } else if (string.startsWith("$")) {
+                addField(string.substring(1), fields);
+            }
+        } else if (expression instanceof Document) {
+            return addReferences(((Document) expression).values(), fields);
+        } else if (expression instanceof List) {
+            return addReferences((List<?>) expression, fields);
+        }
+        return true;
+    }
+
+    private static boolean addReferences(Collection<?> expressions, Set<String> fields) {
+        for (Object expression : expressions) {
+            if (!addReferences(expression, fields)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void addFields(Collection<String> paths, Set<String> fields) {
+        for (String path : paths) {
+            addField(path, fields);
+        }
+    }
+
+    private static void addField(String path, Set<String> fields) {
+        int dot = path.indexOf('.');
+        fields.add(dot != -1 ? path.substring(0, dot) : path);
+    }
+}
@@ -2,9 +2,13 @@ package com.github.vincentrussell.query.mongodb.sql.converter;
 
 import com.github.vincentrussell.query.mongodb.sql.converter.holder.ExpressionHolder;
 import com.github.vincentrussell.query.mongodb.sql.converter.holder.TablesHolder;
+import com.github.vincentrussell.query.mongodb.sql.converter.processor.AggregateFunctionTranslator;
+import com.github.vincentrussell.query.mongodb.sql.converter.processor.FunctionRegistry;
 import com.github.vincentrussell.query.mongodb.sql.converter.processor.JoinProcessor;
 import com.github.vincentrussell.query.mongodb.sql.converter.visitor.ExpVisitorEraseAliasTableBaseBuilder;
 import com.github.vincentrussell.query.mongodb.sql.converter.visitor.WhereVisitorMatchAndLookupPipelineMatchBuilder;
+import com.github.vincentrussell.query.mongodb.sql.converter.util.DocumentUtils;
+import com.github.vincentrussell.query.mongodb.sql.converter.util.ReusableSqlParser;
 import com.github.vincentrussell.query.mongodb.sql.converter.util.SqlUtils;
 import com.google.common.base.Charsets;
 import com.google.common.base.Joiner;
@@ -12,15 +16,19 @@ import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
+import com.mongodb.MongoInterruptedException;
 import com.mongodb.bulk.DeleteRequest;
 import com.mongodb.client.AggregateIterable;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.CountOptions;
 import com.mongodb.client.result.DeleteResult;
 import net.sf.jsqlparser.expression.Alias;
 import net.sf.jsqlparser.expression.Expression;
@@ -28,20 +36,27 @@ import net.sf.jsqlparser.expression.Function;
 import net.sf.jsqlparser.expression.CaseExpression;
 import net.sf.jsqlparser.expression.operators.arithmetic.Subtraction;
 import net.sf.jsqlparser.parser.CCJSqlParser;
+import net.sf.jsqlparser.parser.Provider;
 import net.sf.jsqlparser.parser.StreamProvider;
+import net.sf.jsqlparser.parser.StringProvider;
 import net.sf.jsqlparser.schema.Column;
 import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.Statement;
 import net.sf.jsqlparser.statement.select.*;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.mutable.MutableBoolean;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
 import org.bson.json.JsonMode;
 import org.bson.json.JsonWriterSettings;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.Reader;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -49,18 +64,46 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import static org.apache.commons.lang.StringUtils.isEmpty;
+import static org.apache.commons.lang.Validate.notNull;
 
+/**
+ * Converts a sql statement to a mongo query.  The converter never changes after it was created, but the
+ * {@link MongoDBQueryHolder} returned by {@link #getMongoQuery()} can be modified, and {@link #write(OutputStream)},
+ * {@link #run(MongoDatabase)} and {@link #compile()} use its current state.  A converter returned by
+ * {@link #toUnmodifiable()} or by a {@link QueryConverterCache} has an unmodifiable holder, so those methods can be
+ * called from any number of threads at the same time without copying the query.
+ */
 public class QueryConverter {
 
     public static final String D_AGGREGATION_ALLOW_DISK_USE = "aggregationAllowDiskUse";
     public static final String D_AGGREGATION_BATCH_SIZE = "aggregationBatchSize";
+    public static final String D_FAST_PATH_PARSER = "fastPathParser";
+    public static final String D_LIKE_PREFIX_RANGE = "likePrefixRange";
+    public static final String D_LIKE_PREFIX_RANGE_KEEP_REGEX = "likePrefixRangeKeepRegex";
+    public static final String D_OPTIMIZE_FILTER = "optimizeFilter";
+    public static final String D_SORT_IN_LISTS = "sortInLists";
+    public static final String D_IN_LIST_CHUNK_SIZE = "inListChunkSize";
+    public static final String D_IN_LIST_CHUNK_PARALLELISM = "inListChunkParallelism";
+    public static final String D_PROJECTION_PUSHDOWN = "projectionPushdown";
+    private static final DocumentCodec DOCUMENT_CODEC = new DocumentCodec();
+    private static ThreadPoolExecutor inListChunkExecutor;
     private final MongoDBQueryHolder mongoDBQueryHolder;
 
-    private final Map<String,FieldType> fieldNameToFieldTypeMapping;
+    private final FieldTypeResolver fieldTypeResolver;
+    private final FieldTypeResolver joinFieldTypeResolver;
     private final FieldType defaultFieldType;
     private final SQLCommandInfoHolder sqlCommandInfoHolder;
+    private volatile QueryPlan queryPlan;
 
     /**
      * Create a QueryConverter with a string
@@ -68,7 +111,7 @@ public class QueryConverter {
      * @throws ParseException when the sql query cannot be parsed
      */
     public QueryConverter(String sql) throws ParseException {
-        this(new ByteArrayInputStream(sql.getBytes(Charsets.UTF_8)), Collections.<String, FieldType>emptyMap(), FieldType.UNKNOWN);
+        this(sql, Collections.<String, FieldType>emptyMap(), FieldType.UNKNOWN);
     }
 
     /**
@@ -78,7 +121,7 @@ public class QueryConverter {
      * @throws ParseException when the sql query cannot be parsed
      */
     public QueryConverter(String sql, Map<String,FieldType> fieldNameToFieldTypeMapping) throws ParseException {
-        this(new ByteArrayInputStream(sql.getBytes(Charsets.UTF_8)),fieldNameToFieldTypeMapping, FieldType.UNKNOWN);
+        this(sql, fieldNameToFieldTypeMapping, FieldType.UNKNOWN);
     }
 
     /**
@@ -88,7 +131,7 @@ public class QueryConverter {
      * @throws ParseException
      */
     public QueryConverter(String sql, FieldType fieldType) throws ParseException {
-        this(new ByteArrayInputStream(sql.getBytes(Charsets.UTF_8)), Collections.<String, FieldType>emptyMap(), fieldType);
+        this(sql, Collections.<String, FieldType>emptyMap(), fieldType);
     }
 
     /**
@@ -99,7 +142,56 @@ public class QueryConverter {
      * @throws ParseException
      */
     public QueryConverter(String sql, Map<String, FieldType> fieldNameToFieldTypeMapping, FieldType defaultFieldType) throws ParseException {
-        this(new ByteArrayInputStream(sql.getBytes(Charsets.UTF_8)), fieldNameToFieldTypeMapping, defaultFieldType);
+        this(newSqlCommandInfoHolder(sql, defaultFieldType), FieldTypeResolver.of(fieldNameToFieldTypeMapping),
+                defaultFieldType);
+    }
+
+    /**
+     * Create a QueryConverter with a string and a compiled {@link FieldTypeResolver}
+     * @param sql the sql statement
+     * @param fieldTypeResolver the field types, see {@link FieldTypeResolver#compile(Map)}
+     * @param defaultFieldType the default {@link FieldType} to be used
+     * @throws ParseException when the sql query cannot be parsed
+     */
+    public QueryConverter(String sql, FieldTypeResolver fieldTypeResolver, FieldType defaultFieldType) throws ParseException {
+        this(newSqlCommandInfoHolder(sql, defaultFieldType), fieldTypeResolver, defaultFieldType);
+    }
+
+    /**
+     * Create a QueryConverter that uses the field types that were inferred for the collection in the from clause.
+     * Fields of joined collections are not inferred.
+     * @param sql the sql statement
+     * @param schemaInference the inferred field types of each collection
+     * @param defaultFieldType the default {@link FieldType} to be used for fields that were not inferred
+     * @throws ParseException when the sql query cannot be parsed or the from clause is not a collection
+     */
+    public QueryConverter(String sql, SchemaInference schemaInference, FieldType defaultFieldType) throws ParseException {
+        this(newSqlCommandInfoHolder(sql, defaultFieldType), schemaInference, defaultFieldType);
+    }
+
+    private QueryConverter(SQLCommandInfoHolder sqlCommandInfoHolder, SchemaInference schemaInference,
+                           FieldType defaultFieldType) throws ParseException {
+        //the conditions of the lookup sub-pipelines are on the fields of the joined collections
+        this(sqlCommandInfoHolder, schemaInference.getFieldTypeResolver(getInferredTable(sqlCommandInfoHolder)),
+                FieldTypeResolver.empty(), defaultFieldType);
+    }
+
+    private static String getInferredTable(SQLCommandInfoHolder sqlCommandInfoHolder) throws ParseException {
+        if (sqlCommandInfoHolder.getTable() == null) {
+            throw new ParseException("field types can only be inferred for a collection in the from clause");
+        }
+        return sqlCommandInfoHolder.getTable();
+    }
+
+    /**
+     * Create a QueryConverter with a CharSequence
+     * @param sql the sql statement
+     * @param fieldNameToFieldTypeMapping mapping for each field
+     * @param defaultFieldType the default {@link FieldType} to be used
+     * @throws ParseException when the sql query cannot be parsed
+     */
+    public QueryConverter(CharSequence sql, Map<String, FieldType> fieldNameToFieldTypeMapping, FieldType defaultFieldType) throws ParseException {
+        this(sql.toString(), fieldNameToFieldTypeMapping, defaultFieldType);
     }
 
     /**
@@ -120,29 +212,249 @@ public class QueryConverter {
      */
     public QueryConverter(InputStream inputStream, Map<String,FieldType> fieldNameToFieldTypeMapping,
                           FieldType defaultFieldType) throws ParseException {
+        this(newStreamProvider(inputStream), fieldNameToFieldTypeMapping, defaultFieldType);
+    }
+
+    /**
+     * Create a QueryConverter with a Reader
+     * @param reader a reader that has the sql statement in it
+     * @throws ParseException when the sql query cannot be parsed
+     */
+    public QueryConverter(Reader reader) throws ParseException {
+        this(reader, Collections.<String, FieldType>emptyMap(), FieldType.UNKNOWN);
+    }
+
+    /**
+     * Create a QueryConverter with a Reader
+     * @param reader a reader that has the sql statement in it
+     * @param fieldNameToFieldTypeMapping mapping for each field
+     * @param defaultFieldType the default {@link FieldType} to be used
+     * @throws ParseException when the sql query cannot be parsed
+     */
+    public QueryConverter(Reader reader, Map<String,FieldType> fieldNameToFieldTypeMapping,
+                          FieldType defaultFieldType) throws ParseException {
+        this(new StreamProvider(reader), fieldNameToFieldTypeMapping, defaultFieldType);
+    }
+
+    private QueryConverter(Provider provider, Map<String,FieldType> fieldNameToFieldTypeMapping,
+                           FieldType defaultFieldType) throws ParseException {
+        this(parseSingleStatement(provider), fieldNameToFieldTypeMapping, defaultFieldType);
+    }
+
+    /**
+     * Create a QueryConverter for a statement that has already been parsed.  The statement is not modified by the
+     * conversion, so the same statement can be converted again, with other field types or from other threads.
+     * @param statement the parsed sql statement
+     * @param fieldNameToFieldTypeMapping mapping for each field
+     * @param defaultFieldType the default {@link FieldType} to be used
+     * @throws ParseException when the sql query cannot be converted
+     */
+    public QueryConverter(Statement statement, Map<String,FieldType> fieldNameToFieldTypeMapping,
+                          FieldType defaultFieldType) throws ParseException {
+        this(newSqlCommandInfoHolder(statement, defaultFieldType), FieldTypeResolver.of(fieldNameToFieldTypeMapping),
+                defaultFieldType);
+    }
+
+    private QueryConverter(SQLCommandInfoHolder sqlCommandInfoHolder, FieldTypeResolver fieldTypeResolver,
+                           FieldType defaultFieldType) throws ParseException {
+        this(sqlCommandInfoHolder, fieldTypeResolver, fieldTypeResolver, defaultFieldType);
+    }
+
+    private QueryConverter(SQLCommandInfoHolder sqlCommandInfoHolder, FieldTypeResolver fieldTypeResolver,
+                           FieldTypeResolver joinFieldTypeResolver, FieldType defaultFieldType) throws ParseException {
+        this.defaultFieldType = defaultFieldType != null ? defaultFieldType : FieldType.UNKNOWN;
+        this.sqlCommandInfoHolder = sqlCommandInfoHolder;
+        this.fieldTypeResolver = fieldTypeResolver != null ? fieldTypeResolver : FieldTypeResolver.empty();
+        this.joinFieldTypeResolver = joinFieldTypeResolver != null ? joinFieldTypeResolver
+                : FieldTypeResolver.empty();
+
+        mongoDBQueryHolder = getMongoQueryInternal();
+        validate();
+    }
+
+    private static SQLCommandInfoHolder newSqlCommandInfoHolder(String sql, FieldType defaultFieldType)
+            throws ParseException {
+        if (Boolean.parseBoolean(System.getProperty(D_FAST_PATH_PARSER, "true"))) {
+            SQLCommandInfoHolder sqlCommandInfoHolder = FastPathSelectParser.parse(sql);
+            if (sqlCommandInfoHolder != null) {
+                return sqlCommandInfoHolder;
+            }
+        }
+        return newSqlCommandInfoHolder(parseSingleStatement(new StringProvider(sql)), defaultFieldType);
+    }
+
+    private static SQLCommandInfoHolder newSqlCommandInfoHolder(Statement statement, FieldType defaultFieldType)
+            throws ParseException {
         try {
-            StreamProvider streamProvider = new StreamProvider(inputStream, Charsets.UTF_8.name());
-            CCJSqlParser jSqlParser = new CCJSqlParser(streamProvider);
-            this.defaultFieldType = defaultFieldType != null ? defaultFieldType : FieldType.UNKNOWN;
-            this.sqlCommandInfoHolder = SQLCommandInfoHolder.Builder
-                    .create(defaultFieldType, fieldNameToFieldTypeMapping)
-                    .setJSqlParser(jSqlParser)
+            //the field types are only needed to convert the where clause, which the builder does not do
+            return SQLCommandInfoHolder.Builder
+                    .create(defaultFieldType, Collections.<String, FieldType>emptyMap())
+                    .setStatement(statement)
                     .build();
-            this.fieldNameToFieldTypeMapping = fieldNameToFieldTypeMapping != null
-                    ? fieldNameToFieldTypeMapping : Collections.<String, FieldType>emptyMap();
-
-            net.sf.jsqlparser.parser.Token nextToken = jSqlParser.getNextToken();
-            SqlUtils.isTrue(isEmpty(nextToken.image) || ";".equals(nextToken.image), "unable to parse complete sql string. one reason for this is the use of double equals (==)");
+        } catch (net.sf.jsqlparser.parser.ParseException e) {
+            throw SqlUtils.convertParseException(e);
+        }
+    }
 
-            mongoDBQueryHolder = getMongoQueryInternal();
-            validate();
+    private static Provider newStreamProvider(InputStream inputStream) throws ParseException {
+        try {
+            return new StreamProvider(inputStream, Charsets.UTF_8.name());
         } catch (IOException e) {
             throw new ParseException(e.getMessage());
+        }
+    }
+
+    static Statement parseSingleStatement(Provider provider) throws ParseException {
+        try {
+            CCJSqlParser jSqlParser = ReusableSqlParser.forInput(provider);
+            Statement statement = jSqlParser.Statement();
+
+            net.sf.jsqlparser.parser.Token nextToken = jSqlParser.getNextToken();
+            SqlUtils.isTrue(isEmpty(nextToken.image) || ";".equals(nextToken.image), "unable to parse complete sql string. one reason for this is the use of double equals (==)");
+            return statement;
         } catch (net.sf.jsqlparser.parser.ParseException e) {
             throw SqlUtils.convertParseException(e);
         }
     }
 
+    private QueryConverter(QueryConverter queryConverter, MongoDBQueryHolder mongoDBQueryHolder) {
+        this.fieldTypeResolver = queryConverter.fieldTypeResolver;
+        this.joinFieldTypeResolver = queryConverter.joinFieldTypeResolver;
+        this.defaultFieldType = queryConverter.defaultFieldType;
+        this.sqlCommandInfoHolder = queryConverter.sqlCommandInfoHolder;
+        this.mongoDBQueryHolder = mongoDBQueryHolder;
+    }
+
+    /**
+     * Prepare a sql statement that contains <code>?</code> and/or <code>:name</code> parameters.
+     * @param sql the sql statement
+     * @return the {@link PreparedQuery} that the parameters can be bound to
+     * @throws ParseException when the sql query cannot be parsed or has a parameter that can not be bound
+     */
+    public static PreparedQuery prepare(String sql) throws ParseException {
+        return prepare(sql, Collections.<String, FieldType>emptyMap(), FieldType.UNKNOWN);
+    }
+
+    /**
+     * Prepare a sql statement that contains <code>?</code> and/or <code>:name</code> parameters.
+     * @param sql the sql statement
+     * @param fieldNameToFieldTypeMapping mapping for each field
+     * @return the {@link PreparedQuery} that the parameters can be bound to
+     * @throws ParseException when the sql query cannot be parsed or has a parameter that can not be bound
+     */
+    public static PreparedQuery prepare(String sql, Map<String, FieldType> fieldNameToFieldTypeMapping) throws ParseException {
+        return prepare(sql, fieldNameToFieldTypeMapping, FieldType.UNKNOWN);
+    }
+
+    /**
+     * Prepare a sql statement that contains <code>?</code> and/or <code>:name</code> parameters.
+     * @param sql the sql statement
+     * @param fieldNameToFieldTypeMapping mapping for each field
+     * @param defaultFieldType the default {@link FieldType} to be used
+     * @return the {@link PreparedQuery} that the parameters can be bound to
+     * @throws ParseException when the sql query cannot be parsed or has a parameter that can not be bound
+     */
+    public static PreparedQuery prepare(String sql, Map<String, FieldType> fieldNameToFieldTypeMapping,
+                                        FieldType defaultFieldType) throws ParseException {
+        Statement statement = parseSingleStatement(new StringProvider(sql));
+        //checked before the conversion, because some of the places a parameter can't be bound in fail to convert
+        StatementParameters statementParameters = StatementParameters.of(statement);
+        QueryConverter queryConverter = new QueryConverter(statement, fieldNameToFieldTypeMapping, defaultFieldType);
+        return new PreparedQuery(queryConverter, queryConverter.sqlCommandInfoHolder.getLimitParameter(),
+                queryConverter.sqlCommandInfoHolder.getOffsetParameter(), statementParameters);
+    }
+
+    /**
+     * Convert many sql statements in parallel.  A statement that can not be converted does not stop the batch, its
+     * {@link BatchConversionResult} holds the {@link ParseException} instead.
+     * @param sqls the sql statements
+     * @param batchConversionOptions the options for the batch
+     * @return one result for each statement, in the same order as the statements
+     * @throws InterruptedException when the thread is interrupted while waiting for the batch
+     */
+    public static List<BatchConversionResult> convertAll(Iterable<String> sqls,
+                                                         final BatchConversionOptions batchConversionOptions)
+            throws InterruptedException {
+        List<Callable<BatchConversionResult>> tasks = new ArrayList<>();
+        int index = 0;
+        for (final String sql : sqls) {
+            final int statementIndex = index++;
+            tasks.add(new Callable<BatchConversionResult>() {
+                @Override
+                public BatchConversionResult call() {
+                    return convert(statementIndex, sql, batchConversionOptions);
+                }
+            });
+        }
+
+        ExecutorService executorService = batchConversionOptions.getExecutorService();
+        boolean shutdown = false;
+        if (executorService == null) {
+            executorService = new ForkJoinPool(batchConversionOptions.getParallelism());
+            shutdown = true;
+        }
+        try {
+            List<BatchConversionResult> results = new ArrayList<>(tasks.size());
+            for (Future<BatchConversionResult> future : executorService.invokeAll(tasks)) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            if (shutdown) {
+                executorService.shutdown();
+            }
+        }
+    }
+
+    private static BatchConversionResult convert(int index, String sql, BatchConversionOptions batchConversionOptions) {
+        try {
+            QueryConverterCache queryConverterCache = batchConversionOptions.getQueryConverterCache();
+            QueryConverter queryConverter = queryConverterCache != null
+                    ? queryConverterCache.get(sql, batchConversionOptions.getFieldNameToFieldTypeMapping(),
+                    batchConversionOptions.getDefaultFieldType())
+                    : new QueryConverter(sql, batchConversionOptions.getFieldNameToFieldTypeMapping(),
+                    batchConversionOptions.getDefaultFieldType());
+            String shellText = null;
+            if (batchConversionOptions.isWriteShellText()) {
+                ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+                queryConverter.write(byteArrayOutputStream);
+                shellText = byteArrayOutputStream.toString(Charsets.UTF_8.name());
+            }
+            return new BatchConversionResult(index, sql, queryConverter, shellText, null);
+        } catch (ParseException e) {
+            return new BatchConversionResult(index, sql, null, null, e);
+        } catch (IOException | RuntimeException e) {
+            ParseException parseException = new ParseException(e.getMessage());
+            parseException.initCause(e);
+            return new BatchConversionResult(index, sql, null, null, parseException);
+        }
+    }
+
+    /**
+     * Create a copy of this converter with a different {@link MongoDBQueryHolder}.
+     * @param mongoDBQueryHolder the holder for the copy
+     * @return the copy
+     */
+    QueryConverter withMongoQuery(MongoDBQueryHolder mongoDBQueryHolder) {
+        return new QueryConverter(this, mongoDBQueryHolder);
+    }
+
+    /**
+     * Create a copy of this converter whose {@link MongoDBQueryHolder} can not be modified.  The copy can be shared
+     * between threads without copying the converted query again; see {@link MongoDBQueryHolder#toUnmodifiable()}.
+     * @return the unmodifiable copy, or this converter if its {@link MongoDBQueryHolder} is already unmodifiable
+     */
+    public QueryConverter toUnmodifiable() {
+        if (mongoDBQueryHolder.isUnmodifiable()) {
+            return this;
+        }
+        return new QueryConverter(this, mongoDBQueryHolder.toUnmodifiable());
+    }
+
     private void validate() throws ParseException {
         List<SelectItem> selectItems = sqlCommandInfoHolder.getSelectItems();
         List<SelectItem> filteredItems = Lists.newArrayList(Iterables.filter(selectItems, new Predicate<SelectItem>() {
@@ -224,7 +536,7 @@ public class QueryConverter {
         }
         
         if (sqlCommandInfoHolder.getJoins() != null) {
-        	mongoDBQueryHolder.setJoinPipeline(JoinProcessor.toPipelineSteps(sqlCommandInfoHolder.getTablesHolder(), sqlCommandInfoHolder.getJoins(), sqlCommandInfoHolder.getWhereClause()));
+        	mongoDBQueryHolder.setJoinPipeline(JoinProcessor.toPipelineSteps(sqlCommandInfoHolder.getTablesHolder(), sqlCommandInfoHolder.getJoins(), sqlCommandInfoHolder.getWhereClause(), defaultFieldType, joinFieldTypeResolver));
         }
 
         if (sqlCommandInfoHolder.getOrderByElements()!=null && sqlCommandInfoHolder.getOrderByElements().size() > 0) {
@@ -232,12 +544,14 @@ public class QueryConverter {
         }
 
         if (sqlCommandInfoHolder.getWhereClause()!=null) {
-            WhereCauseProcessor whereCauseProcessor = new WhereCauseProcessor(defaultFieldType,
-                    fieldNameToFieldTypeMapping);
+            WhereCauseProcessor whereCauseProcessor = new WhereCauseProcessor(defaultFieldType, fieldTypeResolver);
             Expression preprocessedWhere = preprocessWhere(sqlCommandInfoHolder.getWhereClause(), sqlCommandInfoHolder.getTablesHolder());
             if(preprocessedWhere != null) {//can't be null because of where of joined tables
-            	mongoDBQueryHolder.setQuery((Document) whereCauseProcessor
-                    .parseExpression(new Document(), preprocessedWhere , null));
+            	Document query = (Document) whereCauseProcessor.parseExpression(new Document(), preprocessedWhere, null);
+            	if (Boolean.parseBoolean(System.getProperty(D_OPTIMIZE_FILTER, "false"))) {
+            	    query = FilterOptimizer.optimize(query);
+            	}
+            	mongoDBQueryHolder.setQuery(query);
             }
         }
         mongoDBQueryHolder.setOffset(sqlCommandInfoHolder.getOffset());
@@ -246,8 +560,8 @@ public class QueryConverter {
         return mongoDBQueryHolder;
     }
     
-    //Erase table base alias and get where part of main table when joins
-    private Expression preprocessWhere(Expression exp, TablesHolder tholder){
+    //Erase table base alias in a copy of the where clause and get where part of main table when joins
+    private Expression preprocessWhere(Expression exp, TablesHolder tholder) throws ParseException {
     	if(sqlCommandInfoHolder.getJoins()!=null && !sqlCommandInfoHolder.getJoins().isEmpty()) {
     		ExpressionHolder partialWhereExpHolder = new ExpressionHolder(null);
     		MutableBoolean haveOrExpression = new MutableBoolean(false);
@@ -257,26 +571,27 @@ public class QueryConverter {
 			}
 			exp = partialWhereExpHolder.getExpression();
         }
-    	if(exp != null) {
-    		exp.accept(new ExpVisitorEraseAliasTableBaseBuilder(tholder.getBaseAliasTable()));
-    	}
-    	return exp;
+    	return new ExpVisitorEraseAliasTableBaseBuilder(tholder.getBaseAliasTable()).transform(exp);
     }
     
-    //Erase table base alias
-    private List<OrderByElement> preprocessOrderBy(List<OrderByElement> lord, TablesHolder tholder){
+    //Erase table base alias in a copy of the order by elements
+    private List<OrderByElement> preprocessOrderBy(List<OrderByElement> lord, TablesHolder tholder) throws ParseException {
+    	ExpVisitorEraseAliasTableBaseBuilder eraseAlias = new ExpVisitorEraseAliasTableBaseBuilder(tholder.getBaseAliasTable());
+    	List<OrderByElement> lordEraseAlias = new ArrayList<>(lord.size());
     	for(OrderByElement ord : lord) {
-    		ord.getExpression().accept(new ExpVisitorEraseAliasTableBaseBuilder(tholder.getBaseAliasTable()));
+    		lordEraseAlias.add(eraseAlias.transform(ord));
     	}
-    	return lord;
+    	return lordEraseAlias;
     }
     
-    //Erase table base alias
-    private List<SelectItem> preprocessSelect(List<SelectItem> lsel, TablesHolder tholder){
+    //Erase table base alias in a copy of the select items
+    private List<SelectItem> preprocessSelect(List<SelectItem> lsel, TablesHolder tholder) throws ParseException {
+    	ExpVisitorEraseAliasTableBaseBuilder eraseAlias = new ExpVisitorEraseAliasTableBaseBuilder(tholder.getBaseAliasTable());
+    	List<SelectItem> lselEraseAlias = new ArrayList<>(lsel.size());
     	for(SelectItem sel : lsel) {
-    		sel.accept(new ExpVisitorEraseAliasTableBaseBuilder(tholder.getBaseAliasTable()));
+    		lselEraseAlias.add(eraseAlias.transform(sel));
     	}
-    	return lsel;
+    	return lselEraseAlias;
     }
     
   //Erase table base alias
@@ -479,6 +794,20 @@ public class QueryConverter {
     }
     
     private void parseFunctionForAggregation(Function function, Document document, List<String> groupBys, Alias alias) throws ParseException {
+        String field = getAggregateField(function);
+        AggregateFunctionTranslator translator = getAggregateFunctionTranslator(function);
+        document.put(alias == null ? translator.getOutputName(field) : alias.getName(), translator.translate(field));
+    }
+
+    private static AggregateFunctionTranslator getAggregateFunctionTranslator(Function function) throws ParseException {
+        AggregateFunctionTranslator translator = FunctionRegistry.getAggregateFunctionTranslator(function.getName());
+        if (translator == null) {
+            throw new ParseException("could not understand function:" + function.getName());
+        }
+        return translator;
+    }
+
+    private static String getAggregateField(Function function) throws ParseException {
         List<String> parameters = function.getParameters()== null ? Collections.<String>emptyList() : Lists.transform(function.getParameters().getExpressions(), new com.google.common.base.Function<Expression, String>() {
             @Override
             public String apply(Expression expression) {
@@ -488,29 +817,9 @@ public class QueryConverter {
         if (parameters.size() > 1) {
             throw new ParseException(function.getName()+" function can only have one parameter");
         }
-        String field = parameters.size() > 0 ? Iterables.get(parameters, 0).replaceAll("\\.","_") : null;
-        if ("sum".equals(function.getName().toLowerCase())) {
-            createFunction( alias,"sum",field, document,"$"+ field);
-        } else if ("avg".equals(function.getName().toLowerCase())) {
-            createFunction(alias,(alias == null?"avg":alias.getName()),field, document,"$"+ field);
-        } else if ("count".equals(function.getName().toLowerCase())) {
-            document.put((alias == null?"count":alias.getName()),new Document("$sum",1));
-        } else if ("min".equals(function.getName().toLowerCase())) {
-            createFunction(alias,"min",field, document,"$"+ field);
-        } else if ("max".equals(function.getName().toLowerCase())) {
-            createFunction(alias,"max",field, document,"$"+ field);
-        } else {
-            throw new ParseException("could not understand function:" + function.getName());
-        }
-    }
-
-    private void createFunction(Alias alias, String functionName, String field, Document document, Object value) throws ParseException {
-        String keyName = alias == null?functionName + "_"+field:alias.getName();
-        SqlUtils.isTrue(field!=null,"function "+ functionName + " must contain a single field to run on");
-        document.put(keyName,new Document("$"+functionName,value));
+        return parameters.size() > 0 ? Iterables.get(parameters, 0).replaceAll("\\.","_") : null;
     }
 
-
     /**
      * Build a mongo shell statement with the code to run the specified query.
      * @param outputStream the {@link java.io.OutputStream} to write the data to
@@ -522,42 +831,11 @@ public class QueryConverter {
             IOUtils.write("db." + mongoDBQueryHolder.getCollection() + ".distinct(", outputStream);
             IOUtils.write("\""+getDistinctFieldName(mongoDBQueryHolder) + "\"", outputStream);
             IOUtils.write(" , ", outputStream);
-            IOUtils.write(prettyPrintJson(mongoDBQueryHolder.getQuery().toJson()), outputStream);
-        } else if (!sqlCommandInfoHolder.getAliasHash().isEmpty() || sqlCommandInfoHolder.getGoupBys().size() > 0 || (sqlCommandInfoHolder.getJoins() != null && sqlCommandInfoHolder.getJoins().size() > 0)) {
+            IOUtils.write(prettyPrintJson(mongoDBQueryHolder.getSharedQuery().toJson()), outputStream);
+        } else if (isAggregation()) {
             IOUtils.write("db." + mongoDBQueryHolder.getCollection() + ".aggregate(", outputStream);
             IOUtils.write("[", outputStream);
-            List<Document> documents = new ArrayList<>();
-            documents.add(new Document("$match",mongoDBQueryHolder.getQuery()));
-            
-            if(sqlCommandInfoHolder.getJoins() != null && !sqlCommandInfoHolder.getJoins().isEmpty()) {
-            	documents.addAll(mongoDBQueryHolder.getJoinPipeline());
-            }
-            
-            if(!sqlCommandInfoHolder.getGoupBys().isEmpty()) {
-            	documents.add(new Document("$group",mongoDBQueryHolder.getProjection()));
-            }
-            
-            if (mongoDBQueryHolder.getSort()!=null && mongoDBQueryHolder.getSort().size() > 0) {
-                documents.add(new Document("$sort",mongoDBQueryHolder.getSort()));
-            }
-            
-            if (mongoDBQueryHolder.getOffset()!= -1) {
-                documents.add(new Document("$skip",mongoDBQueryHolder.getOffset()));
-            }
-
-            if (mongoDBQueryHolder.getLimit()!= -1) {
-                documents.add(new Document("$limit",mongoDBQueryHolder.getLimit()));
-            }
-            
-            Document aliasProjection = mongoDBQueryHolder.getAliasProjection();
-            if(!aliasProjection.isEmpty()) {
-            	documents.add(new Document("$project",aliasProjection));
-            }
-            
-            if(sqlCommandInfoHolder.getGoupBys().isEmpty()) {//Alias no group
-            	Document projection = mongoDBQueryHolder.getProjection();
-            	documents.add(new Document("$project",projection));
-            }
+            List<Document> documents = getAggregationPipeline(mongoDBQueryHolder, mongoDBQueryHolder.getSharedQuery(), true);
 
             IOUtils.write(Joiner.on(",").join(Lists.transform(documents, new com.google.common.base.Function<Document, String>() {
                 @Override
@@ -568,12 +846,14 @@ public class QueryConverter {
             IOUtils.write("]", outputStream);
 
             Document options = new Document();
-            if (System.getProperty(D_AGGREGATION_ALLOW_DISK_USE)!=null) {
-                options.put("allowDiskUse",Boolean.valueOf(System.getProperty(D_AGGREGATION_ALLOW_DISK_USE)));
+            Boolean allowDiskUse = getAggregationAllowDiskUse();
+            if (allowDiskUse!=null) {
+                options.put("allowDiskUse",allowDiskUse);
             }
 
-            if (System.getProperty(D_AGGREGATION_BATCH_SIZE)!=null) {
-                options.put("cursor",new Document("batchSize",Integer.valueOf(System.getProperty(D_AGGREGATION_BATCH_SIZE))));
+            Integer batchSize = getAggregationBatchSize();
+            if (batchSize!=null) {
+                options.put("cursor",new Document("batchSize",batchSize));
             }
 
             if (options.size() > 0) {
@@ -585,21 +865,21 @@ public class QueryConverter {
 
         } else if (sqlCommandInfoHolder.isCountAll()) {
             IOUtils.write("db." + mongoDBQueryHolder.getCollection() + ".count(", outputStream);
-            IOUtils.write(prettyPrintJson(mongoDBQueryHolder.getQuery().toJson()), outputStream);
+            IOUtils.write(prettyPrintJson(mongoDBQueryHolder.getSharedQuery().toJson()), outputStream);
         } else {
             IOUtils.write("db." + mongoDBQueryHolder.getCollection() + ".find(", outputStream);
-            IOUtils.write(prettyPrintJson(mongoDBQueryHolder.getQuery().toJson()), outputStream);
-            if (mongoDBQueryHolder.getProjection() != null && mongoDBQueryHolder.getProjection().size() > 0) {
+            IOUtils.write(prettyPrintJson(mongoDBQueryHolder.getSharedQuery().toJson()), outputStream);
+            if (mongoDBQueryHolder.getSharedProjection() != null && mongoDBQueryHolder.getSharedProjection().size() > 0) {
                 IOUtils.write(" , ", outputStream);
-                IOUtils.write(prettyPrintJson(mongoDBQueryHolder.getProjection().toJson()), outputStream);
+                IOUtils.write(prettyPrintJson(mongoDBQueryHolder.getSharedProjection().toJson()), outputStream);
             }
         }
         IOUtils.write(")", outputStream);
 
-        if (mongoDBQueryHolder.getSort()!=null && mongoDBQueryHolder.getSort().size() > 0
+        if (mongoDBQueryHolder.getSharedSort()!=null && mongoDBQueryHolder.getSharedSort().size() > 0
                 && !sqlCommandInfoHolder.isCountAll() && !sqlCommandInfoHolder.isDistinct() && sqlCommandInfoHolder.getGoupBys().isEmpty() && sqlCommandInfoHolder.getAliasHash().isEmpty()) {
             IOUtils.write(".sort(", outputStream);
-            IOUtils.write(prettyPrintJson(mongoDBQueryHolder.getSort().toJson()), outputStream);
+            IOUtils.write(prettyPrintJson(mongoDBQueryHolder.getSharedSort().toJson()), outputStream);
             IOUtils.write(")", outputStream);
         }
         
@@ -620,8 +900,141 @@ public class QueryConverter {
         }
     }
 
+    /**
+     * Choose the index of the collection in the from clause that fits the filter and the sort of this query best,
+     * order the conditions of the filter like the keys of that index and collect the parts of the query that can't
+     * use an index.  The sort is only looked at when it is done on the documents of the collection, so not after a
+     * join or a group by.
+     * @param indexCatalog the indexes of the collections
+     * @return the {@link IndexPlan}
+     */
+    public IndexPlan plan(IndexCatalog indexCatalog) {
+        IndexPlan indexPlan = planShared(indexCatalog);
+        return new IndexPlan(DocumentUtils.deepCopy(indexPlan.getQuery()), indexPlan.getIndex(),
+                indexPlan.getWarnings());
+    }
+
+    //the filter of the plan shares its values with the query of the holder, so it is only read
+    private IndexPlan planShared(IndexCatalog indexCatalog) {
+        notNull(indexCatalog, "indexCatalog is null");
+        MongoDBQueryHolder mongoDBQueryHolder = getMongoQuery();
+        boolean sortsCollection = SQLCommandType.SELECT.equals(mongoDBQueryHolder.getSqlCommandType())
+                && !mongoDBQueryHolder.isDistinct() && !mongoDBQueryHolder.isCountAll()
+                && sqlCommandInfoHolder.getGoupBys().isEmpty()
+                && (sqlCommandInfoHolder.getJoins() == null || sqlCommandInfoHolder.getJoins().isEmpty());
+        return IndexPlanner.plan(mongoDBQueryHolder.getCollection(), mongoDBQueryHolder.getSharedQuery(),
+                sortsCollection ? mongoDBQueryHolder.getSharedSort() : null,
+                sortsCollection ? mongoDBQueryHolder.getLimit() : -1,
+                indexCatalog.getIndexes(mongoDBQueryHolder.getCollection()));
+    }
+
+    /**
+     * Prepare this query for execution.  The filter, projection, sort and aggregation pipeline are encoded to BSON
+     * once and the {@link #D_AGGREGATION_ALLOW_DISK_USE} and {@link #D_AGGREGATION_BATCH_SIZE} system properties are
+     * read once, so the returned plan can be run many times without doing that work again.  Changes made to the
+     * {@link MongoDBQueryHolder} after the plan was compiled are not seen by the plan.
+     * @return the {@link QueryPlan}
+     */
+    public QueryPlan compile() {
+        QueryPlan plan = queryPlan;
+        if (plan != null) {
+            return plan;
+        }
+        plan = compileInternal();
+        if (mongoDBQueryHolder.isUnmodifiable()) {
+            queryPlan = plan;
+        }
+        return plan;
+    }
+
+    private QueryPlan compileInternal() {
+        MongoDBQueryHolder mongoDBQueryHolder = getMongoQuery();
+        QueryPlan.Operation operation;
+        List<RawBsonDocument> pipeline = Collections.emptyList();
+        if (SQLCommandType.DELETE.equals(mongoDBQueryHolder.getSqlCommandType())) {
+            operation = QueryPlan.Operation.DELETE;
+        } else if (mongoDBQueryHolder.isDistinct()) {
+            operation = QueryPlan.Operation.DISTINCT;
+        } else if (mongoDBQueryHolder.isCountAll()) {
+            operation = QueryPlan.Operation.COUNT;
+        } else if (isAggregation()) {
+            operation = QueryPlan.Operation.AGGREGATE;
+            List<RawBsonDocument> encodedPipeline = new ArrayList<>();
+            for (Document document : getAggregationPipeline(mongoDBQueryHolder, mongoDBQueryHolder.getSharedQuery(), false)) {
+                encodedPipeline.add(toRawBsonDocument(document));
+            }
+            pipeline = Collections.unmodifiableList(encodedPipeline);
+        } else {
+            operation = QueryPlan.Operation.FIND;
+        }
+        Document sort = mongoDBQueryHolder.getSharedSort();
+        return new QueryPlan(operation, mongoDBQueryHolder.getCollection(),
+                QueryPlan.Operation.DISTINCT.equals(operation) ? getDistinctFieldName(mongoDBQueryHolder) : null,
+                toRawBsonDocument(mongoDBQueryHolder.getSharedQuery()), toRawBsonDocument(mongoDBQueryHolder.getSharedProjection()),
+                sort != null && sort.size() > 0 ? toRawBsonDocument(sort) : null, pipeline,
+                mongoDBQueryHolder.getOffset(), mongoDBQueryHolder.getLimit(),
+                getAggregationAllowDiskUse(), getAggregationBatchSize());
+    }
+
+    private static RawBsonDocument toRawBsonDocument(Document document) {
+        return new RawBsonDocument(document, DOCUMENT_CODEC);
+    }
+
+    private boolean isAggregation() {
+        return !sqlCommandInfoHolder.getAliasHash().isEmpty() || sqlCommandInfoHolder.getGoupBys().size() > 0
+                || (sqlCommandInfoHolder.getJoins() != null && !sqlCommandInfoHolder.getJoins().isEmpty());
+    }
+
+    private List<Document> getAggregationPipeline(MongoDBQueryHolder mongoDBQueryHolder, Document query,
+                                                  boolean includeEmptyMatch) {
+        List<Document> documents = new ArrayList<>();
+        if (includeEmptyMatch || (query != null && query.size() > 0)) {
+            documents.add(new Document("$match", query));
+        }
+        if(sqlCommandInfoHolder.getJoins() != null && !sqlCommandInfoHolder.getJoins().isEmpty()) {
+            documents.addAll(mongoDBQueryHolder.getSharedJoinPipeline());
+        }
+        if(!sqlCommandInfoHolder.getGoupBys().isEmpty()) {
+            documents.add(new Document("$group", mongoDBQueryHolder.getSharedProjection()));
+        }
+        if (mongoDBQueryHolder.getSharedSort() != null && mongoDBQueryHolder.getSharedSort().size() > 0) {
+            documents.add(new Document("$sort", mongoDBQueryHolder.getSharedSort()));
+        }
+        if (mongoDBQueryHolder.getOffset() != -1) {
+            documents.add(new Document("$skip", mongoDBQueryHolder.getOffset()));
+        }
+        if (mongoDBQueryHolder.getLimit() != -1) {
+            documents.add(new Document("$limit", mongoDBQueryHolder.getLimit()));
+        }
+
+        Document aliasProjection = mongoDBQueryHolder.getSharedAliasProjection();
+        if(!aliasProjection.isEmpty()) {//Alias Group by
+            documents.add(new Document("$project",aliasProjection));
+        }
+
+        if(sqlCommandInfoHolder.getGoupBys().isEmpty()) {//Alias no group
+            Document projection = mongoDBQueryHolder.getSharedProjection();
+            documents.add(new Document("$project",projection));
+        }
+
+        if (Boolean.parseBoolean(System.getProperty(D_PROJECTION_PUSHDOWN, "false"))) {
+            return ProjectionPushdown.pushDown(documents);
+        }
+        return documents;
+    }
+
+    private static Boolean getAggregationAllowDiskUse() {
+        String allowDiskUse = System.getProperty(D_AGGREGATION_ALLOW_DISK_USE);
+        return allowDiskUse != null ? Boolean.valueOf(allowDiskUse) : null;
+    }
+
+    private static Integer getAggregationBatchSize() {
+        String batchSize = System.getProperty(D_AGGREGATION_BATCH_SIZE);
+        return batchSize != null ? Integer.valueOf(batchSize) : null;
+    }
+
     private String getDistinctFieldName(MongoDBQueryHolder mongoDBQueryHolder) {
-        return Iterables.get(mongoDBQueryHolder.getProjection().keySet(),0);
+        return Iterables.get(mongoDBQueryHolder.getSharedProjection().keySet(),0);
     }
 
     /**
@@ -631,63 +1044,65 @@ public class QueryConverter {
      *           When query does a count will return a Long
      *           When query does a distinct will return QueryResultIterator&lt;{@link java.lang.String}&gt;
      */
-    @SuppressWarnings("unchecked")
     public <T> T run(MongoDatabase mongoDatabase) {
+        return run(mongoDatabase, null);
+    }
+
+    /**
+     * Run the query with the filter and the hint of its {@link #plan(IndexCatalog)}.  Deletes and distinct queries
+     * are run without a hint.
+     * @param mongoDatabase the database to run the query against.
+     * @param indexCatalog the indexes of the collections, or null to run the query as it was converted
+     * @param <T> variable based on the type of query run.
+     * @return the same as {@link #run(MongoDatabase)}
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T run(MongoDatabase mongoDatabase, IndexCatalog indexCatalog) {
         MongoDBQueryHolder mongoDBQueryHolder = getMongoQuery();
+        IndexPlan indexPlan = indexCatalog != null ? planShared(indexCatalog) : null;
+        Document query = indexPlan != null ? indexPlan.getQuery() : mongoDBQueryHolder.getSharedQuery();
+        Document hint = indexPlan != null && indexPlan.getIndex() != null ? indexPlan.getIndex().getSharedKeys() : null;
 
         MongoCollection mongoCollection = mongoDatabase.getCollection(mongoDBQueryHolder.getCollection());
 
         if (SQLCommandType.SELECT.equals(mongoDBQueryHolder.getSqlCommandType())) {
             if (mongoDBQueryHolder.isDistinct()) {
-                return (T) new QueryResultIterator<>(mongoCollection.distinct(getDistinctFieldName(mongoDBQueryHolder), mongoDBQueryHolder.getQuery(), String.class));
+                return (T) new QueryResultIterator<>(mongoCollection.distinct(getDistinctFieldName(mongoDBQueryHolder), query, String.class));
             } else if (mongoDBQueryHolder.isCountAll()) {
-                return (T) Long.valueOf(mongoCollection.count(mongoDBQueryHolder.getQuery()));
-            } else if (!sqlCommandInfoHolder.getAliasHash().isEmpty() || sqlCommandInfoHolder.getGoupBys().size() > 0 || (sqlCommandInfoHolder.getJoins() != null && !sqlCommandInfoHolder.getJoins().isEmpty())) {
-                List<Document> documents = new ArrayList<>();
-                if (mongoDBQueryHolder.getQuery() != null && mongoDBQueryHolder.getQuery().size() > 0) {
-                    documents.add(new Document("$match", mongoDBQueryHolder.getQuery()));
-                }
-                if(sqlCommandInfoHolder.getJoins() != null && !sqlCommandInfoHolder.getJoins().isEmpty()) {
-                	documents.addAll(mongoDBQueryHolder.getJoinPipeline());
-                }
-                if(!sqlCommandInfoHolder.getGoupBys().isEmpty()) {
-                	documents.add(new Document("$group", mongoDBQueryHolder.getProjection()));
-                }
-                if (mongoDBQueryHolder.getSort() != null && mongoDBQueryHolder.getSort().size() > 0) {
-                    documents.add(new Document("$sort", mongoDBQueryHolder.getSort()));
+                if (hint != null) {
+                    return (T) Long.valueOf(mongoCollection.count(query, new CountOptions().hint(hint)));
                 }
-                if (mongoDBQueryHolder.getOffset() != -1) {
-                    documents.add(new Document("$skip", mongoDBQueryHolder.getOffset()));
-                }
-                if (mongoDBQueryHolder.getLimit() != -1) {
-                    documents.add(new Document("$limit", mongoDBQueryHolder.getLimit()));
-                }
-                
-                Document aliasProjection = mongoDBQueryHolder.getAliasProjection();
-                if(!aliasProjection.isEmpty()) {//Alias Group by
-                	documents.add(new Document("$project",aliasProjection));
+                return (T) Long.valueOf(mongoCollection.count(query));
+            } else if (isAggregation()) {
+                AggregateIterable aggregate = mongoCollection.aggregate(getAggregationPipeline(mongoDBQueryHolder, query, false));
+                if (hint != null) {
+                    aggregate.hint(hint);
                 }
-                
-                if(sqlCommandInfoHolder.getGoupBys().isEmpty()) {//Alias no group
-                	Document projection = mongoDBQueryHolder.getProjection();
-                	documents.add(new Document("$project",projection));
-                }
-                
-                AggregateIterable aggregate = mongoCollection.aggregate(documents);
 
-                if (System.getProperty(D_AGGREGATION_ALLOW_DISK_USE) != null) {
-                    aggregate.allowDiskUse(Boolean.valueOf(System.getProperty(D_AGGREGATION_ALLOW_DISK_USE)));
+                Boolean allowDiskUse = getAggregationAllowDiskUse();
+                if (allowDiskUse != null) {
+                    aggregate.allowDiskUse(allowDiskUse);
                 }
 
-                if (System.getProperty(D_AGGREGATION_BATCH_SIZE) != null) {
-                    aggregate.batchSize(Integer.valueOf(System.getProperty(D_AGGREGATION_BATCH_SIZE)));
+                Integer batchSize = getAggregationBatchSize();
+                if (batchSize != null) {
+                    aggregate.batchSize(batchSize);
                 }
 
                 return (T) new QueryResultIterator<>(aggregate);
             } else {
-                FindIterable findIterable = mongoCollection.find(mongoDBQueryHolder.getQuery()).projection(mongoDBQueryHolder.getProjection());
-                if (mongoDBQueryHolder.getSort() != null && mongoDBQueryHolder.getSort().size() > 0) {
-                    findIterable.sort(mongoDBQueryHolder.getSort());
+                boolean sorted = mongoDBQueryHolder.getSharedSort() != null && mongoDBQueryHolder.getSharedSort().size() > 0;
+                List<Document> filters = sorted || mongoDBQueryHolder.getOffset() != -1 || mongoDBQueryHolder.getLimit() != -1
+                        ? Collections.singletonList(query) : InListSplitter.split(query, getInListChunkSize());
+                if (filters.size() > 1) {
+                    return (T) findChunked(mongoCollection, filters, mongoDBQueryHolder.getSharedProjection(), hint);
+                }
+                FindIterable findIterable = mongoCollection.find(query).projection(mongoDBQueryHolder.getSharedProjection());
+                if (hint != null) {
+                    findIterable.hint(hint);
+                }
+                if (sorted) {
+                    findIterable.sort(mongoDBQueryHolder.getSharedSort());
                 }
                 if (mongoDBQueryHolder.getOffset() != -1) {
                     findIterable.skip((int) mongoDBQueryHolder.getOffset());
@@ -699,13 +1114,119 @@ public class QueryConverter {
                 return (T) new QueryResultIterator<>(findIterable);
             }
         } else if (SQLCommandType.DELETE.equals(mongoDBQueryHolder.getSqlCommandType())) {
-            DeleteResult deleteResult = mongoCollection.deleteMany(mongoDBQueryHolder.getQuery());
+            List<Document> filters = InListSplitter.split(query, getInListChunkSize());
+            if (filters.size() > 1) {
+                return (T) Long.valueOf(deleteChunked(mongoCollection, filters));
+            }
+            DeleteResult deleteResult = mongoCollection.deleteMany(query);
             return (T)((Long)deleteResult.getDeletedCount());
         } else {
             throw new UnsupportedOperationException("SQL command type not supported");
         }
     }
     
+    static int getInListChunkSize() {
+        return getIntProperty(D_IN_LIST_CHUNK_SIZE, 0, 0);
+    }
+
+    static int getInListChunkParallelism() {
+        return getIntProperty(D_IN_LIST_CHUNK_PARALLELISM, Runtime.getRuntime().availableProcessors(), 1);
+    }
+
+    private static int getIntProperty(String name, int defaultValue, int minimum) {
+        String value = System.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int number = Integer.parseInt(value.trim());
+            if (number >= minimum) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            //same message as a number that is too small
+        }
+        throw new IllegalArgumentException("the " + name + " system property must be a number of at least "
+                + minimum + ", but is '" + value + "'");
+    }
+
+    //shared by every chunked query, its idle threads end, so it doesn't keep any thread while nothing is split
+    static synchronized ExecutorService getInListChunkExecutor(int parallelism) {
+        if (inListChunkExecutor == null) {
+            inListChunkExecutor = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("in-list-chunk-%d").build());
+            inListChunkExecutor.allowCoreThreadTimeOut(true);
+        } else if (parallelism > inListChunkExecutor.getMaximumPoolSize()) {
+            inListChunkExecutor.setMaximumPoolSize(parallelism);
+            inListChunkExecutor.setCorePoolSize(parallelism);
+        } else if (parallelism < inListChunkExecutor.getMaximumPoolSize()) {
+            inListChunkExecutor.setCorePoolSize(parallelism);
+            inListChunkExecutor.setMaximumPoolSize(parallelism);
+        }
+        return inListChunkExecutor;
+    }
+
+    //the _id is needed to return documents that more than one chunk matches only once
+    private static QueryResultIterator<Document> findChunked(final MongoCollection<Document> mongoCollection,
+                                                             List<Document> filters, Document projection,
+                                                             final Document hint) {
+        Object includeId = projection.get("_id");
+        boolean removeId = includeId != null && (Boolean.FALSE.equals(includeId)
+                || (includeId instanceof Number && ((Number) includeId).intValue() == 0));
+        final Document chunkProjection = new Document(projection);
+        if (removeId) {
+            chunkProjection.remove("_id");
+        }
+        List<Callable<MongoCursor<Document>>> queries = new ArrayList<>(filters.size());
+        for (final Document filter : filters) {
+            queries.add(new Callable<MongoCursor<Document>>() {
+                @Override
+                public MongoCursor<Document> call() {
+                    FindIterable<Document> findIterable = mongoCollection.find(filter).projection(chunkProjection);
+                    if (hint != null) {
+                        findIterable.hint(hint);
+                    }
+                    return findIterable.iterator();
+                }
+            });
+        }
+        int parallelism = getInListChunkParallelism();
+        return new QueryResultIterator<>(new ChunkedDocumentCursor(queries, removeId,
+                getInListChunkExecutor(parallelism), parallelism));
+    }
+
+    private static long deleteChunked(final MongoCollection<Document> mongoCollection, List<Document> filters) {
+        ExecutorService executorService = getInListChunkExecutor(getInListChunkParallelism());
+        List<Future<DeleteResult>> deleteResults = new ArrayList<>(filters.size());
+        try {
+            for (final Document filter : filters) {
+                deleteResults.add(executorService.submit(new Callable<DeleteResult>() {
+                    @Override
+                    public DeleteResult call() {
+                        return mongoCollection.deleteMany(filter);
+                    }
+                }));
+            }
+            long deletedCount = 0;
+            for (Future<DeleteResult> deleteResult : deleteResults) {
+                deletedCount += deleteResult.get().getDeletedCount();
+            }
+            return deletedCount;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MongoInterruptedException("interrupted while deleting", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                    : new RuntimeException(e.getCause());
+        } finally {
+            //the parts that have not started yet are not deleted when one of them failed
+            for (Future<DeleteResult> deleteResult : deleteResults) {
+                deleteResult.cancel(false);
+            }
+        }
+    }
+
     private static String toJson(List<Document> documents) throws IOException {
         StringWriter stringWriter = new StringWriter();
         final JsonWriterSettings jsonWriterSettings = new JsonWriterSettings(JsonMode.STRICT, "\t", "\n");
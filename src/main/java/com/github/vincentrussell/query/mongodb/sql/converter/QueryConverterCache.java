@@ -0,0 +1,261 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+/**
+ * Thread-safe, size-bounded cache of converted queries.  Converting the same sql string with the same field type
+ * mapping more than once will only parse and convert the query the first time.  A field type mapping is copied and
+ * hashed on every lookup, so large mappings should be compiled once into a {@link FieldTypeResolver} and passed to
+ * {@link #get(String, FieldTypeResolver, FieldType)}, which looks it up by identity.  Every {@link QueryConverter} returned
+ * from this cache holds an unmodifiable {@link MongoDBQueryHolder} (see {@link MongoDBQueryHolder#toUnmodifiable()}),
+ * so it can be shared between threads.
+ */
+public class QueryConverterCache {
+
+    private final Cache<CacheKey, QueryConverter> cache;
+
+    private QueryConverterCache(Cache<CacheKey, QueryConverter> cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Get the converted query for a sql string
+     * @param sql the sql statement
+     * @return the cached {@link QueryConverter}
+     * @throws ParseException when the sql query cannot be parsed
+     */
+    public QueryConverter get(String sql) throws ParseException {
+        return get(sql, Collections.<String, FieldType>emptyMap(), FieldType.UNKNOWN);
+    }
+
+    /**
+     * Get the converted query for a sql string
+     * @param sql the sql statement
+     * @param fieldNameToFieldTypeMapping mapping for each field
+     * @return the cached {@link QueryConverter}
+     * @throws ParseException when the sql query cannot be parsed
+     */
+    public QueryConverter get(String sql, Map<String, FieldType> fieldNameToFieldTypeMapping) throws ParseException {
+        return get(sql, fieldNameToFieldTypeMapping, FieldType.UNKNOWN);
+    }
+
+    /**
+     * Get the converted query for a sql string
+     * @param sql the sql statement
+     * @param defaultFieldType the default {@link FieldType} to be used
+     * @return the cached {@link QueryConverter}
+     * @throws ParseException when the sql query cannot be parsed
+     */
+    public QueryConverter get(String sql, FieldType defaultFieldType) throws ParseException {
+        return get(sql, Collections.<String, FieldType>emptyMap(), defaultFieldType);
+    }
+
+    /**
+     * Get the converted query for a sql string
+     * @param sql the sql statement
+     * @param fieldNameToFieldTypeMapping mapping for each field
+     * @param defaultFieldType the default {@link FieldType} to be used
+     * @return the cached {@link QueryConverter}
+     * @throws ParseException when the sql query cannot be parsed
+     */
+    public QueryConverter get(String sql, Map<String, FieldType> fieldNameToFieldTypeMapping,
+                              FieldType defaultFieldType) throws ParseException {
+        notNull(sql, "sql is null");
+        return get(fieldNameToFieldTypeMapping == null || fieldNameToFieldTypeMapping.isEmpty()
+                ? new CacheKey(sql, FieldTypeResolver.empty(), null, defaultFieldType)
+                : new CacheKey(sql, null, ImmutableMap.copyOf(fieldNameToFieldTypeMapping), defaultFieldType));
+    }
+
+    /**
+     * Get the converted query for a sql string.  The resolver is part of the key by identity, so the same
+     * instance has to be passed to find the converted query again.
+     * @param sql the sql statement
+     * @param fieldTypeResolver the field types, see {@link FieldTypeResolver#compile(Map)}
+     * @param defaultFieldType the default {@link FieldType} to be used
+     * @return the cached {@link QueryConverter}
+     * @throws ParseException when the sql query cannot be parsed
+     */
+    public QueryConverter get(String sql, FieldTypeResolver fieldTypeResolver, FieldType defaultFieldType)
+            throws ParseException {
+        notNull(sql, "sql is null");
+        return get(new CacheKey(sql, fieldTypeResolver != null ? fieldTypeResolver : FieldTypeResolver.empty(),
+                null, defaultFieldType));
+    }
+
+    private QueryConverter get(final CacheKey cacheKey) throws ParseException {
+        try {
+            return cache.get(cacheKey, new Callable<QueryConverter>() {
+                @Override
+                public QueryConverter call() throws ParseException {
+                    FieldTypeResolver fieldTypeResolver = cacheKey.fieldTypeResolver != null
+                            ? cacheKey.fieldTypeResolver : FieldTypeResolver.of(cacheKey.fieldNameToFieldTypeMapping);
+                    return new QueryConverter(cacheKey.sql, fieldTypeResolver, cacheKey.defaultFieldType)
+                            .toUnmodifiable();
+                }
+            });
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ParseException) {
+                throw (ParseException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (UncheckedExecutionException | ExecutionError e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of times a converted query was found in the cache
+     */
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    /**
+     * @return the number of times a query had to be converted because it was not in the cache
+     */
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    /**
+     * @return the number of converted queries that were removed from the cache to respect the size limits
+     */
+    public long getEvictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+    /**
+     * @return a snapshot of all of the statistics of this cache
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * @return the approximate number of converted queries in this cache
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Remove all of the converted queries from this cache
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    //either a resolver, compared by identity, or a copy of a mapping, compared by its entries
+    private static final class CacheKey {
+        private final String sql;
+        private final FieldTypeResolver fieldTypeResolver;
+        private final ImmutableMap<String, FieldType> fieldNameToFieldTypeMapping;
+        private final FieldType defaultFieldType;
+        private final int hashCode;
+
+        private CacheKey(String sql, FieldTypeResolver fieldTypeResolver,
+                         ImmutableMap<String, FieldType> fieldNameToFieldTypeMapping, FieldType defaultFieldType) {
+            this.sql = sql;
+            this.fieldTypeResolver = fieldTypeResolver;
+            this.fieldNameToFieldTypeMapping = fieldNameToFieldTypeMapping;
+            this.defaultFieldType = defaultFieldType != null ? defaultFieldType : FieldType.UNKNOWN;
+            this.hashCode = Objects.hashCode(sql, fieldTypeResolver != null
+                    ? System.identityHashCode(fieldTypeResolver) : fieldNameToFieldTypeMapping, this.defaultFieldType);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            CacheKey cacheKey = (CacheKey) o;
+            return hashCode == cacheKey.hashCode
+                    && sql.equals(cacheKey.sql)
+                    && defaultFieldType == cacheKey.defaultFieldType
+                    && fieldTypeResolver == cacheKey.fieldTypeResolver
+                    && Objects.equal(fieldNameToFieldTypeMapping, cacheKey.fieldNameToFieldTypeMapping);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    public static class Builder {
+        /**
+         * The number of converted queries held in a cache that was built without a size or weight limit
+         */
+        public static final long DEFAULT_MAXIMUM_SIZE = 10000;
+
+        private long maximumSize = -1;
+        private long maximumWeight = -1;
+
+        private Builder() {
+        }
+
+        /**
+         * Limit the number of converted queries held in the cache, {@link #DEFAULT_MAXIMUM_SIZE} when neither this
+         * nor {@link #maximumWeight(long)} is set
+         * @param maximumSize the maximum number of entries
+         * @return this builder
+         */
+        public Builder maximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * Limit the total weight of the converted queries held in the cache.  The weight of an entry is the
+         * length of its sql string.  Can not be combined with {@link #maximumSize(long)}.
+         * @param maximumWeight the maximum total weight
+         * @return this builder
+         */
+        public Builder maximumWeight(long maximumWeight) {
+            this.maximumWeight = maximumWeight;
+            return this;
+        }
+
+        public QueryConverterCache build() {
+            CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder().recordStats();
+            if (maximumSize >= 0) {
+                cacheBuilder.maximumSize(maximumSize);
+            } else if (maximumWeight < 0) {
+                cacheBuilder.maximumSize(DEFAULT_MAXIMUM_SIZE);
+            }
+            if (maximumWeight >= 0) {
+                cacheBuilder.maximumWeight(maximumWeight).weigher(new Weigher<CacheKey, QueryConverter>() {
+                    @Override
+                    public int weigh(CacheKey key, QueryConverter value) {
+                        return key.sql.length();
+                    }
+                });
+            }
+            return new QueryConverterCache(cacheBuilder.<CacheKey, QueryConverter>build());
+        }
+
+        public static Builder create() {
+            return new Builder();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.result.DeleteResult;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+
+import java.util.List;
+
+/**
+ * A converted query that has been prepared for execution.  The filter, projection, sort and aggregation pipeline
+ * are encoded to BSON once and the aggregation options are read once, so running the plan many times only pays
+ * for the round trip to mongo.  Instances are immutable and can be shared between threads.
+ * See {@link QueryConverter#compile()}.
+ */
+public class QueryPlan {
+
+    public enum Operation {
+        FIND, COUNT, DISTINCT, AGGREGATE, DELETE
+    }
+
+    private final Operation operation;
+    private final String collection;
+    private final String distinctFieldName;
+    private final RawBsonDocument filter;
+    private final RawBsonDocument projection;
+    private final RawBsonDocument sort;
+    private final List<RawBsonDocument> pipeline;
+    private final long offset;
+    private final long limit;
+    private final Boolean allowDiskUse;
+    private final Integer batchSize;
+
+    QueryPlan(Operation operation, String collection, String distinctFieldName, RawBsonDocument filter,
+              RawBsonDocument projection, RawBsonDocument sort, List<RawBsonDocument> pipeline, long offset,
+              long limit, Boolean allowDiskUse, Integer batchSize) {
+        this.operation = operation;
+        this.collection = collection;
+        this.distinctFieldName = distinctFieldName;
+        this.filter = filter;
+        this.projection = projection;
+        this.sort = sort;
+        this.pipeline = pipeline;
+        this.offset = offset;
+        this.limit = limit;
+        this.allowDiskUse = allowDiskUse;
+        this.batchSize = batchSize;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public String getCollection() {
+        return collection;
+    }
+
+    public RawBsonDocument getFilter() {
+        return filter;
+    }
+
+    public RawBsonDocument getProjection() {
+        return projection;
+    }
+
+    public RawBsonDocument getSort() {
+        return sort;
+    }
+
+    /**
+     * @return the aggregation pipeline or an empty list if the plan does not run an aggregation
+     */
+    public List<RawBsonDocument> getPipeline() {
+        return pipeline;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return the allowDiskUse option of the aggregation or null if it is not set
+     */
+    public Boolean getAllowDiskUse() {
+        return allowDiskUse;
+    }
+
+    /**
+     * @return the batch size of the aggregation or null if it is not set
+     */
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param mongoDatabase the database to run the query against.
+     * @param <T> variable based on the type of query run.
+     * @return the same results as {@link QueryConverter#run(MongoDatabase)}
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T run(MongoDatabase mongoDatabase) {
+        MongoCollection<Document> mongoCollection = mongoDatabase.getCollection(collection);
+        switch (operation) {
+            case DISTINCT:
+                return (T) new QueryResultIterator<>(mongoCollection.distinct(distinctFieldName, filter, String.class));
+            case COUNT:
+                return (T) Long.valueOf(mongoCollection.count(filter));
+            case AGGREGATE:
+                AggregateIterable<Document> aggregate = mongoCollection.aggregate(pipeline);
+                if (allowDiskUse != null) {
+                    aggregate.allowDiskUse(allowDiskUse);
+                }
+                if (batchSize != null) {
+                    aggregate.batchSize(batchSize);
+                }
+                return (T) new QueryResultIterator<>(aggregate);
+            case FIND:
+                FindIterable<Document> findIterable = mongoCollection.find(filter).projection(projection);
+                if (sort != null) {
+                    findIterable.sort(sort);
+                }
+                if (offset != -1) {
+                    findIterable.skip((int) offset);
+                }
+                if (limit != -1) {
+                    findIterable.limit((int) limit);
+                }
+                return (T) new QueryResultIterator<>(findIterable);
+            case DELETE:
+                DeleteResult deleteResult = mongoCollection.deleteMany(filter);
+                return (T) ((Long) deleteResult.getDeletedCount());
+            default:
+                throw new UnsupportedOperationException("SQL command type not supported");
+        }
+    }
+}
@@ -18,6 +18,11 @@ public class QueryResultIterator<T> extends AbstractCloseableIterator<T> {
         this.mongoCursor = mongoIterable.iterator();
     }
 
+    QueryResultIterator(MongoCursor<T> mongoCursor) {
+        this.mongoIterable = null;
+        this.mongoCursor = mongoCursor;
+    }
+
     public QueryResultIterator(long count) {
         this.mongoIterable = null;
         this.mongoCursor = new LongMongoCursor<>(count);
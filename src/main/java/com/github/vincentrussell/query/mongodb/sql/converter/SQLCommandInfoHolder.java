@@ -1,6 +1,7 @@
 package com.github.vincentrussell.query.mongodb.sql.converter;
 
 import com.github.vincentrussell.query.mongodb.sql.converter.holder.TablesHolder;
+import com.github.vincentrussell.query.mongodb.sql.converter.util.BindParameter;
 import com.github.vincentrussell.query.mongodb.sql.converter.util.SqlUtils;
 
 import net.sf.jsqlparser.expression.Alias;
@@ -24,6 +25,8 @@ public class SQLCommandInfoHolder {
     private final TablesHolder tables;
     private final long limit;
     private final long offset;
+    private final BindParameter limitParameter;
+    private final BindParameter offsetParameter;
     private final Expression whereClause;
     private final List<SelectItem> selectItems;
     private final List<Join> joins;
@@ -32,6 +35,10 @@ public class SQLCommandInfoHolder {
     private final HashMap<String,String> aliasHash;
 
     public SQLCommandInfoHolder(SQLCommandType sqlCommandType, Expression whereClause, boolean isDistinct, boolean isCountAll, TablesHolder tables, long limit, long offset, List<SelectItem> selectItems, List<Join> joins, List<String> groupBys, List<OrderByElement> orderByElements, HashMap<String,String> aliasHash) {
+        this(sqlCommandType, whereClause, isDistinct, isCountAll, tables, limit, offset, null, null, selectItems, joins, groupBys, orderByElements, aliasHash);
+    }
+
+    public SQLCommandInfoHolder(SQLCommandType sqlCommandType, Expression whereClause, boolean isDistinct, boolean isCountAll, TablesHolder tables, long limit, long offset, BindParameter limitParameter, BindParameter offsetParameter, List<SelectItem> selectItems, List<Join> joins, List<String> groupBys, List<OrderByElement> orderByElements, HashMap<String,String> aliasHash) {
         this.sqlCommandType = sqlCommandType;
         this.whereClause = whereClause;
         this.isDistinct = isDistinct;
@@ -39,6 +46,8 @@ public class SQLCommandInfoHolder {
         this.tables = tables;
         this.limit = limit;
         this.offset = offset;
+        this.limitParameter = limitParameter;
+        this.offsetParameter = offsetParameter;
         this.selectItems = selectItems;
         this.joins = joins;
         this.groupBys = groupBys;
@@ -74,6 +83,14 @@ public class SQLCommandInfoHolder {
         return offset;
     }
 
+    public BindParameter getLimitParameter() {
+        return limitParameter;
+    }
+
+    public BindParameter getOffsetParameter() {
+        return offsetParameter;
+    }
+
     public Expression getWhereClause() {
         return whereClause;
     }
@@ -112,11 +129,13 @@ public class SQLCommandInfoHolder {
         private TablesHolder tables;
         private long limit = -1;
         private long offset = -1;
+        private BindParameter limitParameter;
+        private BindParameter offsetParameter;
         private List<SelectItem> selectItems = new ArrayList<>();
         private List<Join> joins = new ArrayList<>();
         private List<String> groupBys = new ArrayList<>();
         private List<OrderByElement> orderByElements1 = new ArrayList<>();
-        private HashMap<String,String> aliasHash;
+        private HashMap<String,String> aliasHash = new HashMap<>();
 
         private Builder(FieldType defaultFieldType, Map<String, FieldType> fieldNameToFieldTypeMapping){
             this.defaultFieldType = defaultFieldType;
@@ -144,8 +163,7 @@ public class SQLCommandInfoHolder {
         	
         	if(ljoin != null) {
 	        	for (Join j : ljoin) {
-	        		SqlUtils.updateJoinType(j);
-	        		if(j.isInner() || j.isLeft()) {
+	        		if(SqlUtils.isInnerJoin(j) || j.isLeft()) {
 	        			tholder = generateTableHolder(tholder,j.getRightItem(),null);
 	        		}	
 	        		else{
@@ -157,7 +175,10 @@ public class SQLCommandInfoHolder {
         }
 
         public Builder setJSqlParser(CCJSqlParser jSqlParser) throws com.github.vincentrussell.query.mongodb.sql.converter.ParseException, ParseException {
-            final Statement statement = jSqlParser.Statement();
+            return setStatement(jSqlParser.Statement());
+        }
+
+        public Builder setStatement(Statement statement) throws com.github.vincentrussell.query.mongodb.sql.converter.ParseException, ParseException {
             if (Select.class.isAssignableFrom(statement.getClass())) {
                 sqlCommandType = SQLCommandType.SELECT;
                 final PlainSelect plainSelect = (PlainSelect)(((Select)statement).getSelectBody());
@@ -170,6 +191,8 @@ public class SQLCommandInfoHolder {
                 tables = generateTableHolder(new TablesHolder(),plainSelect.getFromItem(),plainSelect.getJoins());
                 limit = SqlUtils.getLimit(plainSelect.getLimit());
                 offset = SqlUtils.getOffset(plainSelect.getOffset());
+                limitParameter = SqlUtils.getLimitParameter(plainSelect.getLimit());
+                offsetParameter = SqlUtils.getOffsetParameter(plainSelect.getOffset());
                 orderByElements1 = plainSelect.getOrderByElements();
                 selectItems = plainSelect.getSelectItems();
                 joins = plainSelect.getJoins();
@@ -201,7 +224,7 @@ public class SQLCommandInfoHolder {
 
         public SQLCommandInfoHolder build() {
             return new SQLCommandInfoHolder(sqlCommandType, whereClause,
-                    isDistinct, isCountAll, tables, limit, offset, selectItems, joins, groupBys, orderByElements1, aliasHash);
+                    isDistinct, isCountAll, tables, limit, offset, limitParameter, offsetParameter, selectItems, joins, groupBys, orderByElements1, aliasHash);
         }
 
         public static Builder create(FieldType defaultFieldType, Map<String, FieldType> fieldNameToFieldTypeMapping) {
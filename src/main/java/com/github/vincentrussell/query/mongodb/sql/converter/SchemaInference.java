@@ -0,0 +1,230 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.commons.lang.Validate.isTrue;
+import static org.apache.commons.lang.Validate.notNull;
+
+/**
+ * Infers the {@link FieldType} of every dotted field path of a collection from a sample of its documents, so that
+ * literals in the where clause get the type that is stored in the collection without a hand written mapping.
+ * Strings, numbers, dates, booleans, decimals, ObjectIds and UUIDs are inferred, and the elements of arrays have the
+ * type of the array's path.  Integers and doubles are inferred as {@link FieldType#NUMBER}, because mongo compares
+ * them by value and a sampled int32 field may hold larger numbers in other documents.  Paths with more than one type,
+ * other than a mix of numbers, or with another type are left out, so the default field type is used for them.  The
+ * inferred types are cached per collection and the collection is sampled again after the expiry.
+ *
+ * Pass it to {@link QueryConverter#QueryConverter(String, SchemaInference, FieldType)} to use the inferred types of
+ * the collection in the from clause.  Instances are thread-safe.
+ */
+public class SchemaInference {
+
+    private final DocumentSampler documentSampler;
+    private final int sampleSize;
+    private final Cache<String, InferredSchema> cache;
+
+    private SchemaInference(DocumentSampler documentSampler, int sampleSize, Cache<String, InferredSchema> cache) {
+        this.documentSampler = documentSampler;
+        this.sampleSize = sampleSize;
+        this.cache = cache;
+    }
+
+    /**
+     * @param collectionName the name of the collection
+     * @return the inferred type of each field path of the collection
+     */
+    public Map<String, FieldType> getFieldTypes(String collectionName) {
+        return get(collectionName).fieldTypes;
+    }
+
+    /**
+     * @param collectionName the name of the collection
+     * @return a resolver for the inferred field types of the collection
+     */
+    public FieldTypeResolver getFieldTypeResolver(String collectionName) {
+        return get(collectionName).fieldTypeResolver;
+    }
+
+    /**
+     * Sample a collection again the next time its field types are needed
+     * @param collectionName the name of the collection
+     */
+    public void invalidate(String collectionName) {
+        cache.invalidate(collectionName);
+    }
+
+    /**
+     * Sample every collection again the next time its field types are needed
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private InferredSchema get(final String collectionName) {
+        notNull(collectionName, "collectionName is null");
+        try {
+            return cache.get(collectionName, new Callable<InferredSchema>() {
+                @Override
+                public InferredSchema call() {
+                    return new InferredSchema(inferFieldTypes(documentSampler.sample(collectionName, sampleSize)));
+                }
+            });
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } catch (UncheckedExecutionException | ExecutionError e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    static Map<String, FieldType> inferFieldTypes(Iterable<Document> documents) {
+        Map<String, FieldType> fieldTypes = new HashMap<>();
+        for (Document document : documents) {
+            addFieldTypes("", document, fieldTypes);
+        }
+        ImmutableMap.Builder<String, FieldType> builder = ImmutableMap.builder();
+        for (Map.Entry<String, FieldType> entry : fieldTypes.entrySet()) {
+            if (entry.getValue() != FieldType.UNKNOWN) {
+                builder.put(entry);
+            }
+        }
+        return builder.build();
+    }
+
+    private static void addFieldTypes(String prefix, Document document, Map<String, FieldType> fieldTypes) {
+        for (Map.Entry<String, Object> entry : document.entrySet()) {
+            addFieldType(prefix + entry.getKey(), entry.getValue(), fieldTypes);
+        }
+    }
+
+    private static void addFieldType(String path, Object value, Map<String, FieldType> fieldTypes) {
+        if (value == null) {
+            return;
+        } else if (value instanceof Document) {
+            addFieldTypes(path + ".", (Document) value, fieldTypes);
+        } else if (value instanceof List) {
+            for (Object element : (List<?>) value) {
+                addFieldType(path, element, fieldTypes);
+            }
+        } else {
+            FieldType fieldType = fieldTypeOf(value);
+            FieldType previous = fieldTypes.put(path, fieldType);
+            if (previous != null && previous != fieldType) {
+                fieldTypes.put(path, isNumber(previous) && isNumber(fieldType) ? FieldType.NUMBER : FieldType.UNKNOWN);
+            }
+        }
+    }
+
+    private static boolean isNumber(FieldType fieldType) {
+        return fieldType == FieldType.NUMBER || fieldType == FieldType.DECIMAL128;
+    }
+
+    private static FieldType fieldTypeOf(Object value) {
+        if (value instanceof String) {
+            return FieldType.STRING;
+        } else if (value instanceof Decimal128) {
+            return FieldType.DECIMAL128;
+        } else if (value instanceof Number) {
+            return FieldType.NUMBER;
+        } else if (value instanceof Date) {
+            return FieldType.DATE;
+        } else if (value instanceof Boolean) {
+            return FieldType.BOOLEAN;
+        } else if (value instanceof ObjectId) {
+            return FieldType.OBJECTID;
+        } else if (value instanceof UUID) {
+            return FieldType.UUID;
+        }
+        return FieldType.UNKNOWN;
+    }
+
+    private static final class InferredSchema {
+        private final Map<String, FieldType> fieldTypes;
+        private final FieldTypeResolver fieldTypeResolver;
+
+        private InferredSchema(Map<String, FieldType> fieldTypes) {
+            this.fieldTypes = fieldTypes;
+            this.fieldTypeResolver = FieldTypeResolver.compile(fieldTypes);
+        }
+    }
+
+    public static class Builder {
+        private final DocumentSampler documentSampler;
+        private int sampleSize = 100;
+        private long expireAfterWriteNanos = TimeUnit.MINUTES.toNanos(10);
+        private long maximumSize = -1;
+
+        private Builder(DocumentSampler documentSampler) {
+            this.documentSampler = documentSampler;
+        }
+
+        /**
+         * @param sampleSize the number of documents sampled from each collection, 100 by default
+         * @return this builder
+         */
+        public Builder sampleSize(int sampleSize) {
+            isTrue(sampleSize > 0, "sampleSize must be positive");
+            this.sampleSize = sampleSize;
+            return this;
+        }
+
+        /**
+         * Sample a collection again when its field types were inferred longer ago than the duration, 10 minutes
+         * by default
+         * @param duration the duration
+         * @param unit the unit of the duration
+         * @return this builder
+         */
+        public Builder expireAfterWrite(long duration, TimeUnit unit) {
+            notNull(unit, "unit is null");
+            this.expireAfterWriteNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Limit the number of collections whose field types are held in the cache
+         * @param maximumSize the maximum number of collections
+         * @return this builder
+         */
+        public Builder maximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        public SchemaInference build() {
+            CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder()
+                    .expireAfterWrite(expireAfterWriteNanos, TimeUnit.NANOSECONDS);
+            if (maximumSize >= 0) {
+                cacheBuilder.maximumSize(maximumSize);
+            }
+            return new SchemaInference(documentSampler, sampleSize, cacheBuilder.<String, InferredSchema>build());
+        }
+
+        /**
+         * @param documentSampler the source of the sampled documents, like a {@link MongoDocumentSampler}
+         * @return a new builder
+         */
+        public static Builder create(DocumentSampler documentSampler) {
+            notNull(documentSampler, "documentSampler is null");
+            return new Builder(documentSampler);
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import net.sf.jsqlparser.expression.DateValue;
+import net.sf.jsqlparser.expression.DoubleValue;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.HexValue;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.SignedExpression;
+import net.sf.jsqlparser.expression.StringValue;
+import net.sf.jsqlparser.expression.TimeValue;
+import net.sf.jsqlparser.expression.TimestampValue;
+import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
+import net.sf.jsqlparser.expression.operators.relational.InExpression;
+import net.sf.jsqlparser.expression.operators.relational.ItemsList;
+import net.sf.jsqlparser.parser.StringProvider;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.Limit;
+import net.sf.jsqlparser.statement.select.Offset;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.util.deparser.ExpressionDeParser;
+import net.sf.jsqlparser.util.deparser.SelectDeParser;
+import net.sf.jsqlparser.util.deparser.StatementDeParser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The shape of a sql statement: every literal is replaced with <code>?</code>, <code>IN</code> lists of literals are
+ * collapsed to <code>IN (?)</code>, and whitespace and the case of keywords are normalized.  Statements that only
+ * differ in their literals have the same shape and the same 64 bit hash, so the hash can be used to group queries,
+ * for example in caches, metrics or slow query logs.  The extracted literals are kept in the order they appear in
+ * the statement.  The case of table and column names is kept because mongo field names are case sensitive.
+ */
+public final class SqlFingerprint {
+
+    private final String shape;
+    private final long hash;
+    private final List<Object> values;
+
+    private SqlFingerprint(String shape, List<Object> values) {
+        this.shape = shape;
+        this.hash = Hashing.murmur3_128().hashString(shape, Charsets.UTF_8).asLong();
+        this.values = Collections.unmodifiableList(values);
+    }
+
+    /**
+     * Create the fingerprint of a sql statement
+     * @param sql the sql statement
+     * @return the fingerprint
+     * @throws ParseException when the sql query cannot be parsed
+     */
+    public static SqlFingerprint of(String sql) throws ParseException {
+        return of(QueryConverter.parseSingleStatement(new StringProvider(sql)));
+    }
+
+    /**
+     * Create the fingerprint of a parsed sql statement
+     * @param statement the parsed sql statement
+     * @return the fingerprint
+     */
+    public static SqlFingerprint of(Statement statement) {
+        StringBuilder buffer = new StringBuilder();
+        List<Object> values = new ArrayList<>();
+        LiteralExtractingExpressionDeParser expressionDeParser = new LiteralExtractingExpressionDeParser(values);
+        LiteralExtractingSelectDeParser selectDeParser = new LiteralExtractingSelectDeParser(values);
+        expressionDeParser.setSelectVisitor(selectDeParser);
+        expressionDeParser.setBuffer(buffer);
+        selectDeParser.setExpressionVisitor(expressionDeParser);
+        selectDeParser.setBuffer(buffer);
+        statement.accept(new StatementDeParser(expressionDeParser, selectDeParser, buffer));
+        return new SqlFingerprint(buffer.toString(), values);
+    }
+
+    /**
+     * @return the normalized statement with <code>?</code> in place of every literal
+     */
+    public String getShape() {
+        return shape;
+    }
+
+    /**
+     * @return the 64 bit hash of the shape
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * @return the literals of the statement in the order they appear
+     */
+    public List<Object> getValues() {
+        return values;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        SqlFingerprint that = (SqlFingerprint) o;
+        return hash == that.hash && shape.equals(that.shape);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return Long.toHexString(hash) + ": " + shape;
+    }
+
+    private static boolean isLiteral(Expression expression) {
+        return LongValue.class.isInstance(expression) || DoubleValue.class.isInstance(expression)
+                || StringValue.class.isInstance(expression) || DateValue.class.isInstance(expression)
+                || TimeValue.class.isInstance(expression) || TimestampValue.class.isInstance(expression)
+                || HexValue.class.isInstance(expression) || isSignedNumber(expression);
+    }
+
+    private static boolean isSignedNumber(Expression expression) {
+        return SignedExpression.class.isInstance(expression)
+                && (LongValue.class.isInstance(((SignedExpression) expression).getExpression())
+                || DoubleValue.class.isInstance(((SignedExpression) expression).getExpression()));
+    }
+
+    private static Object getLiteralValue(Expression expression) {
+        if (LongValue.class.isInstance(expression)) {
+            return ((LongValue) expression).getValue();
+        } else if (DoubleValue.class.isInstance(expression)) {
+            return ((DoubleValue) expression).getValue();
+        } else if (StringValue.class.isInstance(expression)) {
+            return ((StringValue) expression).getValue();
+        } else if (DateValue.class.isInstance(expression)) {
+            return ((DateValue) expression).getValue();
+        } else if (TimeValue.class.isInstance(expression)) {
+            return ((TimeValue) expression).getValue();
+        } else if (TimestampValue.class.isInstance(expression)) {
+            return ((TimestampValue) expression).getValue();
+        } else if (HexValue.class.isInstance(expression)) {
+            return ((HexValue) expression).getValue();
+        }
+        SignedExpression signedExpression = (SignedExpression) expression;
+        Object value = getLiteralValue(signedExpression.getExpression());
+        if (signedExpression.getSign() != '-') {
+            return value;
+        }
+        return Long.class.isInstance(value) ? (Object) (-(Long) value) : (Object) (-(Double) value);
+    }
+
+    private static class LiteralExtractingExpressionDeParser extends ExpressionDeParser {
+        private final List<Object> values;
+        private ItemsList inItemsList;
+
+        private LiteralExtractingExpressionDeParser(List<Object> values) {
+            this.values = values;
+        }
+
+        private void appendLiteral(Expression expression) {
+            values.add(getLiteralValue(expression));
+            getBuffer().append('?');
+        }
+
+        @Override
+        public void visit(LongValue longValue) {
+            appendLiteral(longValue);
+        }
+
+        @Override
+        public void visit(DoubleValue doubleValue) {
+            appendLiteral(doubleValue);
+        }
+
+        @Override
+        public void visit(StringValue stringValue) {
+            appendLiteral(stringValue);
+        }
+
+        @Override
+        public void visit(DateValue dateValue) {
+            appendLiteral(dateValue);
+        }
+
+        @Override
+        public void visit(TimeValue timeValue) {
+            appendLiteral(timeValue);
+        }
+
+        @Override
+        public void visit(TimestampValue timestampValue) {
+            appendLiteral(timestampValue);
+        }
+
+        @Override
+        public void visit(HexValue hexValue) {
+            appendLiteral(hexValue);
+        }
+
+        @Override
+        public void visit(SignedExpression signedExpression) {
+            if (isSignedNumber(signedExpression)) {
+                appendLiteral(signedExpression);
+            } else {
+                super.visit(signedExpression);
+            }
+        }
+
+        @Override
+        public void visit(InExpression inExpression) {
+            ItemsList previous = inItemsList;
+            inItemsList = inExpression.getRightItemsList();
+            try {
+                super.visit(inExpression);
+            } finally {
+                inItemsList = previous;
+            }
+        }
+
+        @Override
+        public void visit(ExpressionList expressionList) {
+            if (expressionList == inItemsList && expressionList.getExpressions() != null
+                    && allLiterals(expressionList.getExpressions())) {
+                for (Expression expression : expressionList.getExpressions()) {
+                    values.add(getLiteralValue(expression));
+                }
+                getBuffer().append("(?)");
+            } else {
+                super.visit(expressionList);
+            }
+        }
+
+        private static boolean allLiterals(List<Expression> expressions) {
+            for (Expression expression : expressions) {
+                if (!isLiteral(expression)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The limit and the offset are not deparsed with the expression visitor, so their literals are replaced
+     * once the rest of the select has been deparsed.
+     */
+    private static class LiteralExtractingSelectDeParser extends SelectDeParser {
+        private final List<Object> values;
+
+        private LiteralExtractingSelectDeParser(List<Object> values) {
+            this.values = values;
+        }
+
+        @Override
+        public void visit(PlainSelect plainSelect) {
+            int start = getBuffer().length();
+            super.visit(plainSelect);
+            Limit limit = plainSelect.getLimit();
+            if (limit != null && limit.getOffset() != null && limit.getRowCount() != null) {
+                //LIMIT offset, count
+                replaceLimitLiterals(start, limit.getOffset(), limit.getRowCount());
+            } else if (limit != null && LongValue.class.isInstance(limit.getRowCount())) {
+                replaceLiteral(start, " LIMIT " + limit.getRowCount(), " LIMIT ?",
+                        ((LongValue) limit.getRowCount()).getValue());
+            }
+            Offset offset = plainSelect.getOffset();
+            if (offset != null && offset.getOffsetJdbcParameter() == null) {
+                replaceLiteral(start, " OFFSET " + offset.getOffset(), " OFFSET ?", offset.getOffset());
+            }
+        }
+
+        private void replaceLimitLiterals(int start, Expression offset, Expression rowCount) {
+            List<Object> limitValues = new ArrayList<>();
+            String offsetText = offset.toString();
+            if (LongValue.class.isInstance(offset)) {
+                offsetText = "?";
+                limitValues.add(((LongValue) offset).getValue());
+            }
+            String rowCountText = rowCount.toString();
+            if (LongValue.class.isInstance(rowCount)) {
+                rowCountText = "?";
+                limitValues.add(((LongValue) rowCount).getValue());
+            }
+            replaceLiteral(start, " LIMIT " + offset + ", " + rowCount, " LIMIT " + offsetText + ", " + rowCountText,
+                    limitValues);
+        }
+
+        private void replaceLiteral(int start, String literalText, String placeholderText, long value) {
+            replaceLiteral(start, literalText, placeholderText, Collections.<Object>singletonList(value));
+        }
+
+        private void replaceLiteral(int start, String literalText, String placeholderText, List<Object> literals) {
+            int index = getBuffer().lastIndexOf(literalText);
+            if (index >= start) {
+                getBuffer().replace(index, index + literalText.length(), placeholderText);
+                values.addAll(literals);
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import com.github.vincentrussell.query.mongodb.sql.converter.util.SqlUtils;
+import net.sf.jsqlparser.parser.CCJSqlParser;
+import net.sf.jsqlparser.parser.CCJSqlParserConstants;
+import net.sf.jsqlparser.parser.Provider;
+import net.sf.jsqlparser.parser.StreamProvider;
+import net.sf.jsqlparser.parser.StringProvider;
+import net.sf.jsqlparser.parser.TokenMgrException;
+import net.sf.jsqlparser.statement.Statement;
+import org.calrissian.mango.collect.AbstractCloseableIterator;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Iterates over the <code>;</code> separated statements of a sql script, parsing and converting one statement at a
+ * time so that scripts of any size can be converted in constant memory.  A statement that can not be converted
+ * does not stop the iteration, its {@link BatchConversionResult} holds the {@link ParseException} instead.  The
+ * iteration only ends early when the script can not be tokenized.
+ */
+public class SqlScriptIterator extends AbstractCloseableIterator<BatchConversionResult> {
+
+    private final Provider provider;
+    private final ScriptParser jSqlParser;
+    private final Map<String, FieldType> fieldNameToFieldTypeMapping;
+    private final FieldType defaultFieldType;
+    private int index = 0;
+    private boolean finished = false;
+
+    /**
+     * Create a SqlScriptIterator with a Reader
+     * @param reader the reader that has the sql script in it
+     */
+    public SqlScriptIterator(Reader reader) {
+        this(reader, Collections.<String, FieldType>emptyMap(), FieldType.UNKNOWN);
+    }
+
+    /**
+     * Create a SqlScriptIterator with a Reader
+     * @param reader the reader that has the sql script in it
+     * @param fieldNameToFieldTypeMapping mapping for each field
+     * @param defaultFieldType the default {@link FieldType} to be used
+     */
+    public SqlScriptIterator(Reader reader, Map<String, FieldType> fieldNameToFieldTypeMapping,
+                             FieldType defaultFieldType) {
+        this(new StreamProvider(reader), fieldNameToFieldTypeMapping, defaultFieldType);
+    }
+
+    /**
+     * Create a SqlScriptIterator with a CharSequence
+     * @param script the sql script
+     */
+    public SqlScriptIterator(CharSequence script) {
+        this(script, Collections.<String, FieldType>emptyMap(), FieldType.UNKNOWN);
+    }
+
+    /**
+     * Create a SqlScriptIterator with a CharSequence
+     * @param script the sql script
+     * @param fieldNameToFieldTypeMapping mapping for each field
+     * @param defaultFieldType the default {@link FieldType} to be used
+     */
+    public SqlScriptIterator(CharSequence script, Map<String, FieldType> fieldNameToFieldTypeMapping,
+                             FieldType defaultFieldType) {
+        this(new StringProvider(script.toString()), fieldNameToFieldTypeMapping, defaultFieldType);
+    }
+
+    private SqlScriptIterator(Provider provider, Map<String, FieldType> fieldNameToFieldTypeMapping,
+                              FieldType defaultFieldType) {
+        this.provider = provider;
+        this.jSqlParser = new ScriptParser(provider);
+        this.fieldNameToFieldTypeMapping = fieldNameToFieldTypeMapping;
+        this.defaultFieldType = defaultFieldType;
+    }
+
+    @Override
+    protected BatchConversionResult computeNext() {
+        if (finished) {
+            return endOfData();
+        }
+        int statementIndex = index;
+        try {
+            while (";".equals(jSqlParser.getToken(1).image)) {
+                jSqlParser.getNextToken();
+            }
+            if (jSqlParser.getToken(1).kind == CCJSqlParserConstants.EOF) {
+                finish();
+                return endOfData();
+            }
+            index++;
+            Statement statement;
+            try {
+                statement = jSqlParser.SingleStatement();
+                net.sf.jsqlparser.parser.Token nextToken = jSqlParser.getToken(1);
+                if (nextToken.kind != CCJSqlParserConstants.EOF && !";".equals(nextToken.image)) {
+                    skipToEndOfStatement();
+                    return new BatchConversionResult(statementIndex, null, null, null,
+                            new ParseException("unable to parse complete sql string. one reason for this is the use of double equals (==)"));
+                }
+            } catch (net.sf.jsqlparser.parser.ParseException e) {
+                skipToEndOfStatement();
+                return new BatchConversionResult(statementIndex, null, null, null, SqlUtils.convertParseException(e));
+            } finally {
+                jSqlParser.resetTree();
+            }
+            return convert(statementIndex, statement);
+        } catch (TokenMgrException e) {
+            finish();
+            return new BatchConversionResult(statementIndex, null, null, null, new ParseException(e.getMessage()));
+        }
+    }
+
+    private BatchConversionResult convert(int statementIndex, Statement statement) {
+        String sql = statement.toString();
+        try {
+            return new BatchConversionResult(statementIndex, sql,
+                    new QueryConverter(statement, fieldNameToFieldTypeMapping, defaultFieldType), null, null);
+        } catch (ParseException e) {
+            return new BatchConversionResult(statementIndex, sql, null, null, e);
+        } catch (RuntimeException e) {
+            //statements the converter doesn't support, like a union, can fail with any exception
+            ParseException parseException = new ParseException(e.getMessage());
+            parseException.initCause(e);
+            return new BatchConversionResult(statementIndex, sql, null, null, parseException);
+        }
+    }
+
+    private void skipToEndOfStatement() {
+        net.sf.jsqlparser.parser.Token token;
+        do {
+            token = jSqlParser.getNextToken();
+        } while (token.kind != CCJSqlParserConstants.EOF && !";".equals(token.image));
+    }
+
+    private void finish() {
+        finished = true;
+        try {
+            close();
+        } catch (IOException e) {
+            //noop
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        provider.close();
+    }
+
+    /**
+     * The parse tree of every statement would otherwise stay on the node stack of the parser until the whole script
+     * was parsed.
+     */
+    private static class ScriptParser extends CCJSqlParser {
+        private ScriptParser(Provider provider) {
+            super(provider);
+        }
+
+        private void resetTree() {
+            jjtree.reset();
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableMultiset;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Multiset;
+import net.sf.jsqlparser.expression.BinaryExpression;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.Function;
+import net.sf.jsqlparser.expression.JdbcNamedParameter;
+import net.sf.jsqlparser.expression.JdbcParameter;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThan;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.InExpression;
+import net.sf.jsqlparser.expression.operators.relational.LikeExpression;
+import net.sf.jsqlparser.expression.operators.relational.MinorThan;
+import net.sf.jsqlparser.expression.operators.relational.MinorThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.NotEqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.RegExpMatchOperator;
+import net.sf.jsqlparser.expression.operators.relational.RegExpMySQLOperator;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.util.deparser.ExpressionDeParser;
+import net.sf.jsqlparser.util.deparser.SelectDeParser;
+import net.sf.jsqlparser.util.deparser.StatementDeParser;
+
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * The <code>?</code> and <code>:name</code> parameters of a sql statement, so that a {@link PreparedQuery} can check
+ * that every one of them was converted to a value that can be bound.  Parameters are only converted when they are
+ * compared to a field, so a parameter in a <code>LIKE</code>, in the arguments of a function, compared to a function
+ * or on the left of a comparison fails the preparation instead of being left in the query as text.
+ */
+final class StatementParameters {
+
+    private final SortedSet<Integer> indexes;
+    private final Multiset<String> names;
+
+    private StatementParameters(SortedSet<Integer> indexes, Multiset<String> names) {
+        this.indexes = ImmutableSortedSet.copyOf(indexes);
+        this.names = ImmutableMultiset.copyOf(names);
+    }
+
+    /**
+     * @param statement the parsed sql statement
+     * @return the parameters of the statement
+     * @throws ParseException when a parameter is in a place where it can not be bound
+     */
+    static StatementParameters of(Statement statement) throws ParseException {
+        StringBuilder buffer = new StringBuilder();
+        ParameterCollectingExpressionDeParser expressionDeParser = new ParameterCollectingExpressionDeParser();
+        ParameterCollectingSelectDeParser selectDeParser = new ParameterCollectingSelectDeParser(expressionDeParser);
+        expressionDeParser.setSelectVisitor(selectDeParser);
+        expressionDeParser.setBuffer(buffer);
+        selectDeParser.setExpressionVisitor(expressionDeParser);
+        selectDeParser.setBuffer(buffer);
+        statement.accept(new StatementDeParser(expressionDeParser, selectDeParser, buffer));
+        if (expressionDeParser.unsupported != null) {
+            throw new ParseException(expressionDeParser.unsupported);
+        }
+        return new StatementParameters(expressionDeParser.indexes, expressionDeParser.names);
+    }
+
+    /**
+     * @return the 1-based positions of the <code>?</code> parameters
+     */
+    SortedSet<Integer> getIndexes() {
+        return indexes;
+    }
+
+    /**
+     * @return the names of the <code>:name</code> parameters, once for every time they appear
+     */
+    Multiset<String> getNames() {
+        return names;
+    }
+
+    private static boolean isParameter(Expression expression) {
+        return JdbcParameter.class.isInstance(expression) || JdbcNamedParameter.class.isInstance(expression);
+    }
+
+    private static class ParameterCollectingExpressionDeParser extends ExpressionDeParser {
+        private final SortedSet<Integer> indexes = new TreeSet<>();
+        private final Multiset<String> names = HashMultiset.create();
+        private String unsupported;
+
+        private void unsupported(String message) {
+            if (unsupported == null) {
+                unsupported = message;
+            }
+        }
+
+        private void add(Expression parameter) {
+            if (JdbcNamedParameter.class.isInstance(parameter)) {
+                names.add(((JdbcNamedParameter) parameter).getName());
+            } else {
+                indexes.add(((JdbcParameter) parameter).getIndex());
+            }
+        }
+
+        private void checkComparison(BinaryExpression comparison) {
+            if (isParameter(comparison.getLeftExpression())) {
+                unsupported("the parameter in " + comparison + " must be on the right side of the comparison");
+            } else if (isParameter(comparison.getRightExpression())
+                    && !Column.class.isInstance(comparison.getLeftExpression())) {
+                unsupported("the parameter in " + comparison + " can only be compared to a field");
+            }
+        }
+
+        private void checkPattern(BinaryExpression expression) {
+            if (isParameter(expression.getLeftExpression()) || isParameter(expression.getRightExpression())) {
+                unsupported("parameters are not supported in " + expression + ", the pattern must be a literal");
+            }
+        }
+
+        @Override
+        public void visit(JdbcParameter jdbcParameter) {
+            add(jdbcParameter);
+            super.visit(jdbcParameter);
+        }
+
+        @Override
+        public void visit(JdbcNamedParameter jdbcNamedParameter) {
+            add(jdbcNamedParameter);
+            super.visit(jdbcNamedParameter);
+        }
+
+        @Override
+        public void visit(EqualsTo equalsTo) {
+            checkComparison(equalsTo);
+            super.visit(equalsTo);
+        }
+
+        @Override
+        public void visit(NotEqualsTo notEqualsTo) {
+            checkComparison(notEqualsTo);
+            super.visit(notEqualsTo);
+        }
+
+        @Override
+        public void visit(GreaterThan greaterThan) {
+            checkComparison(greaterThan);
+            super.visit(greaterThan);
+        }
+
+        @Override
+        public void visit(GreaterThanEquals greaterThanEquals) {
+            checkComparison(greaterThanEquals);
+            super.visit(greaterThanEquals);
+        }
+
+        @Override
+        public void visit(MinorThan minorThan) {
+            checkComparison(minorThan);
+            super.visit(minorThan);
+        }
+
+        @Override
+        public void visit(MinorThanEquals minorThanEquals) {
+            checkComparison(minorThanEquals);
+            super.visit(minorThanEquals);
+        }
+
+        @Override
+        public void visit(LikeExpression likeExpression) {
+            checkPattern(likeExpression);
+            super.visit(likeExpression);
+        }
+
+        @Override
+        public void visit(RegExpMatchOperator regExpMatchOperator) {
+            checkPattern(regExpMatchOperator);
+            super.visit(regExpMatchOperator);
+        }
+
+        @Override
+        public void visit(RegExpMySQLOperator regExpMySQLOperator) {
+            checkPattern(regExpMySQLOperator);
+            super.visit(regExpMySQLOperator);
+        }
+
+        @Override
+        public void visit(InExpression inExpression) {
+            if (!Column.class.isInstance(inExpression.getLeftExpression())
+                    && ExpressionList.class.isInstance(inExpression.getRightItemsList())
+                    && containsParameter((ExpressionList) inExpression.getRightItemsList())) {
+                unsupported("the parameters in " + inExpression + " can only be compared to a field");
+            }
+            super.visit(inExpression);
+        }
+
+        @Override
+        public void visit(Function function) {
+            if (function.getParameters() != null && containsParameter(function.getParameters())) {
+                unsupported("parameters are not supported in the arguments of " + function);
+            }
+            super.visit(function);
+        }
+
+        private static boolean containsParameter(ExpressionList expressionList) {
+            if (expressionList.getExpressions() != null) {
+                for (Expression expression : expressionList.getExpressions()) {
+                    if (isParameter(expression)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The limit and the offset are not deparsed with the expression visitor, so their parameters are added once the
+     * rest of the select has been deparsed.
+     */
+    private static class ParameterCollectingSelectDeParser extends SelectDeParser {
+        private final ParameterCollectingExpressionDeParser expressionDeParser;
+
+        private ParameterCollectingSelectDeParser(ParameterCollectingExpressionDeParser expressionDeParser) {
+            this.expressionDeParser = expressionDeParser;
+        }
+
+        @Override
+        public void visit(PlainSelect plainSelect) {
+            super.visit(plainSelect);
+            if (plainSelect.getLimit() != null) {
+                addIfParameter(plainSelect.getLimit().getOffset());
+                addIfParameter(plainSelect.getLimit().getRowCount());
+            }
+            if (plainSelect.getOffset() != null) {
+                addIfParameter(plainSelect.getOffset().getOffsetJdbcParameter());
+            }
+        }
+
+        private void addIfParameter(Expression expression) {
+            if (isParameter(expression)) {
+                expressionDeParser.add(expression);
+            }
+        }
+    }
+}
@@ -1,13 +1,13 @@
 package com.github.vincentrussell.query.mongodb.sql.converter;
 
-import com.github.vincentrussell.query.mongodb.sql.converter.processor.FunctionProcessor;
-import com.github.vincentrussell.query.mongodb.sql.converter.util.DateFunction;
+import com.github.vincentrussell.query.mongodb.sql.converter.processor.FunctionRegistry;
+import com.github.vincentrussell.query.mongodb.sql.converter.processor.FunctionTranslator;
+import com.github.vincentrussell.query.mongodb.sql.converter.processor.PredicateFunctionTranslator;
 import com.github.vincentrussell.query.mongodb.sql.converter.util.ObjectIdFunction;
 import com.github.vincentrussell.query.mongodb.sql.converter.util.RegexFunction;
+import com.github.vincentrussell.query.mongodb.sql.converter.util.RegexTranslator;
 import com.github.vincentrussell.query.mongodb.sql.converter.util.SqlUtils;
-import com.github.vincentrussell.query.mongodb.sql.converter.util.BinaryDataObject;
-import com.github.vincentrussell.query.mongodb.sql.converter.util.DateObject;
-import com.google.common.collect.Lists;
+import com.google.common.collect.ImmutableMap;
 import net.sf.jsqlparser.expression.*;
 import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
 import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
@@ -15,94 +15,54 @@ import net.sf.jsqlparser.expression.operators.relational.*;
 import net.sf.jsqlparser.schema.Column;
 import org.bson.Document;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 
 public class WhereCauseProcessor {
 
+    private static final Map<Class<? extends ComparisonOperator>, ComparisonTranslator> COMPARISON_TRANSLATORS =
+            ImmutableMap.<Class<? extends ComparisonOperator>, ComparisonTranslator>builder()
+                    .put(EqualsTo.class, new ComparisonTranslator() {
+                        @Override
+                        public void translate(WhereCauseProcessor processor, Document query,
+                                              Expression leftExpression, Expression rightExpression)
+                                throws ParseException {
+                            processor.translateEqualsTo(query, leftExpression, rightExpression);
+                        }
+                    })
+                    .put(NotEqualsTo.class, new ComparisonTranslator() {
+                        @Override
+                        public void translate(WhereCauseProcessor processor, Document query,
+                                              Expression leftExpression, Expression rightExpression)
+                                throws ParseException {
+                            processor.translateNotEqualsTo(query, leftExpression, rightExpression);
+                        }
+                    })
+                    .put(GreaterThan.class, new RangeTranslator("$gt"))
+                    .put(MinorThan.class, new RangeTranslator("$lt"))
+                    .put(GreaterThanEquals.class, new RangeTranslator("$gte"))
+                    .put(MinorThanEquals.class, new RangeTranslator("$lte"))
+                    .build();
+
     private final FieldType defaultFieldType;
-    private final Map<String, FieldType> fieldNameToFieldTypeMapping;
+    private final FieldTypeResolver fieldTypeResolver;
 
     public WhereCauseProcessor(FieldType defaultFieldType, Map<String, FieldType> fieldNameToFieldTypeMapping) {
+        this(defaultFieldType, FieldTypeResolver.of(fieldNameToFieldTypeMapping));
+    }
+
+    public WhereCauseProcessor(FieldType defaultFieldType, FieldTypeResolver fieldTypeResolver) {
         this.defaultFieldType = defaultFieldType;
-        this.fieldNameToFieldTypeMapping = fieldNameToFieldTypeMapping;
+        this.fieldTypeResolver = fieldTypeResolver;
     }
 
     public Object parseExpression(Document query, Expression incomingExpression, Expression otherSide) throws ParseException {
         if (ComparisonOperator.class.isInstance(incomingExpression)) {
-            RegexFunction regexFunction = SqlUtils.isRegexFunction(incomingExpression);
-            DateFunction dateFunction = SqlUtils.isDateFunction(incomingExpression);
-            ObjectIdFunction objectIdFunction = SqlUtils.isObjectIdFunction(this, incomingExpression);
-
-            BinaryDataObject binaryDataObject = SqlUtils.isNewBindataObject(this,incomingExpression);
-            DateObject dateObject = SqlUtils.isDateObject(this,incomingExpression);
-            if (regexFunction != null) {
-                Document regexDocument = new Document("$regex", regexFunction.getRegex());
-                if (regexFunction.getOptions() != null) {
-                    regexDocument.append("$options", regexFunction.getOptions());
-                }
-                query.put(regexFunction.getColumn(), regexDocument);
-            } else if (dateFunction!=null) {
-                query.put(dateFunction.getColumn(),
-                    new Document(dateFunction.getComparisonExpression(), dateFunction.getDate()));
-            } else if (objectIdFunction != null) {
-                query.put(objectIdFunction.getColumn(), objectIdFunction.toDocument());
-            } else if(binaryDataObject !=null){
-                query.put(binaryDataObject.getColumn(), binaryDataObject.getValue());
-            } else if(dateObject !=null){
-                query.put(dateObject.getColumn(), dateObject.getValue());
-            } else if (EqualsTo.class.isInstance(incomingExpression)) {
-                final Expression leftExpression = ((EqualsTo) incomingExpression).getLeftExpression();
-                final Expression rightExpression = ((EqualsTo) incomingExpression).getRightExpression();
-                if (Function.class.isInstance(leftExpression)) {
-                	Document eq = new Document();
-                	eq.put("$eq", Arrays.asList(parseExpression(new Document(), leftExpression, rightExpression), (SqlUtils.isColumn(rightExpression)&&!rightExpression.toString().startsWith("$")?"$":"") + parseExpression(new Document(), rightExpression, leftExpression)));
-                	query.put("$expr", eq);
-                } else if (SqlUtils.isColumn(leftExpression) && SqlUtils.isColumn(rightExpression)){//$eq operator
-                	Document eq = new Document();
-                	eq.put("$eq",Arrays.asList(((Column)leftExpression).getName(false), ((Column)rightExpression).getName(false)));
-                	query.put("$expr", eq);
-                }
-                else if (Function.class.isInstance(rightExpression)){
-                	Document eq = new Document();
-                	eq.put("$eq", Arrays.asList(parseExpression(new Document(), rightExpression, leftExpression), (SqlUtils.isColumn(leftExpression)&&!leftExpression.toString().startsWith("$")?"$":"") + parseExpression(new Document(), leftExpression, rightExpression)));
-                	query.put("$expr", eq);
-                } 
-                else{
-                    query.put(parseExpression(new Document(), leftExpression, rightExpression).toString(),
-                        parseExpression(new Document(), rightExpression, leftExpression));
-                }
-            } else if (NotEqualsTo.class.isInstance(incomingExpression)) {
-                final Expression leftExpression = ((NotEqualsTo) incomingExpression).getLeftExpression();
-                final Expression rightExpression = ((NotEqualsTo) incomingExpression).getRightExpression();
-
-                if (Function.class.isInstance(leftExpression)) {
-                    query.put("$ne", new Document("arg1", parseExpression(new Document(), leftExpression, rightExpression))
-                        .append("arg2", parseExpression(new Document(), rightExpression, leftExpression)));
-                } else {
-                    query.put(SqlUtils.getStringValue(leftExpression), new Document("$ne", parseExpression(new Document(), rightExpression, leftExpression)));
-
-                }
-
-            } else if (GreaterThan.class.isInstance(incomingExpression)) {
-                final Expression leftExpression = ((GreaterThan) incomingExpression).getLeftExpression();
-                final Expression rightExpression = ((GreaterThan) incomingExpression).getRightExpression();
-                query.put(leftExpression.toString(),new Document("$gt",parseExpression(new Document(), rightExpression, leftExpression)));
-            } else if (MinorThan.class.isInstance(incomingExpression)) {
-                final Expression leftExpression = ((MinorThan) incomingExpression).getLeftExpression();
-                final Expression rightExpression = ((MinorThan) incomingExpression).getRightExpression();
-                query.put(leftExpression.toString(),new Document("$lt", parseExpression(new Document(), rightExpression, leftExpression)));
-            } else if (GreaterThanEquals.class.isInstance(incomingExpression)) {
-                final Expression leftExpression = ((GreaterThanEquals) incomingExpression).getLeftExpression();
-                final Expression rightExpression = ((GreaterThanEquals) incomingExpression).getRightExpression();
-                query.put(leftExpression.toString(),new Document("$gte",parseExpression(new Document(), rightExpression, leftExpression)));
-            } else if (MinorThanEquals.class.isInstance(incomingExpression)) {
-                final Expression leftExpression = ((MinorThanEquals) incomingExpression).getLeftExpression();
-                final Expression rightExpression = ((MinorThanEquals) incomingExpression).getRightExpression();
-                query.put(leftExpression.toString(),new Document("$lte", parseExpression(new Document(), rightExpression, leftExpression)));
-            }
+            translateComparison(query, (ComparisonOperator) incomingExpression);
         } else if(LikeExpression.class.isInstance(incomingExpression)
                 && Column.class.isInstance(((LikeExpression)incomingExpression).getLeftExpression())
                 && (StringValue.class.isInstance(((LikeExpression)incomingExpression).getRightExpression()) ||
@@ -110,7 +70,7 @@ public class WhereCauseProcessor {
             LikeExpression likeExpression = (LikeExpression)incomingExpression;
             String stringValueLeftSide = SqlUtils.getStringValue(likeExpression.getLeftExpression());
             String stringValueRightSide = SqlUtils.getStringValue(likeExpression.getRightExpression());
-            Document document = new Document("$regex", "^" + SqlUtils.replaceRegexCharacters(stringValueRightSide) + "$");
+            Document document = likeToDocument(stringValueRightSide);
             if (likeExpression.isNot()) {
                 document = new Document("$not",new Document(stringValueLeftSide,document));
                 throw new ParseException("NOT LIKE queries not supported");
@@ -118,6 +78,19 @@ public class WhereCauseProcessor {
                 document = new Document(stringValueLeftSide,document);
             }
             query.putAll(document);
+        } else if(Between.class.isInstance(incomingExpression)
+                && Column.class.isInstance(((Between)incomingExpression).getLeftExpression())) {
+            Between between = (Between) incomingExpression;
+            Expression leftExpression = between.getLeftExpression();
+            String field = SqlUtils.getStringValue(leftExpression);
+            Object start = parseExpression(new Document(), between.getBetweenExpressionStart(), leftExpression);
+            Object end = parseExpression(new Document(), between.getBetweenExpressionEnd(), leftExpression);
+            if (between.isNot()) {
+                query.put("$or", Arrays.asList(new Document(field, new Document("$lt", start)),
+                        new Document(field, new Document("$gt", end))));
+            } else {
+                query.put(field, new Document("$gte", start).append("$lte", end));
+            }
         } else if(IsNullExpression.class.isInstance(incomingExpression)) {
             IsNullExpression isNullExpression = (IsNullExpression) incomingExpression;
             query.put(SqlUtils.getStringValue(isNullExpression.getLeftExpression()),new Document("$exists",isNullExpression.isNot()));
@@ -130,18 +103,13 @@ public class WhereCauseProcessor {
             if (objectIdFunction != null) {
                 query.put(objectIdFunction.getColumn(), objectIdFunction.toDocument());
             } else {
-                List<Object> objectList = Lists
-                    .transform(((ExpressionList) inExpression.getRightItemsList()).getExpressions(),
-                        new com.google.common.base.Function<Expression, Object>() {
-                            @Override public Object apply(Expression expression) {
-                                try {
-                                    return parseExpression(new Document(), expression,
-                                        leftExpression);
-                                } catch (ParseException e) {
-                                    throw new RuntimeException(e);
-                                }
-                            }
-                        });
+                //converted once, with the field type of the left side, so a value that does not fit it fails here
+                List<Expression> expressions = ((ExpressionList) inExpression.getRightItemsList()).getExpressions();
+                List<Object> objectList = new ArrayList<>(expressions.size());
+                for (Expression expression : expressions) {
+                    objectList.add(parseExpression(new Document(), expression, leftExpression));
+                }
+                objectList = SqlUtils.distinctInValues(objectList);
 
                 if (Function.class.isInstance(leftExpression)) {
                     String mongoInFunction = inExpression.isNot() ? "$fnin" : "$fin";
@@ -176,70 +144,208 @@ public class WhereCauseProcessor {
                 }
                 query.put(regexFunction.getColumn(), regexDocument);
             } else {
-                recurseFunctions(query, function, defaultFieldType, fieldNameToFieldTypeMapping);
+                recurseFunctions(query, function, defaultFieldType, fieldTypeResolver);
             }
         } else if (otherSide == null) {
             return new Document(SqlUtils.getStringValue(incomingExpression), true);
         } else {
-            return SqlUtils.getValue(incomingExpression,otherSide, defaultFieldType, fieldNameToFieldTypeMapping);
+            return SqlUtils.getValue(incomingExpression,otherSide, defaultFieldType, fieldTypeResolver);
         }
         return query;
     }
 
-    private Object recurseFunctions(Document query, Object object, FieldType defaultFieldType, Map<String, FieldType> fieldNameToFieldTypeMapping) throws ParseException {
+    //a function on one side can turn a comparison into something else, see PredicateFunctionTranslator
+    private void translateComparison(Document query, ComparisonOperator comparison) throws ParseException {
+        Expression leftExpression = comparison.getLeftExpression();
+        Expression rightExpression = comparison.getRightExpression();
+        if (Function.class.isInstance(leftExpression)
+                && translateFunction(query, comparison, (Function) leftExpression)) {
+            return;
+        }
+        if (Function.class.isInstance(rightExpression)
+                && translateFunction(query, comparison, (Function) rightExpression)) {
+            return;
+        }
+        ComparisonTranslator translator = COMPARISON_TRANSLATORS.get(comparison.getClass());
+        if (translator != null) {
+            translator.translate(this, query, leftExpression, rightExpression);
+        }
+    }
+
+    private boolean translateFunction(Document query, ComparisonOperator comparison, Function function)
+            throws ParseException {
+        PredicateFunctionTranslator translator = FunctionRegistry.getPredicateFunctionTranslator(function.getName());
+        Document filter = translator != null ? translator.translate(comparison, function) : null;
+        if (filter == null) {
+            return false;
+        }
+        query.putAll(filter);
+        return true;
+    }
+
+    private void translateEqualsTo(Document query, Expression leftExpression, Expression rightExpression)
+            throws ParseException {
+        if (Function.class.isInstance(leftExpression)) {
+            Document eq = new Document();
+            eq.put("$eq", Arrays.asList(parseExpression(new Document(), leftExpression, rightExpression), (SqlUtils.isColumn(rightExpression)&&!rightExpression.toString().startsWith("$")?"$":"") + parseExpression(new Document(), rightExpression, leftExpression)));
+            query.put("$expr", eq);
+        } else if (SqlUtils.isColumn(leftExpression) && SqlUtils.isColumn(rightExpression)){//$eq operator
+            Document eq = new Document();
+            eq.put("$eq",Arrays.asList(((Column)leftExpression).getName(false), ((Column)rightExpression).getName(false)));
+            query.put("$expr", eq);
+        } else if (Function.class.isInstance(rightExpression)){
+            Document eq = new Document();
+            eq.put("$eq", Arrays.asList(parseExpression(new Document(), rightExpression, leftExpression), (SqlUtils.isColumn(leftExpression)&&!leftExpression.toString().startsWith("$")?"$":"") + parseExpression(new Document(), leftExpression, rightExpression)));
+            query.put("$expr", eq);
+        } else {
+            query.put(parseOperand(leftExpression, rightExpression).toString(),
+                parseOperand(rightExpression, leftExpression));
+        }
+    }
+
+    private void translateNotEqualsTo(Document query, Expression leftExpression, Expression rightExpression)
+            throws ParseException {
+        if (Function.class.isInstance(leftExpression)) {
+            query.put("$ne", new Document("arg1", parseExpression(new Document(), leftExpression, rightExpression))
+                .append("arg2", parseExpression(new Document(), rightExpression, leftExpression)));
+        } else {
+            query.put(SqlUtils.getStringValue(leftExpression), new Document("$ne", parseOperand(rightExpression, leftExpression)));
+        }
+    }
+
+    //columns and literals are converted directly instead of being tested against every branch of parseExpression
+    private Object parseOperand(Expression expression, Expression otherSide) throws ParseException {
+        if (Column.class.isInstance(expression) || LongValue.class.isInstance(expression)
+                || StringValue.class.isInstance(expression)) {
+            return SqlUtils.getValue(expression, otherSide, defaultFieldType, fieldTypeResolver);
+        }
+        return parseExpression(new Document(), expression, otherSide);
+    }
+
+    private static Document likeToDocument(String likePattern) {
+        String regex = RegexTranslator.likeToRegex(likePattern);
+        if (Boolean.parseBoolean(System.getProperty(QueryConverter.D_LIKE_PREFIX_RANGE, "false"))) {
+            String prefix = RegexTranslator.getLikePrefix(likePattern);
+            String upperBound = prefix != null ? RegexTranslator.getPrefixUpperBound(prefix) : null;
+            if (upperBound != null) {
+                //a range of strings is matched with the bounds of an index, without evaluating a regex for every key
+                Document document = new Document("$gte", prefix).append("$lt", upperBound);
+                if (Boolean.parseBoolean(System.getProperty(QueryConverter.D_LIKE_PREFIX_RANGE_KEEP_REGEX, "false"))) {
+                    document.append("$regex", regex);
+                }
+                return document;
+            }
+        }
+        return new Document("$regex", regex);
+    }
+
+    private Object recurseFunctions(Document query, Object object, FieldType defaultFieldType, FieldTypeResolver fieldTypeResolver) throws ParseException {
         if (Function.class.isInstance(object)) {
             Function function = (Function)object;
-            query.put("$" + FunctionProcessor.transcriptFunctionName(function.getName()), recurseFunctions(new Document(), function.getParameters(), defaultFieldType, fieldNameToFieldTypeMapping));
+            Object arguments = recurseFunctions(new Document(), function.getParameters(), defaultFieldType, fieldTypeResolver);
+            FunctionTranslator translator = FunctionRegistry.getFunctionTranslator(function.getName());
+            if (translator != null) {
+                query.putAll(translator.translate(arguments));
+            } else {
+                query.put("$" + function.getName(), arguments);
+            }
         } else if (ExpressionList.class.isInstance(object)) {
             ExpressionList expressionList = (ExpressionList)object;
             List<Object> objectList = new ArrayList<>();
             for (Expression expression : expressionList.getExpressions()) {
-                objectList.add(recurseFunctions(new Document(), expression, defaultFieldType, fieldNameToFieldTypeMapping));
+                objectList.add(recurseFunctions(new Document(), expression, defaultFieldType, fieldTypeResolver));
             }
             return objectList.size() == 1 ? objectList.get(0) : objectList;
         } else if (Expression.class.isInstance(object)) {
-            return SqlUtils.getValue((Expression)object, null, defaultFieldType, fieldNameToFieldTypeMapping);
+            return SqlUtils.getValue((Expression)object, null, defaultFieldType, fieldTypeResolver);
         }
 
         return query.isEmpty() ? null : query;
     }
 
     private void handleAndOr(String key, BinaryExpression incomingExpression, Document query) throws ParseException {
-        final Expression leftExpression = incomingExpression.getLeftExpression();
-        final Expression rightExpression = incomingExpression.getRightExpression();
-
-        List result = flattenOrsOrAnds(new ArrayList(), leftExpression, leftExpression, rightExpression);
+        //an explicit stack instead of recursion, so that very wide or deeply nested predicates can not overflow the
+        //thread stack.  Operands joined with the same operator, also through parentheses, end up in one flat list.
+        AndOrOperands root = new AndOrOperands(key, incomingExpression);
+        Deque<AndOrOperands> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            AndOrOperands current = stack.peek();
+            Expression operand = current.nextOperand();
+            if (operand == null) {
+                stack.pop();
+                if (!stack.isEmpty()) {
+                    stack.peek().convertedOperands.add(new Document(current.key, current.convertedOperands));
+                }
+            } else if (isOrAndExpression(withoutParenthesis(operand))) {
+                BinaryExpression binaryExpression = (BinaryExpression) withoutParenthesis(operand);
+                stack.push(new AndOrOperands(AndExpression.class.isInstance(binaryExpression) ? "$and" : "$or",
+                        binaryExpression));
+            } else {
+                current.convertedOperands.add(parseExpression(new Document(), operand, null));
+            }
+        }
+        query.put(key, root.convertedOperands);
+    }
 
-        if (result != null) {
-            query.put(key, Lists.reverse(result));
-        } else {
-            query.put(key, Arrays.asList(parseExpression(new Document(), leftExpression, rightExpression),
-                    parseExpression(new Document(), rightExpression, leftExpression)));
+    private static Expression withoutParenthesis(Expression expression) {
+        while (Parenthesis.class.isInstance(expression) && !((Parenthesis) expression).isNot()) {
+            expression = ((Parenthesis) expression).getExpression();
         }
+        return expression;
     }
 
-    private List flattenOrsOrAnds(List arrayList, Expression firstExpression, Expression leftExpression, Expression rightExpression) throws ParseException {
-            if (firstExpression.getClass().isInstance(leftExpression) &&
-                    isOrAndExpression(leftExpression) && !isOrAndExpression(rightExpression)) {
-                Expression left = ((BinaryExpression)leftExpression).getLeftExpression();
-                Expression right = ((BinaryExpression)leftExpression).getRightExpression();
-                arrayList.add(parseExpression(new Document(), rightExpression, null));
-                List result = flattenOrsOrAnds(arrayList, firstExpression, left, right);
-                if (result != null) {
-                    return arrayList;
+    private static final class AndOrOperands {
+        private final String key;
+        private final Class<? extends Expression> operator;
+        private final Deque<Expression> remainingOperands = new ArrayDeque<>();
+        private final List<Object> convertedOperands = new ArrayList<>();
+
+        private AndOrOperands(String key, BinaryExpression expression) {
+            this.key = key;
+            this.operator = expression.getClass();
+            remainingOperands.push(expression.getRightExpression());
+            remainingOperands.push(expression.getLeftExpression());
+        }
+
+        //the next operand from left to right that is not joined with the same operator
+        private Expression nextOperand() {
+            while (!remainingOperands.isEmpty()) {
+                Expression operand = remainingOperands.pop();
+                Expression expression = withoutParenthesis(operand);
+                if (operator == expression.getClass()) {
+                    remainingOperands.push(((BinaryExpression) expression).getRightExpression());
+                    remainingOperands.push(((BinaryExpression) expression).getLeftExpression());
+                } else {
+                    return operand;
                 }
-            } else if (isOrAndExpression(firstExpression) && !isOrAndExpression(leftExpression) && !isOrAndExpression(rightExpression)) {
-                arrayList.add(parseExpression(new Document(), rightExpression, null));
-                arrayList.add(parseExpression(new Document(), leftExpression, null));
-                return arrayList;
-            } else {
-                return null;
             }
             return null;
+        }
     }
 
     private boolean isOrAndExpression(Expression expression) {
         return OrExpression.class.isInstance(expression) || AndExpression.class.isInstance(expression);
     }
 
+    private interface ComparisonTranslator {
+        void translate(WhereCauseProcessor processor, Document query, Expression leftExpression,
+                       Expression rightExpression) throws ParseException;
+    }
+
+    private static final class RangeTranslator implements ComparisonTranslator {
+        private final String operator;
+
+        private RangeTranslator(String operator) {
+            this.operator = operator;
+        }
+
+        @Override
+        public void translate(WhereCauseProcessor processor, Document query, Expression leftExpression,
+                              Expression rightExpression) throws ParseException {
+            query.put(leftExpression.toString(),
+                    new Document(operator, processor.parseOperand(rightExpression, leftExpression)));
+        }
+    }
+
 }
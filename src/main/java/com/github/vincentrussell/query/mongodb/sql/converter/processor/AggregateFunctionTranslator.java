@@ -0,0 +1,29 @@
+package com.github.vincentrussell.query.mongodb.sql.converter.processor;
+
+import com.github.vincentrussell.query.mongodb.sql.converter.ParseException;
+
+/**
+ * Translates a sql aggregate function in a query with a GROUP BY, like <code>sum(amount)</code>, to a
+ * <code>$group</code> accumulator.
+ * @see FunctionRegistry#register(AggregateFunctionTranslator)
+ */
+public interface AggregateFunctionTranslator {
+
+    /**
+     * @return the name of the sql function, which is matched ignoring case
+     */
+    String getName();
+
+    /**
+     * @param field the field the function runs on, with dots replaced by underscores, or null
+     * @return the name of the output field when the function has no alias, like <code>sum_amount</code>
+     */
+    String getOutputName(String field);
+
+    /**
+     * @param field the field the function runs on, with dots replaced by underscores, or null
+     * @return the accumulator, like <code>{"$sum": "$amount"}</code>
+     * @throws ParseException when the function can not run on the field
+     */
+    Object translate(String field) throws ParseException;
+}
@@ -1,18 +1,18 @@
 package com.github.vincentrussell.query.mongodb.sql.converter.processor;
 
 import com.github.vincentrussell.query.mongodb.sql.converter.ParseException;
-import java.util.HashMap;
+import com.google.common.collect.ImmutableMap;
 
+import java.util.Map;
+
+/**
+ * @deprecated functions are translated by the translators in the {@link FunctionRegistry}
+ */
+@Deprecated
 public final class FunctionProcessor {
 	
-	private static HashMap<String,String> functionMapper;
-	
-	// Instantiating the static map 
-    static
-    { 
-    	functionMapper = new HashMap<>(); 
-    	functionMapper.put("OID", "toObjectId"); 
-    }
+	// immutable so that it can be read from many threads at once
+	private static final Map<String,String> functionMapper = ImmutableMap.of("OID", "toObjectId");
 	
 	
 	public static String transcriptFunctionName(String functionName) throws ParseException {
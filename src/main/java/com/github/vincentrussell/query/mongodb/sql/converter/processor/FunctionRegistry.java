@@ -0,0 +1,272 @@
+package com.github.vincentrussell.query.mongodb.sql.converter.processor;
+
+import com.github.vincentrussell.query.mongodb.sql.converter.ParseException;
+import com.github.vincentrussell.query.mongodb.sql.converter.util.BinaryDataObject;
+import com.github.vincentrussell.query.mongodb.sql.converter.util.DateFunction;
+import com.github.vincentrussell.query.mongodb.sql.converter.util.DateObject;
+import com.github.vincentrussell.query.mongodb.sql.converter.util.ObjectIdFunction;
+import com.github.vincentrussell.query.mongodb.sql.converter.util.RegexFunction;
+import com.github.vincentrussell.query.mongodb.sql.converter.util.SqlUtils;
+import net.sf.jsqlparser.expression.Function;
+import net.sf.jsqlparser.expression.operators.relational.ComparisonOperator;
+import org.bson.Document;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.TreeMap;
+
+import static org.apache.commons.lang.Validate.notNull;
+
+/**
+ * The translators of sql functions, looked up by name ignoring case.  Besides the built in translators, the
+ * translators listed in <code>META-INF/services</code> files for {@link FunctionTranslator},
+ * {@link AggregateFunctionTranslator} and {@link PredicateFunctionTranslator} are registered when this class is
+ * loaded, and more can be registered at any time.  A translator replaces the translator of the same kind with the same
+ * name.  Lookups read an immutable map, so they are safe from any number of threads while translators are registered.
+ */
+public final class FunctionRegistry {
+
+    private static final Object LOCK = new Object();
+
+    private static volatile Map<String, FunctionTranslator> functionTranslators = emptyMap();
+    private static volatile Map<String, AggregateFunctionTranslator> aggregateFunctionTranslators = emptyMap();
+    private static volatile Map<String, PredicateFunctionTranslator> predicateFunctionTranslators = emptyMap();
+
+    static {
+        register(new RenamingTranslator("OID", "toObjectId"));
+        register(new FieldAccumulatorTranslator("sum"));
+        register(new FieldAccumulatorTranslator("avg"));
+        register(new FieldAccumulatorTranslator("min"));
+        register(new FieldAccumulatorTranslator("max"));
+        register(new CountTranslator());
+        register(new RegexMatchTranslator());
+        register(new DateTranslator());
+        register(new ObjectIdTranslator());
+        register(new BinDataTranslator("bindata"));
+        register(new BinDataTranslator("new bindata"));
+
+        for (FunctionTranslator translator : ServiceLoader.load(FunctionTranslator.class)) {
+            register(translator);
+        }
+        for (AggregateFunctionTranslator translator : ServiceLoader.load(AggregateFunctionTranslator.class)) {
+            register(translator);
+        }
+        for (PredicateFunctionTranslator translator : ServiceLoader.load(PredicateFunctionTranslator.class)) {
+            register(translator);
+        }
+    }
+
+    private FunctionRegistry() {
+    }
+
+    /**
+     * @param translator the translator of a function that is used as a value
+     */
+    public static void register(FunctionTranslator translator) {
+        notNull(translator, "translator is null");
+        synchronized (LOCK) {
+            functionTranslators = with(functionTranslators, translator.getName(), translator);
+        }
+    }
+
+    /**
+     * @param translator the translator of an aggregate function
+     */
+    public static void register(AggregateFunctionTranslator translator) {
+        notNull(translator, "translator is null");
+        synchronized (LOCK) {
+            aggregateFunctionTranslators = with(aggregateFunctionTranslators, translator.getName(), translator);
+        }
+    }
+
+    /**
+     * @param translator the translator of a function that turns a comparison into a filter
+     */
+    public static void register(PredicateFunctionTranslator translator) {
+        notNull(translator, "translator is null");
+        synchronized (LOCK) {
+            predicateFunctionTranslators = with(predicateFunctionTranslators, translator.getName(), translator);
+        }
+    }
+
+    /**
+     * @param name the function name, in any case
+     * @return the translator, or null when the function is translated generically
+     */
+    public static FunctionTranslator getFunctionTranslator(String name) {
+        return name != null ? functionTranslators.get(name) : null;
+    }
+
+    /**
+     * @param name the function name, in any case
+     * @return the translator, or null when there is no such aggregate function
+     */
+    public static AggregateFunctionTranslator getAggregateFunctionTranslator(String name) {
+        return name != null ? aggregateFunctionTranslators.get(name) : null;
+    }
+
+    /**
+     * @param name the function name, in any case
+     * @return the translator, or null when the function does not change what a comparison means
+     */
+    public static PredicateFunctionTranslator getPredicateFunctionTranslator(String name) {
+        return name != null ? predicateFunctionTranslators.get(name) : null;
+    }
+
+    private static <T> Map<String, T> emptyMap() {
+        return Collections.unmodifiableMap(new TreeMap<String, T>(String.CASE_INSENSITIVE_ORDER));
+    }
+
+    //the names are compared ignoring case without creating a lower case copy of them for every lookup
+    private static <T> Map<String, T> with(Map<String, T> translators, String name, T translator) {
+        notNull(name, "name is null");
+        Map<String, T> copy = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        copy.putAll(translators);
+        copy.put(name, translator);
+        return Collections.unmodifiableMap(copy);
+    }
+
+    private static final class RenamingTranslator implements FunctionTranslator {
+        private final String name;
+        private final String operator;
+
+        private RenamingTranslator(String name, String operator) {
+            this.name = name;
+            this.operator = operator;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Document translate(Object arguments) {
+            return new Document("$" + operator, arguments);
+        }
+    }
+
+    private static final class FieldAccumulatorTranslator implements AggregateFunctionTranslator {
+        private final String name;
+
+        private FieldAccumulatorTranslator(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getOutputName(String field) {
+            return name + "_" + field;
+        }
+
+        @Override
+        public Object translate(String field) throws ParseException {
+            SqlUtils.isTrue(field != null, "function " + name + " must contain a single field to run on");
+            return new Document("$" + name, "$" + field);
+        }
+    }
+
+    private static final class CountTranslator implements AggregateFunctionTranslator {
+        @Override
+        public String getName() {
+            return "count";
+        }
+
+        @Override
+        public String getOutputName(String field) {
+            return "count";
+        }
+
+        @Override
+        public Object translate(String field) {
+            return new Document("$sum", 1);
+        }
+    }
+
+    private static final class RegexMatchTranslator implements PredicateFunctionTranslator {
+        @Override
+        public String getName() {
+            return "regexMatch";
+        }
+
+        @Override
+        public Document translate(ComparisonOperator comparison, Function function) throws ParseException {
+            if (function != comparison.getLeftExpression()) {
+                return null;
+            }
+            RegexFunction regexFunction = SqlUtils.isRegexFunction(comparison);
+            if (regexFunction == null) {
+                return null;
+            }
+            Document regexDocument = new Document("$regex", regexFunction.getRegex());
+            if (regexFunction.getOptions() != null) {
+                regexDocument.append("$options", regexFunction.getOptions());
+            }
+            return new Document(regexFunction.getColumn(), regexDocument);
+        }
+    }
+
+    //date(column, 'format') on the left side, date('string') on the right side
+    private static final class DateTranslator implements PredicateFunctionTranslator {
+        @Override
+        public String getName() {
+            return "date";
+        }
+
+        @Override
+        public Document translate(ComparisonOperator comparison, Function function) throws ParseException {
+            if (function == comparison.getLeftExpression()) {
+                DateFunction dateFunction = SqlUtils.isDateFunction(comparison);
+                return dateFunction != null ? new Document(dateFunction.getColumn(),
+                        new Document(dateFunction.getComparisonExpression(), dateFunction.getDate())) : null;
+            }
+            DateObject dateObject = SqlUtils.isDateObject(null, comparison);
+            return dateObject != null ? new Document(dateObject.getColumn(), dateObject.getValue()) : null;
+        }
+    }
+
+    private static final class ObjectIdTranslator implements PredicateFunctionTranslator {
+        @Override
+        public String getName() {
+            return "objectId";
+        }
+
+        @Override
+        public Document translate(ComparisonOperator comparison, Function function) throws ParseException {
+            if (function != comparison.getLeftExpression()) {
+                return null;
+            }
+            ObjectIdFunction objectIdFunction = SqlUtils.isObjectIdFunction(null, comparison);
+            return objectIdFunction != null
+                    ? new Document(objectIdFunction.getColumn(), objectIdFunction.toDocument()) : null;
+        }
+    }
+
+    private static final class BinDataTranslator implements PredicateFunctionTranslator {
+        private final String name;
+
+        private BinDataTranslator(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Document translate(ComparisonOperator comparison, Function function) throws ParseException {
+            if (function != comparison.getRightExpression()) {
+                return null;
+            }
+            BinaryDataObject binaryDataObject = SqlUtils.isNewBindataObject(null, comparison);
+            return binaryDataObject != null
+                    ? new Document(binaryDataObject.getColumn(), binaryDataObject.getValue()) : null;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.github.vincentrussell.query.mongodb.sql.converter.processor;
+
+import com.github.vincentrussell.query.mongodb.sql.converter.ParseException;
+import org.bson.Document;
+
+/**
+ * Translates a sql function that is used as a value, like <code>OID(column)</code>, to a mongo expression.  Functions
+ * without a translator become <code>{"$name": arguments}</code>.
+ * @see FunctionRegistry#register(FunctionTranslator)
+ */
+public interface FunctionTranslator {
+
+    /**
+     * @return the name of the sql function, which is matched ignoring case
+     */
+    String getName();
+
+    /**
+     * @param arguments null when the function has no arguments, the converted argument when it has one, otherwise
+     *                  the list of converted arguments
+     * @return the mongo expression, like <code>{"$toObjectId": "column"}</code>
+     * @throws ParseException when the arguments can not be translated
+     */
+    Document translate(Object arguments) throws ParseException;
+}
@@ -1,10 +1,12 @@
 package com.github.vincentrussell.query.mongodb.sql.converter.processor;
 
 import com.github.vincentrussell.query.mongodb.sql.converter.FieldType;
+import com.github.vincentrussell.query.mongodb.sql.converter.FieldTypeResolver;
 import com.github.vincentrussell.query.mongodb.sql.converter.ParseException;
 import com.github.vincentrussell.query.mongodb.sql.converter.WhereCauseProcessor;
 import com.github.vincentrussell.query.mongodb.sql.converter.holder.ExpressionHolder;
 import com.github.vincentrussell.query.mongodb.sql.converter.holder.TablesHolder;
+import com.github.vincentrussell.query.mongodb.sql.converter.util.SqlUtils;
 import com.github.vincentrussell.query.mongodb.sql.converter.visitor.ExpVisitorEraseAliasTableBaseBuilder;
 import com.github.vincentrussell.query.mongodb.sql.converter.visitor.OnVisitorLetsBuilder;
 import com.github.vincentrussell.query.mongodb.sql.converter.visitor.OnVisitorMatchLookupBuilder;
@@ -21,7 +23,6 @@ import net.sf.jsqlparser.statement.select.Join;
 import org.apache.commons.lang.mutable.MutableBoolean;
 import org.bson.Document;
 
-import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -33,34 +34,32 @@ public final class JoinProcessor {
 		return onDocument;
 	}
 	
-	private static Document generateMatchJoin(TablesHolder tholder, Expression onExp, Expression wherePartialExp, Table t) throws ParseException {
+	private static Document generateMatchJoin(TablesHolder tholder, Expression onExp, Expression wherePartialExp, Table t, WhereCauseProcessor whereCauseProcessor) throws ParseException {
 		Document matchJoinStep = new Document();
-		onExp.accept(new OnVisitorMatchLookupBuilder(t.getAlias().getName(),tholder.getBaseAliasTable()));
-		WhereCauseProcessor whereCauseProcessor = new WhereCauseProcessor(FieldType.UNKNOWN,
-				Collections.<String, FieldType>emptyMap());
-        
+		Expression matchOnExp = new OnVisitorMatchLookupBuilder(t.getAlias().getName(),tholder.getBaseAliasTable()).transform(onExp);
+
 		matchJoinStep.put("$match", whereCauseProcessor
-                .parseExpression(new Document(), wherePartialExp != null? new AndExpression(onExp,wherePartialExp):onExp, null));
+                .parseExpression(new Document(), wherePartialExp != null? new AndExpression(matchOnExp,wherePartialExp):matchOnExp, null));
 		return matchJoinStep;
 	}
 	
-	private static List<Document> generateSubPipelineLookup(TablesHolder tholder, Expression onExp, Expression wherePartialExp, Table t) throws ParseException {
+	private static List<Document> generateSubPipelineLookup(TablesHolder tholder, Expression onExp, Expression wherePartialExp, Table t, WhereCauseProcessor whereCauseProcessor) throws ParseException {
 		List<Document> ldoc = new LinkedList<Document>();
-		ldoc.add(generateMatchJoin(tholder, onExp, wherePartialExp, t));	
+		ldoc.add(generateMatchJoin(tholder, onExp, wherePartialExp, t, whereCauseProcessor));	
 		return ldoc;
 	}
 
-	private static Document generateInternalLookup(TablesHolder tholder, Table t, Expression onExp, Expression wherePartialExp) throws ParseException {
+	private static Document generateInternalLookup(TablesHolder tholder, Table t, Expression onExp, Expression wherePartialExp, WhereCauseProcessor whereCauseProcessor) throws ParseException {
 		Document lookupInternal = new Document(); 
 		lookupInternal.put("from", t.getName());
 		lookupInternal.put("let", generateLetsFromON(tholder, onExp, t));
-		lookupInternal.put("pipeline", generateSubPipelineLookup(tholder, onExp, wherePartialExp, t));
+		lookupInternal.put("pipeline", generateSubPipelineLookup(tholder, onExp, wherePartialExp, t, whereCauseProcessor));
 		lookupInternal.put("as", tholder.getAlias(t.getName()));
 		
 		return lookupInternal;
 	}
 	
-	private static Document generateLookupStep(TablesHolder tholder, Table table, Expression onExp, Expression mixedOnAndWhereExp) throws ParseException {
+	private static Document generateLookupStep(TablesHolder tholder, Table table, Expression onExp, Expression mixedOnAndWhereExp, WhereCauseProcessor whereCauseProcessor) throws ParseException {
 		/**
 		 * {
 		 * 	"$lookup":{
@@ -80,7 +79,7 @@ public final class JoinProcessor {
 		 * }
 		 */
 		Document lookup = new Document();
-		lookup.put("$lookup", generateInternalLookup(tholder, table, onExp, mixedOnAndWhereExp));
+		lookup.put("$lookup", generateInternalLookup(tholder, table, onExp, mixedOnAndWhereExp, whereCauseProcessor));
 		return lookup;
 	}
 	
@@ -105,17 +104,13 @@ public final class JoinProcessor {
 		return unwind;
 	}
 	
-	private static Document generateInternalMatchAfterJoin(String baseAliasTable, Expression whereExpression) throws ParseException {
-		WhereCauseProcessor whereCauseProcessor = new WhereCauseProcessor(FieldType.UNKNOWN,
-				Collections.<String, FieldType>emptyMap());
-        
-		whereExpression.accept(new ExpVisitorEraseAliasTableBaseBuilder(baseAliasTable));
-		
+	private static Document generateInternalMatchAfterJoin(String baseAliasTable, Expression whereExpression, WhereCauseProcessor whereCauseProcessor) throws ParseException {
+
 		return (Document) whereCauseProcessor
-                .parseExpression(new Document(), whereExpression, null);
+                .parseExpression(new Document(), new ExpVisitorEraseAliasTableBaseBuilder(baseAliasTable).transform(whereExpression), null);
 	}
 	
-	private static Document generateMatchAfterJoin(TablesHolder tholder, Expression whereExpression) throws ParseException {
+	private static Document generateMatchAfterJoin(TablesHolder tholder, Expression whereExpression, WhereCauseProcessor whereCauseProcessor) throws ParseException {
 		/**
 		 * {
 		 * 	"$unwind":{
@@ -125,15 +120,16 @@ public final class JoinProcessor {
 		 * }
 		 */
 		Document match = new Document();
-		match.put("$match", generateInternalMatchAfterJoin(tholder.getBaseAliasTable(), whereExpression));
+		match.put("$match", generateInternalMatchAfterJoin(tholder.getBaseAliasTable(), whereExpression, whereCauseProcessor));
 		return match;
 	}
 	
-	public static List<Document> toPipelineSteps(TablesHolder tholder, List<Join> ljoins, Expression whereExpression) throws ParseException {
+	public static List<Document> toPipelineSteps(TablesHolder tholder, List<Join> ljoins, Expression whereExpression, FieldType defaultFieldType, FieldTypeResolver fieldTypeResolver) throws ParseException {
+		WhereCauseProcessor whereCauseProcessor = new WhereCauseProcessor(defaultFieldType, fieldTypeResolver);
 		List<Document> ldoc = new LinkedList<Document>();
 		MutableBoolean haveOrExpression = new MutableBoolean();
 		for(Join j : ljoins) {
-			if(j.isInner() || j.isLeft()) {
+			if(SqlUtils.isInnerJoin(j) || j.isLeft()) {
 				if(j.getRightItem() instanceof Table) {
 					Table t = (Table)j.getRightItem();
 					ExpressionHolder whereExpHolder = new ExpressionHolder(null);
@@ -142,13 +138,13 @@ public final class JoinProcessor {
 						haveOrExpression.setValue(false);
 						whereExpression.accept(new WhereVisitorMatchAndLookupPipelineMatchBuilder(t.getAlias().getName(), whereExpHolder, haveOrExpression));
 						if(!haveOrExpression.booleanValue() && whereExpHolder.getExpression() != null) {
-							whereExpHolder.getExpression().accept(new ExpVisitorEraseAliasTableBaseBuilder(t.getAlias().getName()));
+							whereExpHolder.setExpression(new ExpVisitorEraseAliasTableBaseBuilder(t.getAlias().getName()).transform(whereExpHolder.getExpression()));
 						}
 						else {
 							whereExpHolder.setExpression(null);
 						}
 					}
-					ldoc.add(generateLookupStep(tholder,t,j.getOnExpression(),whereExpHolder.getExpression()));
+					ldoc.add(generateLookupStep(tholder,t,j.getOnExpression(),whereExpHolder.getExpression(),whereCauseProcessor));
 					ldoc.add(generateUnwindStep(tholder,t,j.isLeft()));
 				}
 				else {//Subselect...
@@ -161,7 +157,7 @@ public final class JoinProcessor {
 			
 		}
 		if(haveOrExpression.booleanValue()) {//if there is some "or" we use this step for support this logic and no other match steps
-			ldoc.add(generateMatchAfterJoin(tholder,whereExpression));
+			ldoc.add(generateMatchAfterJoin(tholder,whereExpression,whereCauseProcessor));
 		}
 		return ldoc;
 	}
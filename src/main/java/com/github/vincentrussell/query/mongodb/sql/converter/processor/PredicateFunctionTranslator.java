@@ -0,0 +1,28 @@
+package com.github.vincentrussell.query.mongodb.sql.converter.processor;
+
+import com.github.vincentrussell.query.mongodb.sql.converter.ParseException;
+import net.sf.jsqlparser.expression.Function;
+import net.sf.jsqlparser.expression.operators.relational.ComparisonOperator;
+import org.bson.Document;
+
+/**
+ * Translates a comparison with a function on one side to a filter, like
+ * <code>regexMatch(column, '^a') = true</code> to <code>{"column": {"$regex": "^a"}}</code>.  A function on the left
+ * side is translated before a function on the right side.
+ * @see FunctionRegistry#register(PredicateFunctionTranslator)
+ */
+public interface PredicateFunctionTranslator {
+
+    /**
+     * @return the name of the sql function, which is matched ignoring case
+     */
+    String getName();
+
+    /**
+     * @param comparison the comparison
+     * @param function the left or the right side of the comparison
+     * @return the filter, or null when the comparison is translated like any other comparison
+     * @throws ParseException when the function is not used correctly
+     */
+    Document translate(ComparisonOperator comparison, Function function) throws ParseException;
+}
@@ -0,0 +1,49 @@
+package com.github.vincentrussell.query.mongodb.sql.converter.util;
+
+import com.github.vincentrussell.query.mongodb.sql.converter.FieldType;
+
+/**
+ * Placeholder for a value that will be bound later on.  Created for every <code>?</code> or <code>:name</code>
+ * parameter found in a prepared sql statement.
+ */
+public class BindParameter {
+    private final Integer index;
+    private final String name;
+    private final FieldType fieldType;
+
+    public BindParameter(Integer index, String name, FieldType fieldType) {
+        this.index = index;
+        this.name = name;
+        this.fieldType = fieldType;
+    }
+
+    /**
+     * @return the 1-based position of a <code>?</code> parameter or null for a named parameter
+     */
+    public Integer getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the name of a <code>:name</code> parameter or null for a positional parameter
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the {@link FieldType} that the bound value will be normalized to
+     */
+    public FieldType getFieldType() {
+        return fieldType;
+    }
+
+    public boolean isNamed() {
+        return name != null;
+    }
+
+    @Override
+    public String toString() {
+        return name != null ? ":" + name : "?";
+    }
+}
@@ -2,8 +2,6 @@ package com.github.vincentrussell.query.mongodb.sql.converter.util;
 
 import com.github.vincentrussell.query.mongodb.sql.converter.ParseException;
 import net.sf.jsqlparser.expression.operators.relational.*;
-import org.joda.time.format.DateTimeFormat;
-import org.joda.time.format.DateTimeFormatter;
 
 import java.util.Date;
 
@@ -16,8 +14,7 @@ public class DateFunction {
         if ("natural".equals(format)) {
             this.date = SqlUtils.parseNaturalLanguageDate(value);
         } else {
-            DateTimeFormatter dateTimeFormatter = DateTimeFormat.forPattern(format).withZoneUTC();
-            this.date = dateTimeFormatter.parseDateTime(value).toDate();
+            this.date = DateLiteralParser.parseUtc(format, value);
         }
         this.column = column;
     }
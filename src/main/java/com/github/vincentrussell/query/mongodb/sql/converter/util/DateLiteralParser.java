@@ -0,0 +1,120 @@
+package com.github.vincentrussell.query.mongodb.sql.converter.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Parses the date literals of a query: the values of {@link com.github.vincentrussell.query.mongodb.sql.converter.FieldType#DATE}
+ * fields, the formats passed to <code>date(column, 'format')</code> and the value of <code>toDate('yyyy-MM-dd')</code>.
+ * The formatter for a value is chosen from the characters it contains instead of trying every formatter, compiled
+ * formatters are kept by pattern and the most recently parsed values are remembered.
+ */
+public final class DateLiteralParser {
+
+    private static final int MAXIMUM_CACHED_PATTERNS = 100;
+    private static final int MAXIMUM_CACHED_LITERALS = 10000;
+
+    private static final DateTimeFormatter ISO_DATE_TIME = ISODateTimeFormat.dateTime();
+    private static final DateTimeFormatter YY_MM_DD = DateTimeFormat.forPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter YYMMDD = DateTimeFormat.forPattern("yyyyMMdd");
+
+    private static final Cache<String, DateTimeFormatter> UTC_FORMATTERS = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_CACHED_PATTERNS).build();
+    private static final Cache<String, ParsedDate> LITERALS = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_CACHED_LITERALS).build();
+
+    private static final ThreadLocal<DateFormat> SIMPLE_DATE_FORMAT = new ThreadLocal<DateFormat>() {
+        @Override
+        protected DateFormat initialValue() {
+            return new SimpleDateFormat("yyyy-MM-dd", Locale.ENGLISH);
+        }
+    };
+
+    private DateLiteralParser() {
+    }
+
+    /**
+     * Parse an ISO date time (yyyy-MM-ddTHH:mm:ss.SSSZZ), a yyyy-MM-dd date or a yyyyMMdd date in the default time
+     * zone.
+     * @param value the date literal
+     * @return the date, or null when the value is not in one of the formats
+     */
+    public static Date parseFormattedDate(String value) {
+        if (!LiteralClassifier.mayBeFormattedDate(value)) {
+            return null;
+        }
+        DateTimeZone zone = DateTimeZone.getDefault();
+        ParsedDate parsedDate = LITERALS.getIfPresent(value);
+        if (parsedDate == null || !parsedDate.zone.equals(zone)) {
+            parsedDate = new ParsedDate(zone, parse(getFormatter(value), value));
+            LITERALS.put(value, parsedDate);
+        }
+        return parsedDate.millis != null ? new Date(parsedDate.millis) : null;
+    }
+
+    /**
+     * Parse a value with a joda-time pattern in UTC, as <code>date(column, 'pattern')</code> does.
+     * @param pattern the joda-time pattern
+     * @param value the date literal
+     * @return the date
+     * @throws IllegalArgumentException when the pattern or the value is invalid
+     */
+    public static Date parseUtc(String pattern, String value) {
+        DateTimeFormatter formatter = UTC_FORMATTERS.getIfPresent(pattern);
+        if (formatter == null) {
+            formatter = DateTimeFormat.forPattern(pattern).withZoneUTC();
+            UTC_FORMATTERS.put(pattern, formatter);
+        }
+        return formatter.parseDateTime(value).toDate();
+    }
+
+    /**
+     * Parse a yyyy-MM-dd date leniently in the default time zone, as {@link SimpleDateFormat} does.
+     * @param value the date literal
+     * @return the date
+     * @throws java.text.ParseException when the beginning of the value is not a date
+     */
+    public static Date parseSimpleDate(String value) throws java.text.ParseException {
+        DateFormat dateFormat = SIMPLE_DATE_FORMAT.get();
+        dateFormat.setTimeZone(TimeZone.getDefault());
+        return dateFormat.parse(value);
+    }
+
+    //ISO date times are the only format with a time, yyyy-MM-dd the only other one with a dash after the year's sign
+    private static DateTimeFormatter getFormatter(String value) {
+        if (value.indexOf('T') >= 0 || value.indexOf('t') >= 0) {
+            return ISO_DATE_TIME;
+        } else if (value.indexOf('-', 1) >= 0) {
+            return YY_MM_DD;
+        }
+        return YYMMDD;
+    }
+
+    private static Long parse(DateTimeFormatter formatter, String value) {
+        try {
+            return formatter.parseMillis(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static final class ParsedDate {
+        private final DateTimeZone zone;
+        private final Long millis;
+
+        private ParsedDate(DateTimeZone zone, Long millis) {
+            this.zone = zone;
+            this.millis = millis;
+        }
+    }
+}
@@ -60,10 +60,9 @@ public class DateObject {
 //                return new Document(oprator,new Date());
 //            }
 
-        DateFormat format = new SimpleDateFormat("yyyy-MM-dd", Locale.ENGLISH);
         try {
             String dateInput = SqlUtils.trimQuatation(value.getParameters().getExpressions().get(0).toString());
-            return new Document(oprator, format.parse(dateInput));
+            return new Document(oprator, DateLiteralParser.parseSimpleDate(dateInput));
         } catch (java.text.ParseException e) {
             e.printStackTrace();
             return new Document(oprator,new Date());
@@ -0,0 +1,101 @@
+package com.github.vincentrussell.query.mongodb.sql.converter.util;
+
+import com.github.vincentrussell.query.mongodb.sql.converter.ParseException;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public final class DocumentUtils {
+
+    private static final ValueTransformer IDENTITY = new ValueTransformer() {
+        @Override
+        public Object transform(Object value) {
+            return value;
+        }
+    };
+
+    private DocumentUtils() {}
+
+    /**
+     * Transforms the values found while copying a document
+     */
+    public interface ValueTransformer {
+        Object transform(Object value) throws ParseException;
+    }
+
+    /**
+     * Create a deep copy of a document.  Nested documents and lists are copied as well.
+     * @param document the document to copy
+     * @return the copy
+     */
+    public static Document deepCopy(Document document) {
+        try {
+            return deepCopy(document, IDENTITY);
+        } catch (ParseException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Create a deep copy of a document, replacing every value that is not a document or a list with the
+     * result of the {@link ValueTransformer}.
+     * @param document the document to copy
+     * @param valueTransformer the transformer for the values
+     * @return the copy
+     * @throws ParseException when the {@link ValueTransformer} fails
+     */
+    public static Document deepCopy(Document document, ValueTransformer valueTransformer) throws ParseException {
+        return (Document) deepCopyValue(document, valueTransformer);
+    }
+
+    /**
+     * Create a deep copy of a list of documents.
+     * @param documents the documents to copy
+     * @return the copy
+     */
+    public static List<Document> deepCopy(List<Document> documents) {
+        try {
+            return deepCopy(documents, IDENTITY);
+        } catch (ParseException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Create a deep copy of a list of documents, replacing every value that is not a document or a list
+     * with the result of the {@link ValueTransformer}.
+     * @param documents the documents to copy
+     * @param valueTransformer the transformer for the values
+     * @return the copy
+     * @throws ParseException when the {@link ValueTransformer} fails
+     */
+    public static List<Document> deepCopy(List<Document> documents, ValueTransformer valueTransformer)
+            throws ParseException {
+        List<Document> copy = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            copy.add(deepCopy(document, valueTransformer));
+        }
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object deepCopyValue(Object value, ValueTransformer valueTransformer) throws ParseException {
+        if (value instanceof Map) {
+            Document copy = new Document();
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
+                copy.put(entry.getKey(), deepCopyValue(entry.getValue(), valueTransformer));
+            }
+            return copy;
+        } else if (value instanceof List) {
+            List<Object> list = (List<Object>) value;
+            List<Object> copy = new ArrayList<>(list.size());
+            for (Object item : list) {
+                copy.add(deepCopyValue(item, valueTransformer));
+            }
+            return copy;
+        }
+        return valueTransformer.transform(value);
+    }
+}
@@ -0,0 +1,221 @@
+package com.github.vincentrussell.query.mongodb.sql.converter.util;
+
+/**
+ * Decides what a sql literal can be converted to by scanning its characters once, instead of trying the conversions
+ * and catching the exceptions they throw.  Every method accepts exactly the strings that the corresponding JDK or
+ * Joda-Time parser accepts.
+ */
+public final class LiteralClassifier {
+
+    private LiteralClassifier() {
+    }
+
+    /**
+     * Convert a string to a number the way {@link Long#parseLong(String)} and, when that fails,
+     * {@link Double#parseDouble(String)} would.
+     * @param value the string
+     * @return a {@link Long}, a {@link Double} or null when the string is not a number
+     */
+    public static Number parseNumber(String value) {
+        Long longValue = parseLong(value);
+        if (longValue != null) {
+            return longValue;
+        }
+        if (isJavaDouble(value)) {
+            return Double.parseDouble(value);
+        }
+        return null;
+    }
+
+    /**
+     * @param value the string
+     * @return {@link Boolean#TRUE} or {@link Boolean#FALSE} when the string is true or false ignoring case,
+     * otherwise null
+     */
+    public static Boolean parseBoolean(String value) {
+        if ("true".equalsIgnoreCase(value)) {
+            return Boolean.TRUE;
+        } else if ("false".equalsIgnoreCase(value)) {
+            return Boolean.FALSE;
+        }
+        return null;
+    }
+
+    /**
+     * Cheap check that rules out strings that can not be an ISO date time, a yyyy-MM-dd date or a yyyyMMdd date, so
+     * the date formatters only have to be tried on strings that look like a date.
+     * @param value the string
+     * @return false when none of the date formats can parse the string
+     */
+    public static boolean mayBeFormattedDate(String value) {
+        int length = value.length();
+        if (length == 0) {
+            return false;
+        }
+        char first = value.charAt(0);
+        if (!isDigit(first) && first != '-' && first != '+') {
+            return false;
+        }
+        for (int i = 1; i < length; i++) {
+            char c = value.charAt(i);
+            if (!isDigit(c) && "-+:.TtZz".indexOf(c) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Remove the double quotes around a quoted column name.
+     * @param name the column name
+     * @return the name without the quotes, the name when it is not quoted or contains a line break, and null for an
+     * empty quoted name
+     */
+    public static String unquote(String name) {
+        int length = name.length();
+        if (length < 2 || name.charAt(0) != '"' || name.charAt(length - 1) != '"') {
+            return name;
+        }
+        for (int i = 1; i < length - 1; i++) {
+            if (isLineTerminator(name.charAt(i))) {
+                return name;
+            }
+        }
+        return length == 2 ? null : name.substring(1, length - 1);
+    }
+
+    private static Long parseLong(String value) {
+        int length = value.length();
+        if (length == 0) {
+            return null;
+        }
+        int i = 0;
+        boolean negative = false;
+        char first = value.charAt(0);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            if (length == 1) {
+                return null;
+            }
+            i++;
+        }
+        //accumulate negatively so that Long.MIN_VALUE does not overflow
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplyMin = limit / 10;
+        long result = 0;
+        for (; i < length; i++) {
+            int digit = Character.digit(value.charAt(i), 10);
+            if (digit < 0 || result < multiplyMin) {
+                return null;
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                return null;
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    //the grammar of Double.valueOf(String), including surrounding whitespace, NaN, Infinity, hexadecimal
+    //floating point literals and the f, F, d and D suffixes
+    private static boolean isJavaDouble(String value) {
+        int start = 0;
+        int end = value.length();
+        while (start < end && value.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && value.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start < end && (value.charAt(start) == '-' || value.charAt(start) == '+')) {
+            start++;
+        }
+        if (start == end) {
+            return false;
+        }
+        if (value.startsWith("NaN", start)) {
+            return start + "NaN".length() == end;
+        } else if (value.startsWith("Infinity", start)) {
+            return start + "Infinity".length() == end;
+        }
+        if (end - start > 1 && value.charAt(start) == '0'
+                && (value.charAt(start + 1) == 'x' || value.charAt(start + 1) == 'X')) {
+            return isHexDouble(value, start + 2, end);
+        }
+        int i = start;
+        int digits = 0;
+        while (i < end && isDigit(value.charAt(i))) {
+            i++;
+            digits++;
+        }
+        if (i < end && value.charAt(i) == '.') {
+            i++;
+            while (i < end && isDigit(value.charAt(i))) {
+                i++;
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (i < end && (value.charAt(i) == 'e' || value.charAt(i) == 'E')) {
+            i = exponentEnd(value, i + 1, end);
+            if (i < 0) {
+                return false;
+            }
+        }
+        return isEndOrSuffix(value, i, end);
+    }
+
+    private static boolean isHexDouble(String value, int start, int end) {
+        int i = start;
+        int digits = 0;
+        while (i < end && isHexDigit(value.charAt(i))) {
+            i++;
+            digits++;
+        }
+        if (i < end && value.charAt(i) == '.') {
+            i++;
+            while (i < end && isHexDigit(value.charAt(i))) {
+                i++;
+                digits++;
+            }
+        }
+        if (digits == 0 || i == end || value.charAt(i) != 'p' && value.charAt(i) != 'P') {
+            return false;
+        }
+        i = exponentEnd(value, i + 1, end);
+        return i >= 0 && isEndOrSuffix(value, i, end);
+    }
+
+    //the end of an optionally signed exponent starting at start, or -1 when there are no digits
+    private static int exponentEnd(String value, int start, int end) {
+        int i = start;
+        if (i < end && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+            i++;
+        }
+        int digitsStart = i;
+        while (i < end && isDigit(value.charAt(i))) {
+            i++;
+        }
+        return i > digitsStart ? i : -1;
+    }
+
+    private static boolean isEndOrSuffix(String value, int i, int end) {
+        return i == end || i == end - 1 && "fFdD".indexOf(value.charAt(i)) >= 0;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isHexDigit(char c) {
+        return isDigit(c) || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F';
+    }
+
+    //the characters that . does not match in a java regular expression
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
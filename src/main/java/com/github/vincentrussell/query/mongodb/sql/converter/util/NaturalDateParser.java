@@ -0,0 +1,118 @@
+package com.github.vincentrussell.query.mongodb.sql.converter.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.joestelmach.natty.DateGroup;
+import com.joestelmach.natty.Parser;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Parses natural language dates such as <code>today</code>, <code>3 days ago</code> or <code>last monday</code>.
+ * The common expressions, <code>now</code>, <code>today</code>, <code>yesterday</code>, <code>tomorrow</code>,
+ * <code>N units ago</code>, <code>in N units</code> and <code>N units from now</code>, are computed directly with
+ * the same result as natty.  Everything else is parsed by natty, and text that natty can not parse is remembered so
+ * that it is not parsed again.
+ */
+public final class NaturalDateParser {
+
+    private static final int MAXIMUM_CACHED_FAILURES = 1000;
+
+    private static final Map<String, Integer> UNITS = ImmutableMap.<String, Integer>builder()
+            .put("second", Calendar.SECOND).put("seconds", Calendar.SECOND)
+            .put("sec", Calendar.SECOND).put("secs", Calendar.SECOND)
+            .put("minute", Calendar.MINUTE).put("minutes", Calendar.MINUTE)
+            .put("min", Calendar.MINUTE).put("mins", Calendar.MINUTE)
+            .put("hour", Calendar.HOUR_OF_DAY).put("hours", Calendar.HOUR_OF_DAY)
+            .put("hr", Calendar.HOUR_OF_DAY).put("hrs", Calendar.HOUR_OF_DAY)
+            .put("day", Calendar.DAY_OF_MONTH).put("days", Calendar.DAY_OF_MONTH)
+            .put("week", Calendar.WEEK_OF_YEAR).put("weeks", Calendar.WEEK_OF_YEAR)
+            .put("wk", Calendar.WEEK_OF_YEAR).put("wks", Calendar.WEEK_OF_YEAR)
+            .put("month", Calendar.MONTH).put("months", Calendar.MONTH)
+            .put("year", Calendar.YEAR).put("years", Calendar.YEAR)
+            .put("yr", Calendar.YEAR).put("yrs", Calendar.YEAR)
+            .build();
+
+    private static final Cache<String, Boolean> UNPARSEABLE = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_CACHED_FAILURES).build();
+
+    private NaturalDateParser() {
+    }
+
+    /**
+     * Parse a natural language date relative to the current time.
+     * @param text the natural language date
+     * @return the date
+     * @throws IllegalArgumentException when the text is not a date
+     */
+    public static Date parse(String text) {
+        Date date = parseCommonExpression(text);
+        if (date != null) {
+            return date;
+        }
+        if (UNPARSEABLE.getIfPresent(text) == null) {
+            List<DateGroup> groups = new Parser().parse(text);
+            for (DateGroup group : groups) {
+                List<Date> dates = group.getDates();
+                if (dates.size() > 0) {
+                    return dates.get(0);
+                }
+            }
+            UNPARSEABLE.put(text, Boolean.TRUE);
+        }
+        throw new IllegalArgumentException("could not natural language date: " + text);
+    }
+
+    private static Date parseCommonExpression(String text) {
+        String[] words = StringUtils.split(text.toLowerCase(Locale.ENGLISH));
+        if (words.length == 1) {
+            if ("now".equals(words[0]) || "today".equals(words[0])) {
+                return new Date();
+            } else if ("yesterday".equals(words[0])) {
+                return add(Calendar.DAY_OF_MONTH, -1);
+            } else if ("tomorrow".equals(words[0])) {
+                return add(Calendar.DAY_OF_MONTH, 1);
+            }
+        } else if (words.length == 3 && "ago".equals(words[2])) {
+            return add(words[0], words[1], -1);
+        } else if (words.length == 3 && "in".equals(words[0])) {
+            return add(words[1], words[2], 1);
+        } else if (words.length == 4 && "from".equals(words[2]) && "now".equals(words[3])) {
+            return add(words[0], words[1], 1);
+        }
+        return null;
+    }
+
+    private static Date add(String amount, String unit, int sign) {
+        Integer field = UNITS.get(unit);
+        //natty does not read numbers with more than four digits
+        if (field == null || amount.length() > 4) {
+            return null;
+        }
+        int value = 0;
+        for (int i = 0; i < amount.length(); i++) {
+            char c = amount.charAt(i);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+            value = value * 10 + c - '0';
+        }
+        //natty reads 0 units ago as the start of the previous day
+        if (value < 1) {
+            return null;
+        }
+        return add(field, sign * value);
+    }
+
+    private static Date add(int field, int amount) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(field, amount);
+        return calendar.getTime();
+    }
+}
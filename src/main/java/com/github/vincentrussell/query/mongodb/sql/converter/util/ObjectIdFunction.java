@@ -1,8 +1,6 @@
 package com.github.vincentrussell.query.mongodb.sql.converter.util;
 
 import com.github.vincentrussell.query.mongodb.sql.converter.ParseException;
-import com.google.common.base.Function;
-import com.google.common.collect.Lists;
 import net.sf.jsqlparser.expression.Expression;
 import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
 import net.sf.jsqlparser.expression.operators.relational.InExpression;
@@ -10,6 +8,7 @@ import net.sf.jsqlparser.expression.operators.relational.NotEqualsTo;
 import org.bson.Document;
 import org.bson.types.ObjectId;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class ObjectIdFunction {
@@ -36,11 +35,11 @@ public class ObjectIdFunction {
         } else if (InExpression.class.isInstance(comparisonExpression)) {
             InExpression inExpression = (InExpression) comparisonExpression;
             List<String> stringList = (List<String>) value;
-            return new Document(inExpression.isNot() ? "$nin" : "$in", Lists.transform(stringList, new Function<String, ObjectId>() {
-                @Override public ObjectId apply(String s) {
-                    return new ObjectId(s);
-                }
-            }));
+            List<ObjectId> objectIds = new ArrayList<>(stringList.size());
+            for (String s : stringList) {
+                objectIds.add(new ObjectId(s));
+            }
+            return new Document(inExpression.isNot() ? "$nin" : "$in", SqlUtils.distinctInValues(objectIds));
         }
         throw new ParseException("Count not convert ObjectId function into document");
     }
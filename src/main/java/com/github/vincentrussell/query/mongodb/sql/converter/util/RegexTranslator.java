@@ -0,0 +1,160 @@
+package com.github.vincentrussell.query.mongodb.sql.converter.util;
+
+import com.github.vincentrussell.query.mongodb.sql.converter.ParseException;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Translates <code>LIKE</code> patterns to mongo regular expressions and validates the regular expressions of
+ * <code>regexMatch</code>.  Both are remembered in a bounded cache shared by all threads, so a pattern that is used by
+ * many queries is only translated, or compiled to validate it, once.  Invalid regular expressions are remembered too.
+ */
+public final class RegexTranslator {
+
+    private static final int MAXIMUM_CACHED_PATTERNS = 10000;
+    private static final String REGEX_CHARACTERS = "\\^$.|?*+()[]{}_%";
+
+    private static final Cache<Key, Translation> TRANSLATIONS = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_CACHED_PATTERNS).recordStats().build();
+
+    private RegexTranslator() {
+    }
+
+    /**
+     * @param likePattern the pattern of a <code>LIKE</code> expression
+     * @return the anchored regular expression that matches the same strings
+     */
+    public static String likeToRegex(String likePattern) {
+        Key key = new Key(true, likePattern);
+        Translation translation = TRANSLATIONS.getIfPresent(key);
+        if (translation == null) {
+            translation = new Translation("^" + SqlUtils.replaceRegexCharacters(likePattern) + "$", null);
+            TRANSLATIONS.put(key, translation);
+        }
+        return translation.regex;
+    }
+
+    /**
+     * The prefix of a <code>LIKE</code> pattern that only matches strings starting with a literal prefix, like
+     * <code>abc%</code>.  Patterns with other wildcards, ranges or characters that have a meaning in the translated
+     * regular expression have no such prefix.
+     * @param likePattern the pattern of a <code>LIKE</code> expression
+     * @return the prefix, or null when the pattern is not a literal prefix followed by <code>%</code>
+     */
+    public static String getLikePrefix(String likePattern) {
+        int end = likePattern.length();
+        while (end > 0 && likePattern.charAt(end - 1) == '%') {
+            end--;
+        }
+        if (end == 0 || end == likePattern.length()) {
+            return null;
+        }
+        for (int i = 0; i < end; i++) {
+            if (REGEX_CHARACTERS.indexOf(likePattern.charAt(i)) >= 0) {
+                return null;
+            }
+        }
+        return likePattern.substring(0, end);
+    }
+
+    /**
+     * The smallest string that is greater than every string starting with the prefix, in the order of the code points
+     * that mongo uses to compare strings.
+     * @param prefix the prefix
+     * @return the upper bound, or null when the last character of the prefix can not be incremented
+     */
+    public static String getPrefixUpperBound(String prefix) {
+        char last = prefix.charAt(prefix.length() - 1);
+        if (Character.isSurrogate(last) || last == Character.MAX_VALUE) {
+            return null;
+        }
+        //there are no code points in the surrogate range
+        char next = last + 1 == Character.MIN_SURROGATE ? (char) (Character.MAX_SURROGATE + 1) : (char) (last + 1);
+        return prefix.substring(0, prefix.length() - 1) + next;
+    }
+
+    /**
+     * @param regex the regular expression of a <code>regexMatch</code> function
+     * @return the regular expression
+     * @throws ParseException when it is not a valid regular expression
+     */
+    public static String validateRegex(String regex) throws ParseException {
+        Key key = new Key(false, regex);
+        Translation translation = TRANSLATIONS.getIfPresent(key);
+        if (translation == null) {
+            try {
+                Pattern.compile(regex);
+                translation = new Translation(regex, null);
+            } catch (PatternSyntaxException e) {
+                translation = new Translation(null, e.getMessage());
+            }
+            TRANSLATIONS.put(key, translation);
+        }
+        if (translation.error != null) {
+            throw new ParseException(translation.error);
+        }
+        return translation.regex;
+    }
+
+    /**
+     * @return the hits, misses and evictions of the cache of translated patterns
+     */
+    public static CacheStats getStats() {
+        return TRANSLATIONS.stats();
+    }
+
+    /**
+     * @return the number of translated patterns in the cache
+     */
+    public static long size() {
+        return TRANSLATIONS.size();
+    }
+
+    /**
+     * Remove all of the translated patterns from the cache
+     */
+    public static void invalidateAll() {
+        TRANSLATIONS.invalidateAll();
+    }
+
+    private static final class Key {
+        private final boolean like;
+        private final String pattern;
+
+        private Key(boolean like, String pattern) {
+            this.like = like;
+            this.pattern = pattern;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return like == key.like && pattern.equals(key.pattern);
+        }
+
+        @Override
+        public int hashCode() {
+            return like ? ~pattern.hashCode() : pattern.hashCode();
+        }
+    }
+
+    private static final class Translation {
+        private final String regex;
+        private final String error;
+
+        private Translation(String regex, String error) {
+            this.regex = regex;
+            this.error = error;
+        }
+    }
+}
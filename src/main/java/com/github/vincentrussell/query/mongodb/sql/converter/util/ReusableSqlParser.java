@@ -0,0 +1,65 @@
+package com.github.vincentrussell.query.mongodb.sql.converter.util;
+
+import net.sf.jsqlparser.parser.CCJSqlParser;
+import net.sf.jsqlparser.parser.Provider;
+
+import java.lang.reflect.Field;
+
+/**
+ * Keeps one {@link CCJSqlParser} per thread and re-initialises it with the next sql statement, so that the token
+ * manager, the character buffer and the lookahead tables of the generated parser are only allocated once per thread
+ * instead of once per statement.  Set the system property {@value #D_REUSE_SQL_PARSER} to <code>false</code> to
+ * create a new parser for every statement.
+ */
+public final class ReusableSqlParser {
+
+    public static final String D_REUSE_SQL_PARSER = "reuseSqlParser";
+
+    private static final ThreadLocal<CCJSqlParser> PARSERS = new ThreadLocal<>();
+
+    //ReInit does not reset the numbering of ? parameters, without access to the counter parsers can not be reused
+    private static final Field JDBC_PARAMETER_INDEX = getJdbcParameterIndexField();
+
+    private ReusableSqlParser() {
+    }
+
+    /**
+     * Get a parser for the sql statement in the provider.  The parser belongs to the calling thread and is handed out
+     * again by the next call on the same thread, so it must not be used after the next call.
+     * @param provider the sql input
+     * @return the parser, positioned at the start of the input
+     */
+    public static CCJSqlParser forInput(Provider provider) {
+        if (!isEnabled()) {
+            return new CCJSqlParser(provider);
+        }
+        CCJSqlParser parser = PARSERS.get();
+        if (parser == null) {
+            parser = new CCJSqlParser(provider);
+            PARSERS.set(parser);
+        } else {
+            parser.ReInit(provider);
+            try {
+                JDBC_PARAMETER_INDEX.setInt(parser, 0);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return parser;
+    }
+
+    private static boolean isEnabled() {
+        return JDBC_PARAMETER_INDEX != null
+                && Boolean.parseBoolean(System.getProperty(D_REUSE_SQL_PARSER, "true"));
+    }
+
+    private static Field getJdbcParameterIndexField() {
+        try {
+            Field field = CCJSqlParser.class.getDeclaredField("jdbcParameterIndex");
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -1,12 +1,12 @@
 package com.github.vincentrussell.query.mongodb.sql.converter.util;
 
 import com.github.vincentrussell.query.mongodb.sql.converter.FieldType;
+import com.github.vincentrussell.query.mongodb.sql.converter.FieldTypeResolver;
 import com.github.vincentrussell.query.mongodb.sql.converter.ParseException;
+import com.github.vincentrussell.query.mongodb.sql.converter.QueryConverter;
 import com.github.vincentrussell.query.mongodb.sql.converter.Token;
 import com.github.vincentrussell.query.mongodb.sql.converter.WhereCauseProcessor;
 import com.google.common.collect.Lists;
-import com.joestelmach.natty.DateGroup;
-import com.joestelmach.natty.Parser;
 import net.sf.jsqlparser.expression.Expression;
 import net.sf.jsqlparser.expression.Function;
 import net.sf.jsqlparser.expression.LongValue;
@@ -16,52 +16,40 @@ import net.sf.jsqlparser.expression.CaseExpression;
 import net.sf.jsqlparser.expression.WhenClause;
 import net.sf.jsqlparser.expression.DoubleValue;
 import net.sf.jsqlparser.expression.Alias;
+import net.sf.jsqlparser.expression.JdbcNamedParameter;
+import net.sf.jsqlparser.expression.JdbcParameter;
 import net.sf.jsqlparser.expression.operators.arithmetic.Subtraction;
 import net.sf.jsqlparser.expression.operators.relational.*;
 import net.sf.jsqlparser.schema.Column;
 import net.sf.jsqlparser.statement.select.*;
+import org.apache.commons.lang.StringUtils;
 import org.bson.Document;
-import org.joda.time.DateTime;
-import org.joda.time.format.DateTimeFormat;
-import org.joda.time.format.DateTimeFormatter;
-import org.joda.time.format.ISODateTimeFormat;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
 
+import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
 
 import static com.google.common.base.MoreObjects.firstNonNull;
 
 public class SqlUtils {
-    private static Pattern SURROUNDED_IN_QUOTES = Pattern.compile("^\"(.+)*\"$");
-    private static Pattern LIKE_RANGE_REGEX = Pattern.compile("(\\[.+?\\])");
+    private static final Pattern LIKE_RANGE_REGEX = Pattern.compile("(\\[.+?\\])");
+    private static final Pattern QUOTED_OR_BOOLEAN_COLUMN = Pattern.compile("^(\".*\"|true|false)$");
     private static final String REGEXMATCH_FUNCTION = "regexMatch";
     private static final String OBJECTID_FUNCTION = "objectId";
     private static final List<String> SPECIALTY_FUNCTIONS = Arrays.asList(REGEXMATCH_FUNCTION, OBJECTID_FUNCTION);
     private static final String LINE_SEPARATOR = System.getProperty("line.separator");
 
-    private static final DateTimeFormatter YY_MM_DDFORMATTER = DateTimeFormat.forPattern("yyyy-MM-dd");
-    private static final DateTimeFormatter YYMMDDFORMATTER = DateTimeFormat.forPattern("yyyyMMdd");
-
-    private static final Collection<DateTimeFormatter> FORMATTERS = Collections.unmodifiableList(Arrays.asList(
-            ISODateTimeFormat.dateTime(),
-            YY_MM_DDFORMATTER,
-            YYMMDDFORMATTER));
-
     private SqlUtils() {}
 
     public static String getStringValue(Expression expression) {
         if (StringValue.class.isInstance(expression)) {
             return ((StringValue)expression).getValue();
         } else if (Column.class.isInstance(expression)) {
-            String columnName = expression.toString();
-            Matcher matcher = SURROUNDED_IN_QUOTES.matcher(columnName);
-            if (matcher.matches()) {
-                return matcher.group(1);
-            }
-            return columnName;
+            return LiteralClassifier.unquote(expression.toString());
         }
         return expression.toString();
     }
@@ -69,7 +57,14 @@ public class SqlUtils {
     public static Object getValue(Expression incomingExpression, Expression otherSide,
                                   FieldType defaultFieldType,
                                   Map<String, FieldType> fieldNameToFieldTypeMapping) throws ParseException {
-        FieldType fieldType = otherSide !=null ? firstNonNull(fieldNameToFieldTypeMapping.get(getStringValue(otherSide)),
+        return getValue(incomingExpression, otherSide, defaultFieldType,
+                FieldTypeResolver.of(fieldNameToFieldTypeMapping));
+    }
+
+    public static Object getValue(Expression incomingExpression, Expression otherSide,
+                                  FieldType defaultFieldType,
+                                  FieldTypeResolver fieldTypeResolver) throws ParseException {
+        FieldType fieldType = otherSide !=null ? firstNonNull(fieldTypeResolver.resolve(getStringValue(otherSide)),
                 defaultFieldType) : FieldType.UNKNOWN;
         if (LongValue.class.isInstance(incomingExpression)) {
             return normalizeValue((((LongValue)incomingExpression).getValue()),fieldType);
@@ -79,6 +74,8 @@ public class SqlUtils {
             return normalizeValue((((StringValue)incomingExpression).getValue()),fieldType);
         } else if (Column.class.isInstance(incomingExpression)) {
             return normalizeValue(getStringValue(incomingExpression),fieldType);
+        } else if (isBindParameter(incomingExpression)) {
+            return getBindParameter(incomingExpression, fieldType);
         } else {
             throw new ParseException("can not parseNaturalLanguageDate: " + incomingExpression.toString());
         }
@@ -146,6 +143,24 @@ public class SqlUtils {
             if (FieldType.BOOLEAN.equals(fieldType)) {
                 return Boolean.valueOf(value.toString());
             }
+            if (FieldType.INT32.equals(fieldType)) {
+                return forceInt32(value);
+            }
+            if (FieldType.INT64.equals(fieldType)) {
+                return forceInt64(value);
+            }
+            if (FieldType.DOUBLE.equals(fieldType)) {
+                return forceDouble(value);
+            }
+            if (FieldType.DECIMAL128.equals(fieldType)) {
+                return forceDecimal128(value);
+            }
+            if (FieldType.OBJECTID.equals(fieldType)) {
+                return forceObjectId(value);
+            }
+            if (FieldType.UUID.equals(fieldType)) {
+                return forceUUID(value);
+            }
         }
         throw new ParseException("could not normalize value:" + value);
     }
@@ -157,21 +172,46 @@ public class SqlUtils {
     }
 
     public static long getLimit(Limit limit) throws ParseException {
-        if (limit!=null) {
+        if (limit!=null && !isBindParameter(limit.getRowCount())) {
         	return getLongFromStringIfInteger(SqlUtils.getStringValue(limit.getRowCount()));
         }
         return -1;
     }
     
     public static long getOffset(Offset offset) {
-        if (offset!=null) {
+        if (offset!=null && offset.getOffsetJdbcParameter() == null) {
             return offset.getOffset();
         }
         return -1;
     }
 
+    public static BindParameter getLimitParameter(Limit limit) {
+        if (limit!=null && isBindParameter(limit.getRowCount())) {
+            return getBindParameter(limit.getRowCount(), FieldType.NUMBER);
+        }
+        return null;
+    }
+
+    public static BindParameter getOffsetParameter(Offset offset) {
+        if (offset!=null && offset.getOffsetJdbcParameter() != null) {
+            return getBindParameter(offset.getOffsetJdbcParameter(), FieldType.NUMBER);
+        }
+        return null;
+    }
+
+    public static boolean isBindParameter(Expression expression) {
+        return JdbcParameter.class.isInstance(expression) || JdbcNamedParameter.class.isInstance(expression);
+    }
+
+    public static BindParameter getBindParameter(Expression expression, FieldType fieldType) {
+        if (JdbcNamedParameter.class.isInstance(expression)) {
+            return new BindParameter(null, ((JdbcNamedParameter)expression).getName(), fieldType);
+        }
+        return new BindParameter(((JdbcParameter)expression).getIndex(), null, fieldType);
+    }
+
     public static String fixDoubleSingleQuotes(final String regex) {
-        return regex.replaceAll("''", "'");
+        return regex.indexOf("''") < 0 ? regex : StringUtils.replace(regex, "''", "'");
     }
 
     public static boolean isSelectAll(List<SelectItem> selectItems) {
@@ -190,7 +230,7 @@ public class SqlUtils {
                     && Function.class.isInstance(((SelectExpressionItem)firstItem).getExpression())) {
                 Function function = (Function) ((SelectExpressionItem) firstItem).getExpression();
 
-                if ("count(*)".equals(function.toString())) {
+                if (function.isAllColumns() && "count".equalsIgnoreCase(function.getName())) {
                     return true;
                 }
 
@@ -200,21 +240,20 @@ public class SqlUtils {
     }
 
     public static Object forceBool(Object value) {
-        if (value.toString().equalsIgnoreCase("true") || value.toString().equalsIgnoreCase("false")) {
-            return Boolean.valueOf(value.toString());
+        if (value instanceof Number) {
+            return null;
         }
-        return null;
+        return LiteralClassifier.parseBoolean(value.toString());
     }
 
     public static Object forceDate(Object value) throws ParseException {
+        if (Date.class.isInstance(value)) {
+            return value;
+        }
         if (String.class.isInstance(value)){
-            for (DateTimeFormatter formatter : FORMATTERS) {
-                try {
-                    DateTime dt = formatter.parseDateTime((String) value);
-                    return dt.toDate();
-                } catch (Exception e) {
-                    //noop
-                }
+            Date date = DateLiteralParser.parseFormattedDate((String) value);
+            if (date != null) {
+                return date;
             }
             try {
                 return parseNaturalLanguageDate((String) value);
@@ -227,37 +266,113 @@ public class SqlUtils {
     }
 
     public static Date parseNaturalLanguageDate(String text) {
-        Parser parser = new Parser();
-        List<DateGroup> groups = parser.parse(text);
-        for (DateGroup group : groups) {
-            List<Date> dates = group.getDates();
-            if (dates.size() > 0) {
-                return dates.get(0);
-            }
-        }
-        throw new IllegalArgumentException("could not natural language date: "+ text);
+        return NaturalDateParser.parse(text);
     }
 
     public static Object forceNumber(Object value) throws ParseException {
         if (String.class.isInstance(value)){
-            try {
-                return Long.parseLong((String) value);
-            } catch (NumberFormatException e1) {
-                try {
-                    return Double.parseDouble((String) value);
-                } catch (NumberFormatException e2) {
-                    try {
-                        return Float.parseFloat((String) value);
-                    } catch (NumberFormatException e3) {
-                        throw new ParseException("could not convert " + value + " to number");
-                    }
-                }
+            Number number = LiteralClassifier.parseNumber((String) value);
+            if (number == null) {
+                throw new ParseException("could not convert " + value + " to number");
             }
+            return number;
         } else {
             return value;
         }
     }
 
+    public static Integer forceInt32(Object value) throws ParseException {
+        long longValue = forceInt64(value);
+        isFalse(longValue < Integer.MIN_VALUE || longValue > Integer.MAX_VALUE, value + ": value is too large for int32");
+        return (int) longValue;
+    }
+
+    public static Long forceInt64(Object value) throws ParseException {
+        Object number = forceNumber(value);
+        if (number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte) {
+            return ((Number) number).longValue();
+        }
+        try {
+            return new BigDecimal(number.toString()).longValueExact();
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw new ParseException("could not convert " + value + " to an integer");
+        }
+    }
+
+    public static Double forceDouble(Object value) throws ParseException {
+        Object number = forceNumber(value);
+        isTrue(number instanceof Number, "could not convert " + value + " to a double");
+        return ((Number) number).doubleValue();
+    }
+
+    public static Decimal128 forceDecimal128(Object value) throws ParseException {
+        if (value instanceof Decimal128) {
+            return (Decimal128) value;
+        }
+        try {
+            //parse the literal itself, so that 0.1 is not rounded to the closest double first
+            return new Decimal128(value instanceof BigDecimal ? (BigDecimal) value : new BigDecimal(value.toString()));
+        } catch (NumberFormatException e) {
+            throw new ParseException("could not convert " + value + " to decimal128");
+        }
+    }
+
+    public static ObjectId forceObjectId(Object value) throws ParseException {
+        if (value instanceof ObjectId) {
+            return (ObjectId) value;
+        }
+        String string = value.toString();
+        isTrue(ObjectId.isValid(string), "could not convert " + value + " to an ObjectId");
+        return new ObjectId(string);
+    }
+
+    public static UUID forceUUID(Object value) throws ParseException {
+        if (value instanceof UUID) {
+            return (UUID) value;
+        }
+        try {
+            return UUID.fromString(value.toString());
+        } catch (IllegalArgumentException e) {
+            throw new ParseException("could not convert " + value + " to a UUID");
+        }
+    }
+
+    /**
+     * The values of an IN list without duplicates, in the order they were first seen.  When the
+     * {@link QueryConverter#D_SORT_IN_LISTS} system property is true and all values are of the same comparable type
+     * they are sorted, so that equal lists are encoded the same way and the chunks of a split list cover separate
+     * ranges of an index.
+     * @param values the converted values
+     * @return a new list
+     */
+    public static List<Object> distinctInValues(List<?> values) {
+        List<Object> distinctValues = new ArrayList<Object>(new LinkedHashSet<>(values));
+        if (Boolean.parseBoolean(System.getProperty(QueryConverter.D_SORT_IN_LISTS, "false"))
+                && isSortable(distinctValues)) {
+            Collections.sort(distinctValues, new Comparator<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public int compare(Object o1, Object o2) {
+                    return ((Comparable<Object>) o1).compareTo(o2);
+                }
+            });
+        }
+        return distinctValues;
+    }
+
+    private static boolean isSortable(List<Object> values) {
+        Class<?> valueClass = values.isEmpty() || values.get(0) == null ? null : values.get(0).getClass();
+        if (valueClass == null || !Comparable.class.isAssignableFrom(valueClass)) {
+            return false;
+        }
+        for (Object value : values) {
+            if (value == null || value.getClass() != valueClass) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public static String forceString(Object value) {
         if (String.class.isInstance(value)){
             return (String) value;
@@ -347,18 +462,12 @@ public class SqlUtils {
                     && (function.getParameters().getExpressions().size()==1)
                     && StringValue.class.isInstance(function.getParameters().getExpressions().get(0))) {
                     String column = getStringValue(function.getParameters().getExpressions().get(0));
-                    List<Object> rightExpression = Lists.transform(((ExpressionList)
-                            inExpression.getRightItemsList()).getExpressions(),
-                        new com.google.common.base.Function<Expression, Object>() {
-                            @Override
-                            public Object apply(Expression expression) {
-                                try {
-                                    return whereCauseProcessor.parseExpression(new Document(),expression, leftExpression);
-                                } catch (ParseException e) {
-                                    throw new RuntimeException(e);
-                                }
-                            }
-                        });
+                    //converted once, a lazy view would convert the list again every time it is iterated
+                    List<Expression> expressions = ((ExpressionList) inExpression.getRightItemsList()).getExpressions();
+                    List<Object> rightExpression = new ArrayList<>(expressions.size());
+                    for (Expression expression : expressions) {
+                        rightExpression.add(whereCauseProcessor.parseExpression(new Document(), expression, leftExpression));
+                    }
                     return new ObjectIdFunction(column, rightExpression, inExpression);
                 }
             }
@@ -469,12 +578,7 @@ public class SqlUtils {
         final String column = getStringValue(function.getParameters().getExpressions().get(0));
         final String regex = fixDoubleSingleQuotes(
             ((StringValue) (function.getParameters().getExpressions().get(1))).getValue());
-        try {
-            Pattern.compile(regex);
-        } catch (PatternSyntaxException e) {
-            throw new ParseException(e.getMessage());
-        }
-        RegexFunction regexFunction = new RegexFunction(column, regex);
+        RegexFunction regexFunction = new RegexFunction(column, RegexTranslator.validateRegex(regex));
 
         if (function.getParameters().getExpressions().size() == 3 && StringValue.class
             .isInstance(function.getParameters().getExpressions().get(2))) {
@@ -497,13 +601,12 @@ public class SqlUtils {
     }
     
     public static boolean isColumn(Expression e) {
-    	return (e instanceof Column && !((Column) e).getName(false).matches("^(\".*\"|true|false)$"));
+    	return (e instanceof Column && !QUOTED_OR_BOOLEAN_COLUMN.matcher(((Column) e).getName(false)).matches());
     }
     
+    //Returns a new column without table, the parsed column is left untouched
     public static Column removeAliasFromColumn(Column c, String aliasBase){
-    	c.setColumnName(c.getName(false).startsWith(aliasBase + ".") ? c.getName(false).substring(aliasBase.length()+1) : c.getName(false));
-    	c.setTable(null);
-    	return c;
+    	return new Column(getColumnNameFromColumn(c, aliasBase));
     }
     
     //For nested fields we need it
@@ -533,8 +636,17 @@ public class SqlUtils {
 		return columnName.startsWith(tableAlias); 
     }
 
+	//A plain "join" is an inner join, checked without changing the parsed join
+	public static boolean isInnerJoin(Join j) {
+		return j.isInner() || j.toString().toLowerCase().startsWith("join ");
+	}
+
+	/**
+	 * @deprecated changes the parsed join, which can be shared between conversions, use {@link #isInnerJoin(Join)}
+	 */
+	@Deprecated
 	public static void updateJoinType(Join j) {
-		if(j.toString().toLowerCase().startsWith("join ")) {
+		if (isInnerJoin(j)) {
 			j.setInner(true);
 		}
 	}
@@ -0,0 +1,305 @@
+package com.github.vincentrussell.query.mongodb.sql.converter.visitor;
+
+import com.github.vincentrussell.query.mongodb.sql.converter.ParseException;
+import com.github.vincentrussell.query.mongodb.sql.converter.util.ReusableSqlParser;
+import com.github.vincentrussell.query.mongodb.sql.converter.util.SqlUtils;
+
+import net.sf.jsqlparser.expression.BinaryExpression;
+import net.sf.jsqlparser.expression.CaseExpression;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.ExpressionVisitorAdapter;
+import net.sf.jsqlparser.expression.Function;
+import net.sf.jsqlparser.expression.NotExpression;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.SignedExpression;
+import net.sf.jsqlparser.expression.WhenClause;
+import net.sf.jsqlparser.expression.operators.arithmetic.Addition;
+import net.sf.jsqlparser.expression.operators.arithmetic.Concat;
+import net.sf.jsqlparser.expression.operators.arithmetic.Division;
+import net.sf.jsqlparser.expression.operators.arithmetic.Modulo;
+import net.sf.jsqlparser.expression.operators.arithmetic.Multiplication;
+import net.sf.jsqlparser.expression.operators.arithmetic.Subtraction;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
+import net.sf.jsqlparser.expression.operators.relational.Between;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThan;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.InExpression;
+import net.sf.jsqlparser.expression.operators.relational.IsNullExpression;
+import net.sf.jsqlparser.expression.operators.relational.LikeExpression;
+import net.sf.jsqlparser.expression.operators.relational.MinorThan;
+import net.sf.jsqlparser.expression.operators.relational.MinorThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.NotEqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.OldOracleJoinBinaryExpression;
+import net.sf.jsqlparser.parser.StringProvider;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.statement.select.OrderByElement;
+import net.sf.jsqlparser.statement.select.SelectExpressionItem;
+import net.sf.jsqlparser.statement.select.SelectItem;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rewrites the columns of an expression without touching the parsed statement.  Every node on the way to a column is
+ * copied and the copy gets the column returned by {@link #transformColumn(Column)}; nodes without columns are shared
+ * with the original tree.  Because the parsed statement is never modified, the same statement can be converted any
+ * number of times, from any number of threads.
+ */
+public abstract class CopyOnWriteColumnTransformer {
+
+    /**
+     * Replace a column of the expression being transformed
+     * @param column the original column, which must not be modified
+     * @return the column to use in the copy, which may be the original column when nothing changes
+     */
+    protected abstract Column transformColumn(Column column);
+
+    /**
+     * Copy an expression, replacing each of its columns with the result of {@link #transformColumn(Column)}
+     * @param expression the expression to copy
+     * @return the copy
+     * @throws ParseException when the expression can not be copied
+     */
+    public Expression transform(Expression expression) throws ParseException {
+        if (expression == null) {
+            return null;
+        } else if (expression instanceof Column) {
+            return transformColumn((Column) expression);
+        } else if (expression instanceof AndExpression || expression instanceof OrExpression) {
+            return transformAndOr((BinaryExpression) expression);
+        } else if (expression instanceof BinaryExpression) {
+            BinaryExpression copy = newBinaryExpression((BinaryExpression) expression);
+            if (copy != null) {
+                return copy;
+            }
+        } else if (expression instanceof Parenthesis) {
+            Parenthesis parenthesis = (Parenthesis) expression;
+            Parenthesis copy = new Parenthesis(transform(parenthesis.getExpression()));
+            if (parenthesis.isNot()) {
+                copy.setNot();
+            }
+            return copy;
+        } else if (expression instanceof NotExpression) {
+            return new NotExpression(transform(((NotExpression) expression).getExpression()));
+        } else if (expression instanceof SignedExpression) {
+            SignedExpression signedExpression = (SignedExpression) expression;
+            return new SignedExpression(signedExpression.getSign(), transform(signedExpression.getExpression()));
+        } else if (expression instanceof IsNullExpression) {
+            IsNullExpression isNullExpression = (IsNullExpression) expression;
+            IsNullExpression copy = new IsNullExpression();
+            copy.setLeftExpression(transform(isNullExpression.getLeftExpression()));
+            copy.setNot(isNullExpression.isNot());
+            copy.setUseIsNull(isNullExpression.isUseIsNull());
+            return copy;
+        } else if (expression instanceof Between) {
+            Between between = (Between) expression;
+            Between copy = new Between();
+            copy.setLeftExpression(transform(between.getLeftExpression()));
+            copy.setBetweenExpressionStart(transform(between.getBetweenExpressionStart()));
+            copy.setBetweenExpressionEnd(transform(between.getBetweenExpressionEnd()));
+            copy.setNot(between.isNot());
+            return copy;
+        } else if (expression instanceof InExpression) {
+            InExpression inExpression = (InExpression) expression;
+            if (inExpression.getLeftItemsList() == null
+                    && (inExpression.getRightItemsList() == null
+                    || inExpression.getRightItemsList() instanceof ExpressionList)) {
+                InExpression copy = new InExpression(transform(inExpression.getLeftExpression()),
+                        inExpression.getRightItemsList() != null
+                                ? transform((ExpressionList) inExpression.getRightItemsList()) : null);
+                copy.setNot(inExpression.isNot());
+                copy.setOldOracleJoinSyntax(inExpression.getOldOracleJoinSyntax());
+                copy.setOraclePriorPosition(inExpression.getOraclePriorPosition());
+                return copy;
+            }
+        } else if (expression instanceof Function) {
+            Function function = (Function) expression;
+            if (function.getNamedParameters() == null && function.getKeep() == null
+                    && function.getAttribute() == null) {
+                Function copy = new Function();
+                copy.setName(function.getName());
+                copy.setParameters(transform(function.getParameters()));
+                copy.setAllColumns(function.isAllColumns());
+                copy.setDistinct(function.isDistinct());
+                copy.setEscaped(function.isEscaped());
+                return copy;
+            }
+        } else if (expression instanceof CaseExpression) {
+            CaseExpression caseExpression = (CaseExpression) expression;
+            CaseExpression copy = new CaseExpression();
+            copy.setSwitchExpression(transform(caseExpression.getSwitchExpression()));
+            if (caseExpression.getWhenClauses() != null) {
+                List<WhenClause> whenClauses = new ArrayList<>(caseExpression.getWhenClauses().size());
+                for (WhenClause whenClause : caseExpression.getWhenClauses()) {
+                    whenClauses.add((WhenClause) transform(whenClause));
+                }
+                copy.setWhenClauses(whenClauses);
+            }
+            copy.setElseExpression(transform(caseExpression.getElseExpression()));
+            return copy;
+        } else if (expression instanceof WhenClause) {
+            WhenClause whenClause = (WhenClause) expression;
+            WhenClause copy = new WhenClause();
+            copy.setWhenExpression(transform(whenClause.getWhenExpression()));
+            copy.setThenExpression(transform(whenClause.getThenExpression()));
+            return copy;
+        }
+        if (!containsColumn(expression)) {
+            return expression;
+        }
+        return transformReparsedCopy(expression);
+    }
+
+    /**
+     * Copy an expression list, replacing each of its columns with the result of {@link #transformColumn(Column)}
+     * @param expressionList the expression list to copy
+     * @return the copy
+     * @throws ParseException when one of the expressions can not be copied
+     */
+    public ExpressionList transform(ExpressionList expressionList) throws ParseException {
+        if (expressionList == null || expressionList.getExpressions() == null) {
+            return expressionList;
+        }
+        List<Expression> expressions = new ArrayList<>(expressionList.getExpressions().size());
+        for (Expression expression : expressionList.getExpressions()) {
+            expressions.add(transform(expression));
+        }
+        return new ExpressionList(expressions);
+    }
+
+    /**
+     * Copy a select item, replacing each of its columns with the result of {@link #transformColumn(Column)}
+     * @param selectItem the select item to copy
+     * @return the copy, or the original select item when it is not an expression
+     * @throws ParseException when the expression can not be copied
+     */
+    public SelectItem transform(SelectItem selectItem) throws ParseException {
+        if (!(selectItem instanceof SelectExpressionItem)) {
+            return selectItem;
+        }
+        SelectExpressionItem selectExpressionItem = (SelectExpressionItem) selectItem;
+        SelectExpressionItem copy = new SelectExpressionItem(transform(selectExpressionItem.getExpression()));
+        copy.setAlias(selectExpressionItem.getAlias());
+        return copy;
+    }
+
+    /**
+     * Copy an order by element, replacing each of its columns with the result of {@link #transformColumn(Column)}
+     * @param orderByElement the order by element to copy
+     * @return the copy
+     * @throws ParseException when the expression can not be copied
+     */
+    public OrderByElement transform(OrderByElement orderByElement) throws ParseException {
+        OrderByElement copy = new OrderByElement();
+        copy.setExpression(transform(orderByElement.getExpression()));
+        copy.setAsc(orderByElement.isAsc());
+        copy.setAscDescPresent(orderByElement.isAscDescPresent());
+        copy.setNullOrdering(orderByElement.getNullOrdering());
+        return copy;
+    }
+
+    //a chain like a or b or c is parsed into a tree that is as deep as the chain is long, so its left side is copied
+    //in a loop instead of recursively
+    private Expression transformAndOr(BinaryExpression expression) throws ParseException {
+        List<BinaryExpression> chain = new ArrayList<>();
+        Expression left = expression;
+        while (left instanceof AndExpression || left instanceof OrExpression) {
+            chain.add((BinaryExpression) left);
+            left = ((BinaryExpression) left).getLeftExpression();
+        }
+        Expression copy = transform(left);
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            BinaryExpression original = chain.get(i);
+            BinaryExpression andOr = original instanceof AndExpression ? new AndExpression(copy, null)
+                    : new OrExpression(copy, null);
+            andOr.setRightExpression(transform(original.getRightExpression()));
+            if (original.isNot()) {
+                andOr.setNot();
+            }
+            copy = andOr;
+        }
+        return copy;
+    }
+
+    private BinaryExpression newBinaryExpression(BinaryExpression expression) throws ParseException {
+        BinaryExpression copy;
+        if (expression instanceof EqualsTo) {
+            copy = new EqualsTo();
+        } else if (expression instanceof NotEqualsTo) {
+            copy = new NotEqualsTo(((NotEqualsTo) expression).getStringExpression());
+        } else if (expression instanceof GreaterThan) {
+            copy = new GreaterThan();
+        } else if (expression instanceof GreaterThanEquals) {
+            copy = new GreaterThanEquals();
+        } else if (expression instanceof MinorThan) {
+            copy = new MinorThan();
+        } else if (expression instanceof MinorThanEquals) {
+            copy = new MinorThanEquals();
+        } else if (expression instanceof LikeExpression) {
+            LikeExpression likeExpression = (LikeExpression) expression;
+            LikeExpression likeCopy = new LikeExpression();
+            likeCopy.setEscape(likeExpression.getEscape());
+            likeCopy.setCaseInsensitive(likeExpression.isCaseInsensitive());
+            copy = likeCopy;
+        } else if (expression instanceof Addition) {
+            copy = new Addition();
+        } else if (expression instanceof Subtraction) {
+            copy = new Subtraction();
+        } else if (expression instanceof Multiplication) {
+            copy = new Multiplication();
+        } else if (expression instanceof Division) {
+            copy = new Division();
+        } else if (expression instanceof Modulo) {
+            copy = new Modulo();
+        } else if (expression instanceof Concat) {
+            copy = new Concat();
+        } else {
+            return null;
+        }
+        if (expression instanceof OldOracleJoinBinaryExpression) {
+            OldOracleJoinBinaryExpression oracleExpression = (OldOracleJoinBinaryExpression) expression;
+            ((OldOracleJoinBinaryExpression) copy).setOldOracleJoinSyntax(oracleExpression.getOldOracleJoinSyntax());
+            ((OldOracleJoinBinaryExpression) copy).setOraclePriorPosition(oracleExpression.getOraclePriorPosition());
+        }
+        copy.setLeftExpression(transform(expression.getLeftExpression()));
+        copy.setRightExpression(transform(expression.getRightExpression()));
+        if (expression.isNot()) {
+            copy.setNot();
+        }
+        return copy;
+    }
+
+    //Expressions this class does not know how to copy are parsed again from their sql text, so the columns of the
+    //private copy can be rewritten in place
+    private Expression transformReparsedCopy(Expression expression) throws ParseException {
+        Expression copy;
+        try {
+            copy = ReusableSqlParser.forInput(new StringProvider(expression.toString())).Expression();
+        } catch (net.sf.jsqlparser.parser.ParseException e) {
+            throw SqlUtils.convertParseException(e);
+        }
+        copy.accept(new ExpressionVisitorAdapter() {
+            @Override
+            public void visit(Column column) {
+                Column transformed = transformColumn(column);
+                column.setTable(transformed.getTable());
+                column.setColumnName(transformed.getColumnName());
+            }
+        });
+        return copy;
+    }
+
+    private static boolean containsColumn(Expression expression) {
+        final boolean[] found = new boolean[1];
+        expression.accept(new ExpressionVisitorAdapter() {
+            @Override
+            public void visit(Column column) {
+                found[0] = true;
+            }
+        });
+        return found[0];
+    }
+}
@@ -2,12 +2,10 @@ package com.github.vincentrussell.query.mongodb.sql.converter.visitor;
 
 import com.github.vincentrussell.query.mongodb.sql.converter.util.SqlUtils;
 
-import net.sf.jsqlparser.expression.ExpressionVisitorAdapter;
 import net.sf.jsqlparser.schema.Column;
-import net.sf.jsqlparser.schema.Table;
 
-//Generate lookup lets from on clause. All fields without table fields 
-public class ExpVisitorEraseAliasTableBaseBuilder extends ExpressionVisitorAdapter{
+//Copy an expression without the alias of the base table. All fields in the copy are without table
+public class ExpVisitorEraseAliasTableBaseBuilder extends CopyOnWriteColumnTransformer{
 	private String baseAliasTable;
 	
 	public ExpVisitorEraseAliasTableBaseBuilder(String baseAliasTable) {
@@ -15,7 +13,7 @@ public class ExpVisitorEraseAliasTableBaseBuilder extends ExpressionVisitorAdapt
 	}
 	
 	@Override
-    public void visit(Column column) {
-		SqlUtils.removeAliasFromColumn(column, baseAliasTable);
+    protected Column transformColumn(Column column) {
+		return SqlUtils.removeAliasFromColumn(column, baseAliasTable);
     }
 }
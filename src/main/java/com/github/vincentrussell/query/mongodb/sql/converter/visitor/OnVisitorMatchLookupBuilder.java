@@ -2,11 +2,10 @@ package com.github.vincentrussell.query.mongodb.sql.converter.visitor;
 
 import com.github.vincentrussell.query.mongodb.sql.converter.util.SqlUtils;
 
-import net.sf.jsqlparser.expression.ExpressionVisitorAdapter;
 import net.sf.jsqlparser.schema.Column;
 
 //Generate lookup subpipeline match step from on clause. For optimization, this must combine with where part of joined collection
-public class OnVisitorMatchLookupBuilder extends ExpressionVisitorAdapter{
+public class OnVisitorMatchLookupBuilder extends CopyOnWriteColumnTransformer{
 	private String joinAliasTable;
 	private String baseAliasTable;
 	
@@ -16,7 +15,7 @@ public class OnVisitorMatchLookupBuilder extends ExpressionVisitorAdapter{
 	}
 	
 	@Override
-    public void visit(Column column) {
+    protected Column transformColumn(Column column) {
 		if(SqlUtils.isColumn(column)) {
 			String columnName;
 			if(column.getTable() != null) {
@@ -27,17 +26,16 @@ public class OnVisitorMatchLookupBuilder extends ExpressionVisitorAdapter{
 			}
 			if(!SqlUtils.isTableAliasOfColumn(column, joinAliasTable) ) {
 				if(column.getTable() == null || SqlUtils.isTableAliasOfColumn(column, baseAliasTable)) {//we know let var don't have table inside
-					column.setColumnName("$$" + columnName.replace(".", "_").toLowerCase());
+					return new Column("$$" + columnName.replace(".", "_").toLowerCase());
 				}
 				else {
-					column.setColumnName("$$" + column.getName(false).replace(".", "_").toLowerCase());
+					return new Column("$$" + column.getName(false).replace(".", "_").toLowerCase());
 				}
-				column.setTable(null);
 			}
 			else {
-				column.setTable(null);
-				column.setColumnName("$" + columnName);
+				return new Column("$" + columnName);
 			}
 		}
+		return column;
     }
 }
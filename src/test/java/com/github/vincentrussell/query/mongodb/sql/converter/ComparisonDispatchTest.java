@@ -0,0 +1,40 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import org.bson.Document;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class ComparisonDispatchTest {
+
+    @Test
+    public void comparisonFunctionsAreFoundIgnoringCase() throws ParseException {
+        assertEquals("{\"column\": {\"$regex\": \"^a\"}}", query("RegexMatch(column,'^a') = true"));
+        assertEquals("{\"_id\": {\"$oid\": \"53102b43bf1044ed8b0ba36b\"}}",
+                query("ObjectId('_id') = '53102b43bf1044ed8b0ba36b'"));
+        assertEquals(query("a > date('2020-01-01')"), query("a > Date('2020-01-01')"));
+    }
+
+    @Test
+    public void functionsWithOtherArgumentsAreTranslatedGenerically() throws ParseException {
+        assertEquals("{\"$expr\": {\"$eq\": [{\"$date\": \"a\"}, \"x\"]}}", query("date(a) = 'x'"));
+        assertEquals("{\"$expr\": {\"$eq\": [{\"$lower\": \"a\"}, \"x\"]}}", query("lower(a) = 'x'"));
+    }
+
+    @Test
+    public void everyComparisonOperator() throws ParseException {
+        assertEquals(new Document("$and", Arrays.asList(new Document("a", "x"),
+                new Document("b", new Document("$ne", 1L)), new Document("c", new Document("$gt", 2L)),
+                new Document("d", new Document("$gte", 3L)), new Document("e", new Document("$lt", 4L)),
+                new Document("f", new Document("$lte", 5L)))),
+                new QueryConverter("select * from t where a = 'x' and b <> 1 and c > 2 and d >= 3 and e < 4 "
+                        + "and f <= 5").getMongoQuery().getQuery());
+        assertEquals("{\"$expr\": {\"$eq\": [\"a\", \"b\"]}}", query("a = b"));
+    }
+
+    private static String query(String where) throws ParseException {
+        return new QueryConverter("select * from t where " + where).getMongoQuery().getQuery().toJson();
+    }
+}
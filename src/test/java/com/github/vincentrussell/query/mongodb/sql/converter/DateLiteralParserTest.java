@@ -0,0 +1,96 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import com.github.vincentrussell.query.mongodb.sql.converter.util.DateLiteralParser;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+public class DateLiteralParserTest {
+
+    private static final List<DateTimeFormatter> FORMATTERS = Arrays.asList(ISODateTimeFormat.dateTime(),
+            DateTimeFormat.forPattern("yyyy-MM-dd"), DateTimeFormat.forPattern("yyyyMMdd"));
+
+    private static final List<String> LITERALS = Arrays.asList("2016-12-12", "20161212", "2016-1-2", "-2016-12-12",
+            "+2016-12-12", "-20161212", "+20161212", "12016-12-12", "2016-13-12", "2016-12-32", "2016-02-30",
+            "2016-12-12T10:11:12.000Z", "2016-12-12t10:11:12.000z", "2016-12-12T10:11:12.123+05:30",
+            "2016-12-12T10:11:12.000-0800", "2016-12-12T10:11:12Z", "2016-12-12T10:11", "2016-12-12T", "2016",
+            "201612", "2016121212", "2016-12", "2016--12-12", "2016-12-12-", "2016:12:12", "2016.12.12",
+            "2016-12-12 ", " 2016-12-12", "2016/12/12", "12/12/2016", "1", "-", "+", "T", "", "today",
+            "45 days ago");
+
+    @Test
+    public void sameDatesAsTryingEveryFormatter() {
+        for (int i = 0; i < 2; i++) {
+            for (String literal : LITERALS) {
+                assertEquals(literal, tryEveryFormatter(literal), DateLiteralParser.parseFormattedDate(literal));
+            }
+        }
+    }
+
+    @Test
+    public void cachedDatesAreCopied() {
+        Date date = DateLiteralParser.parseFormattedDate("2016-12-12");
+        date.setTime(0);
+        Date again = DateLiteralParser.parseFormattedDate("2016-12-12");
+        assertNotSame(date, again);
+        assertEquals(tryEveryFormatter("2016-12-12"), again);
+    }
+
+    @Test
+    public void defaultTimeZoneIsRespected() {
+        DateTimeZone defaultZone = DateTimeZone.getDefault();
+        try {
+            DateTimeZone.setDefault(DateTimeZone.UTC);
+            assertEquals(new Date(1481500800000L), DateLiteralParser.parseFormattedDate("2016-12-12"));
+            DateTimeZone.setDefault(DateTimeZone.forOffsetHours(1));
+            assertEquals(new Date(1481497200000L), DateLiteralParser.parseFormattedDate("2016-12-12"));
+        } finally {
+            DateTimeZone.setDefault(defaultZone);
+        }
+    }
+
+    @Test
+    public void utcPatterns() {
+        assertEquals(new Date(1481500800000L), DateLiteralParser.parseUtc("yyyy-MM-dd", "2016-12-12"));
+        assertEquals(new Date(1481500800000L), DateLiteralParser.parseUtc("dd/MM/yyyy", "12/12/2016"));
+        assertEquals(new Date(1481500800000L), DateLiteralParser.parseUtc("dd/MM/yyyy", "12/12/2016"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidUtcValue() {
+        DateLiteralParser.parseUtc("yyyy-MM-dd", "12/12/2016");
+    }
+
+    @Test
+    public void simpleDatesAreLenient() throws java.text.ParseException {
+        SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.ENGLISH);
+        simpleDateFormat.setTimeZone(TimeZone.getDefault());
+        for (String literal : Arrays.asList("2016-12-12", "2016-13-45", "2016-12-12T10:11:12Z", "16-1-2")) {
+            assertEquals(literal, simpleDateFormat.parse(literal), DateLiteralParser.parseSimpleDate(literal));
+        }
+    }
+
+    private static Date tryEveryFormatter(String literal) {
+        for (DateTimeFormatter formatter : FORMATTERS) {
+            try {
+                return formatter.parseDateTime(literal).toDate();
+            } catch (IllegalArgumentException e) {
+                //try the next one
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,160 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import net.sf.jsqlparser.parser.StringProvider;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FastPathSelectParserTest {
+
+    private static final Pattern QUERY_CONVERTER_SQL = Pattern.compile("new QueryConverter\\(\\s*\"((?:[^\"\\\\]|\\\\.)*)\"\\s*[,)]");
+
+    private static final List<String> SIMPLE_SELECTS = Arrays.asList(
+            "select * from my_table",
+            "SELECT column1, column2 FROM my_table WHERE value = 'theValue' AND count > 3 ORDER BY column1 LIMIT 10",
+            "select column1 from my_table where value >= 1.5 and value <= 2 and value < 4 and value > 0",
+            "select * from my_table where value != 1 and value <> 2 and key = \"theKey\"",
+            "select * from my_table where value is null and type is not null",
+            "select * from my_table where value like 'start%' and comment not like '%end'",
+            "select nested.field, a.b.c from my_table where nested.field = 'x' order by nested.field desc, a.b.c asc",
+            "select * from my_table order by column1 limit 5 offset 10;",
+            "select * from my_table where index = 007 limit 0",
+            "select * from my_table limit 2147483647 offset 2147483647",
+            "select*from my_table where value='a'and type=\"b\"",
+            "  select column1\n\tfrom my_table\r\n where value = 1  ;  ");
+
+    private static final List<String> NOT_RECOGNIZED = Arrays.asList(
+            "select column1 as c1 from my_table",
+            "select count(*) from my_table",
+            "select distinct column1 from my_table",
+            "select * from my_table as t where t.value = 1",
+            "select * from my_table where value = 1 or value = 2",
+            "select * from my_table where (value = 1)",
+            "select * from my_table where value == 1",
+            "select * from my_table where value = -1",
+            "select * from my_table where value = 1e3",
+            "select * from my_table where value = 'it''s'",
+            "select * from my_table where value = true",
+            "select * from my_table where value in (1, 2)",
+            "select * from my_table where date(value, 'YYYY-MM-DD') >= '2016-12-12'",
+            "select * from my_table where value = ?",
+            "select * from my_table limit ?",
+            "select * from my_table where a = 1 limit 2147483648",
+            "select * from my_table limit 5 offset 2147483648",
+            "select * from my_table -- comment",
+            "select * from my_table group by value",
+            "select * from schema.my_table",
+            "select * from my_table where select = 1",
+            "select * from my_table where date = '2016-12-12'",
+            "select * from my_table; select * from other_table",
+            "delete from my_table where value = 1");
+
+    @Test
+    public void simpleSelectsAreRecognized() {
+        for (String sql : SIMPLE_SELECTS) {
+            assertNotNull(sql, FastPathSelectParser.parse(sql));
+        }
+    }
+
+    @Test
+    public void otherStatementsAreLeftToTheFullParser() {
+        for (String sql : NOT_RECOGNIZED) {
+            assertNull(sql, FastPathSelectParser.parse(sql));
+        }
+    }
+
+    @Test
+    public void fastPathAndFullParserGiveTheSameOutput() throws IOException {
+        Set<String> corpus = new LinkedHashSet<>(SIMPLE_SELECTS);
+        corpus.addAll(NOT_RECOGNIZED);
+        corpus.addAll(getQueryConverterTestCorpus());
+        List<Map<String, FieldType>> mappings = Arrays.asList(Collections.<String, FieldType>emptyMap(),
+                ImmutableMap.of("value", FieldType.STRING, "count", FieldType.NUMBER));
+        int recognized = 0;
+        for (String sql : corpus) {
+            if (FastPathSelectParser.parse(sql) == null) {
+                continue;
+            }
+            recognized++;
+            for (FieldType defaultFieldType : FieldType.values()) {
+                for (Map<String, FieldType> mapping : mappings) {
+                    assertEquals(sql + " " + defaultFieldType + " " + mapping,
+                            convertWithFullParser(sql, mapping, defaultFieldType),
+                            convertWithFastPath(sql, mapping, defaultFieldType));
+                }
+            }
+        }
+        assertTrue("only " + recognized + " statements were recognized", recognized >= 25);
+    }
+
+    private static String convertWithFastPath(String sql, Map<String, FieldType> mapping, FieldType defaultFieldType)
+            throws IOException {
+        try {
+            return describe(new QueryConverter(sql, mapping, defaultFieldType));
+        } catch (ParseException | RuntimeException e) {
+            return e.getClass().getName() + ": " + e.getMessage();
+        }
+    }
+
+    private static String convertWithFullParser(String sql, Map<String, FieldType> mapping, FieldType defaultFieldType)
+            throws IOException {
+        try {
+            return describe(new QueryConverter(QueryConverter.parseSingleStatement(new StringProvider(sql)),
+                    mapping, defaultFieldType));
+        } catch (ParseException | RuntimeException e) {
+            return e.getClass().getName() + ": " + e.getMessage();
+        }
+    }
+
+    private static String describe(QueryConverter queryConverter) throws IOException {
+        MongoDBQueryHolder mongoDBQueryHolder = queryConverter.getMongoQuery();
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        queryConverter.write(byteArrayOutputStream);
+        return byteArrayOutputStream.toString(Charsets.UTF_8.name())
+                + "\n" + mongoDBQueryHolder.getCollection()
+                + "\n" + mongoDBQueryHolder.getQuery()
+                + "\n" + mongoDBQueryHolder.getProjection()
+                + "\n" + mongoDBQueryHolder.getSort()
+                + "\n" + mongoDBQueryHolder.getLimit() + " " + mongoDBQueryHolder.getOffset()
+                + "\n" + mongoDBQueryHolder.isCountAll() + " " + mongoDBQueryHolder.isDistinct()
+                + "\n" + queryConverter.compile().getOperation();
+    }
+
+    //every sql string literal passed to a QueryConverter constructor in QueryConverterTest, except for the dates
+    //relative to the current time that would differ between two conversions
+    private static List<String> getQueryConverterTestCorpus() throws IOException {
+        String source = FileUtils.readFileToString(new File(
+                "src/test/java/com/github/vincentrussell/query/mongodb/sql/converter/QueryConverterTest.java"),
+                Charsets.UTF_8.name());
+        List<String> corpus = new ArrayList<>();
+        Matcher matcher = QUERY_CONVERTER_SQL.matcher(source);
+        while (matcher.find()) {
+            if (matcher.group(1).contains(" ago")) {
+                continue;
+            }
+            corpus.add(matcher.group(1).replace("\\n", "\n").replace("\\t", "\t")
+                    .replace("\\\"", "\"").replace("\\\\", "\\"));
+        }
+        assertTrue(corpus.size() > 50);
+        return corpus;
+    }
+}
@@ -0,0 +1,110 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import com.google.common.collect.ImmutableMap;
+import org.bson.Document;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FieldTypeResolverTest {
+
+    private static final FieldTypeResolver RESOLVER = FieldTypeResolver.compile(ImmutableMap.<String, FieldType>builder()
+            .put("value", FieldType.NUMBER)
+            .put("*.createdAt", FieldType.DATE)
+            .put("metrics.*", FieldType.NUMBER)
+            .put("metrics.name", FieldType.STRING)
+            .put("metrics.*.label", FieldType.STRING)
+            .put("*.*.flag", FieldType.BOOLEAN)
+            .put("a.*", FieldType.STRING)
+            .put("*.b", FieldType.NUMBER)
+            .build());
+
+    @Test
+    public void exactAndWildcardRules() {
+        assertEquals(FieldType.NUMBER, RESOLVER.resolve("value"));
+        assertEquals(FieldType.DATE, RESOLVER.resolve("order.createdAt"));
+        assertEquals(FieldType.NUMBER, RESOLVER.resolve("metrics.count"));
+        assertEquals(FieldType.STRING, RESOLVER.resolve("metrics.name"));
+        assertEquals(FieldType.STRING, RESOLVER.resolve("metrics.cpu.label"));
+        assertEquals(FieldType.BOOLEAN, RESOLVER.resolve("x.y.flag"));
+        assertEquals(FieldType.BOOLEAN, RESOLVER.resolve("metrics.cpu.flag"));
+        assertNull(RESOLVER.resolve("createdAt"));
+        assertNull(RESOLVER.resolve("a.b.createdAt"));
+        assertNull(RESOLVER.resolve("metrics"));
+        assertNull(RESOLVER.resolve("metrics.cpu.value"));
+        assertNull(RESOLVER.resolve("other"));
+        assertNull(RESOLVER.resolve(""));
+        assertNull(RESOLVER.resolve("."));
+        assertNull(RESOLVER.resolve(null));
+    }
+
+    @Test
+    public void literalSegmentsWinOverWildcards() {
+        assertEquals(FieldType.STRING, RESOLVER.resolve("a.b"));
+        assertEquals(FieldType.STRING, RESOLVER.resolve("a.c"));
+        assertEquals(FieldType.NUMBER, RESOLVER.resolve("c.b"));
+    }
+
+    @Test
+    public void plainMappingsAreNotCopied() {
+        Map<String, FieldType> mapping = new HashMap<>();
+        FieldTypeResolver resolver = FieldTypeResolver.of(mapping);
+        mapping.put("value", FieldType.STRING);
+        mapping.put("*.value", FieldType.STRING);
+        assertEquals(FieldType.STRING, resolver.resolve("value"));
+        assertNull(resolver.resolve("a.value"));
+        assertNull(FieldTypeResolver.of(null).resolve("value"));
+    }
+
+    @Test
+    public void lookupsDoNotAllocate() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        long threadId = Thread.currentThread().getId();
+        int found = lookups(1000);
+        long before = allocationBean.getThreadAllocatedBytes(threadId);
+        found += lookups(10000);
+        long allocated = allocationBean.getThreadAllocatedBytes(threadId) - before;
+        assertEquals(11000 * 3, found);
+        assertTrue(allocated + " bytes allocated", allocated < 10000);
+    }
+
+    @Test
+    public void whereClauseAndJoinsUseTheResolver() throws ParseException {
+        FieldTypeResolver resolver = FieldTypeResolver.compile(ImmutableMap.of("*.createdAt", FieldType.STRING,
+                "count", FieldType.NUMBER));
+        QueryConverter queryConverter = new QueryConverter(
+                "select * from my_table where purchase.createdAt = 1 and count = '5'", resolver, FieldType.UNKNOWN);
+        assertEquals(new Document("$and", Arrays.asList(new Document("purchase.createdAt", "1"),
+                new Document("count", 5L))), queryConverter.getMongoQuery().getQuery());
+
+        QueryConverter joinConverter = new QueryConverter("select t1.column1 from my_table as t1 "
+                + "join my_table2 as t2 on t1.column = t2.column where t2.count = '5'", resolver, FieldType.UNKNOWN);
+        List<Document> pipeline = joinConverter.getMongoQuery().getJoinPipeline();
+        Document lookup = pipeline.get(0).get("$lookup", Document.class);
+        Document match = (Document) lookup.get("pipeline", List.class).get(0);
+        assertEquals(new Document("count", 5L), match.get("$match", Document.class).get("$and", List.class).get(1));
+    }
+
+    private static int lookups(int times) {
+        int found = 0;
+        for (int i = 0; i < times; i++) {
+            found += RESOLVER.resolve("order.createdAt") != null ? 1 : 0;
+            found += RESOLVER.resolve("metrics.cpu.label") != null ? 1 : 0;
+            found += RESOLVER.resolve("value") != null ? 1 : 0;
+            found += RESOLVER.resolve("unknown.field.name") != null ? 1 : 0;
+        }
+        return found;
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import org.bson.Document;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class FilterOptimizerTest {
+
+    @Before
+    public void before() {
+        System.setProperty(QueryConverter.D_OPTIMIZE_FILTER, "true");
+    }
+
+    @After
+    public void after() {
+        System.clearProperty(QueryConverter.D_OPTIMIZE_FILTER);
+    }
+
+    @Test
+    public void betweenBecomesOneRange() throws ParseException {
+        System.clearProperty(QueryConverter.D_OPTIMIZE_FILTER);
+        assertEquals(new Document("a", new Document("$gte", 1L).append("$lte", 5L)),
+                query("a between 1 and 5"));
+        assertEquals(new Document("$and", Arrays.asList(new Document("$or", Arrays.asList(
+                new Document("a", new Document("$lt", 1L)), new Document("a", new Document("$gt", 5L)))),
+                new Document("b", 2L))), query("a not between 1 and 5 and b = 2"));
+    }
+
+    @Test
+    public void andBecomesImplicitConjunction() throws ParseException {
+        assertEquals(new Document("a", 1L).append("b", "x").append("c", new Document("$exists", true)),
+                query("a = 1 and (b = 'x' and c is not null)"));
+    }
+
+    @Test
+    public void rangesOnTheSameFieldAreMerged() throws ParseException {
+        assertEquals(new Document("a", new Document("$gt", 3L).append("$lte", 7L)),
+                query("a > 1 and a >= 3 and a > 3 and a < 10 and a <= 7 and a between 0 and 8"));
+        assertEquals(new Document("a", new Document("$gte", 4L).append("$lt", 6L)),
+                query("a between 2 and 6 and a >= 4 and a < 6"));
+    }
+
+    @Test
+    public void equalityImpliesRange() throws ParseException {
+        assertEquals(new Document("a", 5L), query("a = 5 and a > 1 and a <= 5"));
+        assertEquals(new Document("a", new Document("$eq", 5L).append("$gt", 7L)), query("a = 5 and a > 7"));
+    }
+
+    @Test
+    public void seemingContradictionsAreKept() throws ParseException {
+        assertEquals(new Document("a", 1L).append("$and", Arrays.asList(new Document("a", 2L))),
+                query("a = 1 and a = 2"));
+        assertEquals(new Document("a", new Document("$gt", 5L).append("$lt", 2L)), query("a > 5 and a < 2"));
+    }
+
+    @Test
+    public void stringRangesAreNotTightened() throws ParseException {
+        assertEquals(new Document("a", new Document("$gt", "b"))
+                        .append("$and", Arrays.asList(new Document("a", new Document("$gt", "c")))),
+                query("a > 'b' and a > 'c'"));
+    }
+
+    @Test
+    public void duplicatesAreRemoved() throws ParseException {
+        assertEquals(new Document("a", 1L).append("b", 2L), query("a = 1 and b = 2 and a = 1"));
+        assertEquals(new Document("$or", Arrays.asList(new Document("a", new Document("$gt", 1L)),
+                new Document("b", 2L))), query("a > 1 or b = 2 or (a > 1)"));
+    }
+
+    @Test
+    public void orOfEqualitiesBecomesIn() throws ParseException {
+        assertEquals(new Document("a", new Document("$in", Arrays.asList(1L, 2L, 3L))),
+                query("a = 1 or a = 2 or a in (2, 3)"));
+        assertEquals(new Document("$or", Arrays.asList(new Document("a", new Document("$in", Arrays.asList(1L, 2L))),
+                new Document("b", 3L))), query("a = 1 or b = 3 or a = 2"));
+    }
+
+    @Test
+    public void nestedOrsAreFlattened() throws ParseException {
+        assertEquals(new Document("c", 1L).append("a", new Document("$in", Arrays.asList(1L, 2L))),
+                query("c = 1 and (a = 1 or (a = 2))"));
+        assertEquals(new Document("$or", Arrays.asList(new Document("a", "x"),
+                new Document("b", 1L).append("c", 2L))), query("a = 'x' or (b = 1 and c = 2 and b = 1)"));
+    }
+
+    @Test
+    public void regularExpressionsAreNotInLists() throws ParseException {
+        assertEquals(new Document("$or", Arrays.asList(new Document("a", new Document("$regex", "^x.*$")),
+                new Document("a", "y"))), query("a like 'x%' or a = 'y'"));
+    }
+
+    @Test
+    public void disabledByDefault() throws ParseException {
+        System.clearProperty(QueryConverter.D_OPTIMIZE_FILTER);
+        assertEquals(new Document("$or", Arrays.asList(new Document("a", 1L), new Document("a", 2L))),
+                query("a = 1 or a = 2"));
+    }
+
+    private static Document query(String where) throws ParseException {
+        return new QueryConverter("select * from my_table where " + where).getMongoQuery().getQuery();
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import com.github.vincentrussell.query.mongodb.sql.converter.processor.AggregateFunctionTranslator;
+import com.github.vincentrussell.query.mongodb.sql.converter.processor.FunctionRegistry;
+import com.github.vincentrussell.query.mongodb.sql.converter.processor.FunctionTranslator;
+import com.github.vincentrussell.query.mongodb.sql.converter.processor.PredicateFunctionTranslator;
+import com.github.vincentrussell.query.mongodb.sql.converter.util.SqlUtils;
+import net.sf.jsqlparser.expression.Function;
+import net.sf.jsqlparser.expression.operators.relational.ComparisonOperator;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import org.bson.Document;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FunctionRegistryTest {
+
+    @Test
+    public void lookupIgnoresCase() {
+        assertSame(FunctionRegistry.getPredicateFunctionTranslator("regexMatch"),
+                FunctionRegistry.getPredicateFunctionTranslator("REGEXMATCH"));
+        assertSame(FunctionRegistry.getFunctionTranslator("OID"), FunctionRegistry.getFunctionTranslator("oid"));
+        assertSame(FunctionRegistry.getAggregateFunctionTranslator("sum"),
+                FunctionRegistry.getAggregateFunctionTranslator("Sum"));
+    }
+
+    @Test
+    public void registeredFunctionTranslator() throws ParseException {
+        FunctionRegistry.register(new FunctionTranslator() {
+            @Override
+            public String getName() {
+                return "upperCase";
+            }
+
+            @Override
+            public Document translate(Object arguments) {
+                return new Document("$toUpper", arguments);
+            }
+        });
+        assertEquals(new Document("$expr", new Document("$eq", Arrays.asList(
+                new Document("$toUpper", "$name"), "ABC"))),
+                query("select * from my_table where UPPERCASE('$name') = 'ABC'").getQuery());
+    }
+
+    @Test
+    public void registeredPredicateFunctionTranslator() throws ParseException {
+        FunctionRegistry.register(new PredicateFunctionTranslator() {
+            @Override
+            public String getName() {
+                return "startsWith";
+            }
+
+            @Override
+            public Document translate(ComparisonOperator comparison, Function function) {
+                if (!EqualsTo.class.isInstance(comparison) || function != comparison.getLeftExpression()) {
+                    return null;
+                }
+                String column = SqlUtils.getStringValue(function.getParameters().getExpressions().get(0));
+                String prefix = SqlUtils.getStringValue(function.getParameters().getExpressions().get(1));
+                return new Document(column, new Document("$regex", "^" + prefix));
+            }
+        });
+        assertEquals(new Document("name", new Document("$regex", "^ab")),
+                query("select * from my_table where startswith(name, 'ab') = true").getQuery());
+    }
+
+    @Test
+    public void aggregateFunctionTranslatorFromServiceLoader() throws ParseException {
+        assertEquals(new Document("_id", "$agent_code").append("stddev_amount", new Document("$stdDevPop", "$amount")),
+                query("select agent_code, stddev(amount) from orders group by agent_code").getProjection());
+    }
+
+    @Test
+    public void aliasedAggregateFunction() throws ParseException {
+        assertEquals(new Document("_id", "$agent_code").append("average", new Document("$avg", "$amount")),
+                query("select agent_code, AVG(amount) as average from orders group by agent_code").getProjection());
+    }
+
+    @Test
+    public void countAllInAnyCase() throws ParseException {
+        assertTrue(query("select COUNT(*) from my_table where value = 1").isCountAll());
+    }
+
+    private static MongoDBQueryHolder query(String sql) throws ParseException {
+        return new QueryConverter(sql).getMongoQuery();
+    }
+
+    public static final class StdDevTranslator implements AggregateFunctionTranslator {
+        @Override
+        public String getName() {
+            return "stdDev";
+        }
+
+        @Override
+        public String getOutputName(String field) {
+            return "stddev_" + field;
+        }
+
+        @Override
+        public Object translate(String field) {
+            return new Document("$stdDevPop", "$" + field);
+        }
+    }
+}
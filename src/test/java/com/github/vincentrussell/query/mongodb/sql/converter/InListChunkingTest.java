@@ -0,0 +1,227 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.ServerCursor;
+import com.mongodb.client.MongoCursor;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class InListChunkingTest {
+
+    @After
+    public void after() {
+        System.clearProperty(QueryConverter.D_SORT_IN_LISTS);
+        System.clearProperty(QueryConverter.D_IN_LIST_CHUNK_SIZE);
+        System.clearProperty(QueryConverter.D_IN_LIST_CHUNK_PARALLELISM);
+    }
+
+    @Test
+    public void inListsAreDeduplicated() throws ParseException {
+        assertEquals(new Document("value", new Document("$in", Arrays.asList(3L, 1L, 2L))),
+                query("value in (3, 1, 3, 2, 1)"));
+        assertEquals(new Document("value", new Document("$nin", Arrays.asList("b", "a"))),
+                query("value not in ('b', 'a', 'b')"));
+        assertEquals(new Document("_id", new Document("$in", Arrays.asList(
+                new ObjectId("53102b43bf1044ed8b0ba36b"), new ObjectId("54651022bffebc03098b4568")))),
+                query("OBJECTID('_id') in ('53102b43bf1044ed8b0ba36b', '54651022bffebc03098b4568', "
+                        + "'53102b43bf1044ed8b0ba36b')"));
+    }
+
+    @Test
+    public void inListsCanBeSorted() throws ParseException {
+        System.setProperty(QueryConverter.D_SORT_IN_LISTS, "true");
+        assertEquals(new Document("value", new Document("$in", Arrays.asList(1L, 2L, 3L))),
+                query("value in (3, 1, 3, 2, 1)"));
+        assertEquals(new Document("value", new Document("$in", Arrays.asList("a", "b", "c"))),
+                query("value in ('c', 'a', 'b')"));
+        assertEquals(new Document("value", new Document("$in", Arrays.asList(3L, "a", 1L))),
+                query("value in (3, 'a', 1)"));
+    }
+
+    @Test
+    public void splitTopLevelInList() {
+        Document filter = new Document("a", new Document("$in", Arrays.asList(1, 2, 3, 4, 5))).append("b", 1);
+        assertEquals(Arrays.asList(
+                new Document("a", new Document("$in", Arrays.asList(1, 2))).append("b", 1),
+                new Document("a", new Document("$in", Arrays.asList(3, 4))).append("b", 1),
+                new Document("a", new Document("$in", Arrays.asList(5))).append("b", 1)),
+                InListSplitter.split(filter, 2));
+        assertEquals(Arrays.asList(filter), InListSplitter.split(filter, 5));
+        assertEquals(Arrays.asList(filter), InListSplitter.split(filter, 0));
+    }
+
+    @Test
+    public void splitLongestInListOfAnd() {
+        Document filter = new Document("$and", Arrays.asList(
+                new Document("a", new Document("$in", Arrays.asList(1, 2, 3))),
+                new Document("b", new Document("$in", Arrays.asList(1, 2, 3, 4))),
+                new Document("c", new Document("$nin", Arrays.asList(1, 2, 3, 4, 5)))));
+        List<Document> filters = InListSplitter.split(filter, 2);
+        assertEquals(2, filters.size());
+        assertEquals(new Document("$and", Arrays.asList(
+                new Document("a", new Document("$in", Arrays.asList(1, 2, 3))),
+                new Document("b", new Document("$in", Arrays.asList(3, 4))),
+                new Document("c", new Document("$nin", Arrays.asList(1, 2, 3, 4, 5))))), filters.get(1));
+        assertEquals(Arrays.asList(1, 2, 3, 4), ((Document) ((List<?>) filter.get("$and")).get(1)).get("b",
+                Document.class).get("$in"));
+    }
+
+    @Test
+    public void chunkedCursorReturnsEveryDocumentOnce() {
+        List<Callable<MongoCursor<Document>>> queries = Arrays.asList(
+                query(new Document("_id", 1).append("a", Arrays.asList(1, 3)), new Document("_id", 2)),
+                query(new Document("_id", 3), new Document("_id", 1).append("a", Arrays.asList(1, 3))),
+                query(),
+                query(new Document("_id", 4)));
+        List<Document> documents = new ArrayList<>();
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        Iterator<Document> iterator = new ChunkedDocumentCursor(queries, true, executorService, 2);
+        while (iterator.hasNext()) {
+            documents.add(iterator.next());
+        }
+        executorService.shutdown();
+        assertEquals(Arrays.asList(new Document("a", Arrays.asList(1, 3)), new Document(), new Document(),
+                new Document()), documents);
+    }
+
+    @Test
+    public void closeClosesEveryCursorAndOnlyQueriesAhead() {
+        List<FakeCursor> cursors = new ArrayList<>();
+        List<Callable<MongoCursor<Document>>> queries = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            final FakeCursor cursor = new FakeCursor(Arrays.asList(new Document("_id", i)));
+            cursors.add(cursor);
+            queries.add(new Callable<MongoCursor<Document>>() {
+                @Override
+                public MongoCursor<Document> call() {
+                    cursor.opened = true;
+                    return cursor;
+                }
+            });
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(3);
+        ChunkedDocumentCursor chunkedDocumentCursor = new ChunkedDocumentCursor(queries, false, executorService, 3);
+        assertEquals(new Document("_id", 0), chunkedDocumentCursor.next());
+        chunkedDocumentCursor.close();
+        assertFalse(executorService.isShutdown());
+        executorService.shutdown();
+        for (FakeCursor cursor : cursors) {
+            assertFalse(cursor.opened && !cursor.closed);
+        }
+        //the first query and the three after it
+        for (FakeCursor cursor : cursors.subList(4, cursors.size())) {
+            assertFalse(cursor.opened);
+        }
+    }
+
+    @Test
+    public void chunkPropertiesAreValidated() {
+        assertEquals(0, QueryConverter.getInListChunkSize());
+        assertEquals(Runtime.getRuntime().availableProcessors(), QueryConverter.getInListChunkParallelism());
+        System.setProperty(QueryConverter.D_IN_LIST_CHUNK_SIZE, "500");
+        System.setProperty(QueryConverter.D_IN_LIST_CHUNK_PARALLELISM, "4");
+        assertEquals(500, QueryConverter.getInListChunkSize());
+        assertEquals(4, QueryConverter.getInListChunkParallelism());
+        for (String invalid : Arrays.asList("-1", "many", "")) {
+            System.setProperty(QueryConverter.D_IN_LIST_CHUNK_SIZE, invalid);
+            try {
+                QueryConverter.getInListChunkSize();
+                fail("expected IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains(QueryConverter.D_IN_LIST_CHUNK_SIZE));
+            }
+        }
+        System.setProperty(QueryConverter.D_IN_LIST_CHUNK_PARALLELISM, "0");
+        try {
+            QueryConverter.getInListChunkParallelism();
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains(QueryConverter.D_IN_LIST_CHUNK_PARALLELISM));
+        }
+    }
+
+    @Test
+    public void chunkExecutorIsSharedAndResized() {
+        ExecutorService executorService = QueryConverter.getInListChunkExecutor(2);
+        assertSame(executorService, QueryConverter.getInListChunkExecutor(5));
+        assertEquals(5, ((ThreadPoolExecutor) executorService).getMaximumPoolSize());
+        QueryConverter.getInListChunkExecutor(1);
+        assertEquals(1, ((ThreadPoolExecutor) executorService).getCorePoolSize());
+        assertEquals(1, ((ThreadPoolExecutor) executorService).getMaximumPoolSize());
+    }
+
+    private static Document query(String where) throws ParseException {
+        return new QueryConverter("select * from my_table where " + where).getMongoQuery().getQuery();
+    }
+
+    private static Callable<MongoCursor<Document>> query(final Document... documents) {
+        return new Callable<MongoCursor<Document>>() {
+            @Override
+            public MongoCursor<Document> call() {
+                return new FakeCursor(Arrays.asList(documents));
+            }
+        };
+    }
+
+    private static final class FakeCursor implements MongoCursor<Document> {
+        private final Iterator<Document> documents;
+        private volatile boolean opened;
+        private volatile boolean closed;
+
+        private FakeCursor(List<Document> documents) {
+            this.documents = documents.iterator();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return documents.hasNext();
+        }
+
+        @Override
+        public Document next() {
+            return new Document(documents.next());
+        }
+
+        @Override
+        public Document tryNext() {
+            return hasNext() ? next() : null;
+        }
+
+        @Override
+        public ServerCursor getServerCursor() {
+            return null;
+        }
+
+        @Override
+        public ServerAddress getServerAddress() {
+            return null;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
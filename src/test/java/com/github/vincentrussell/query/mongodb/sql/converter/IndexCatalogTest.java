@@ -0,0 +1,203 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import org.bson.Document;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class IndexCatalogTest {
+
+    @Test
+    public void indexesAreCachedPerCollection() {
+        InMemoryIndexSource indexSource = new InMemoryIndexSource()
+                .add("my_table", index("a_1", new Document("a", 1)))
+                .add("other_table", index("b_1", new Document("b", 1)));
+        IndexCatalog indexCatalog = IndexCatalog.Builder.create(indexSource).build();
+        assertEquals("a_1", indexCatalog.getIndexes("my_table").get(0).getName());
+        assertEquals(new Document("a", 1), indexCatalog.getIndexes("my_table").get(0).getKeys());
+        indexCatalog.getIndexes("other_table");
+        indexCatalog.getIndexes("my_table");
+        assertEquals(Arrays.asList("my_table", "other_table"), indexSource.calls);
+
+        indexCatalog.invalidate("my_table");
+        indexCatalog.getIndexes("my_table");
+        indexCatalog.getIndexes("other_table");
+        assertEquals(Arrays.asList("my_table", "other_table", "my_table"), indexSource.calls);
+
+        indexCatalog.invalidateAll();
+        indexCatalog.getIndexes("other_table");
+        assertEquals(Arrays.asList("my_table", "other_table", "my_table", "other_table"), indexSource.calls);
+        assertTrue(indexCatalog.getIndexes("missing_table").isEmpty());
+    }
+
+    @Test
+    public void onlyOrderedIndexesOfEveryDocumentAreUsed() {
+        IndexCatalog indexCatalog = IndexCatalog.Builder.create(new InMemoryIndexSource().add("my_table",
+                index("a_1_b_-1", new Document("a", 1).append("b", -1)),
+                index("a_hashed", new Document("a", "hashed")),
+                index("a_text", new Document("a", "text")),
+                index("a_1_sparse", new Document("a", 1)).append("sparse", true),
+                index("a_1_partial", new Document("a", 1)).append("partialFilterExpression",
+                        new Document("a", new Document("$exists", true))),
+                index("a_1_simple", new Document("a", 1)).append("collation", new Document("locale", "simple")),
+                index("a_1_en", new Document("a", 1)).append("collation", new Document("locale", "en")
+                        .append("strength", 2)))).build();
+        List<Boolean> ordered = new ArrayList<>();
+        for (IndexCatalog.Index index : indexCatalog.getIndexes("my_table")) {
+            ordered.add(index.isOrdered());
+        }
+        assertEquals(Arrays.asList(true, false, false, false, false, true, false), ordered);
+    }
+
+    @Test
+    public void filterIsOnlyCopiedWhenItIsRewritten() throws ParseException {
+        IndexCatalog indexCatalog = IndexCatalog.Builder.create(new InMemoryIndexSource().add("my_table",
+                index("b_1_c_1", new Document("b", 1).append("c", 1)))).build();
+        List<IndexCatalog.Index> indexes = indexCatalog.getIndexes("my_table");
+        Document ordered = new Document("$and", Arrays.asList(new Document("b", 1L),
+                new Document("c", new Document("$gt", 5L))));
+        assertSame(ordered, IndexPlanner.plan("my_table", ordered, null, -1, indexes).getQuery());
+        Document unordered = new Document("$and", Arrays.asList(new Document("c", new Document("$gt", 5L)),
+                new Document("b", 1L)));
+        Document planned = IndexPlanner.plan("my_table", unordered, null, -1, indexes).getQuery();
+        assertEquals(new Document("$and", Arrays.asList(new Document("b", 1L),
+                new Document("c", new Document("$gt", 5L)))), planned);
+        assertEquals(new Document("$and", Arrays.asList(new Document("c", new Document("$gt", 5L)),
+                new Document("b", 1L))), unordered);
+
+        QueryConverter queryConverter = new QueryConverter("select * from my_table where b = 1 and c > 5");
+        Document query = queryConverter.plan(indexCatalog).getQuery();
+        ((Document) query.get("$and", List.class).get(1)).put("c", new Document("$gt", 6L));
+        assertEquals(ordered, queryConverter.getMongoQuery().getQuery());
+    }
+
+    @Test
+    public void equalityFieldsComeBeforeRangeFields() throws ParseException {
+        IndexCatalog indexCatalog = IndexCatalog.Builder.create(new InMemoryIndexSource().add("my_table",
+                index("_id_", new Document("_id", 1)),
+                index("c_1", new Document("c", 1)),
+                index("b_1_c_1", new Document("b", 1).append("c", 1)))).build();
+        QueryConverter queryConverter = new QueryConverter("select * from my_table where c > 5 and d = 2 and b = 1");
+        IndexPlan indexPlan = queryConverter.plan(indexCatalog);
+        assertEquals("b_1_c_1", indexPlan.getIndex().getName());
+        assertEquals(new Document("b", 1).append("c", 1), indexPlan.getHint());
+        assertEquals(new Document("$and", Arrays.asList(new Document("b", 1L),
+                new Document("c", new Document("$gt", 5L)), new Document("d", 2L))), indexPlan.getQuery());
+        assertEquals(Collections.emptyList(), indexPlan.getWarnings());
+        assertEquals(new Document("$and", Arrays.asList(new Document("c", new Document("$gt", 5L)),
+                new Document("d", 2L), new Document("b", 1L))), queryConverter.getMongoQuery().getQuery());
+    }
+
+    @Test
+    public void noIndexFitsTheQuery() throws ParseException {
+        IndexCatalog indexCatalog = IndexCatalog.Builder.create(new InMemoryIndexSource().add("my_table",
+                index("a_1_b_1", new Document("a", 1).append("b", 1)))).build();
+        IndexPlan indexPlan = new QueryConverter("select * from my_table where b = 1").plan(indexCatalog);
+        assertNull(indexPlan.getIndex());
+        assertNull(indexPlan.getHint());
+        assertEquals(new Document("b", 1L), indexPlan.getQuery());
+    }
+
+    @Test
+    public void orOfEqualitiesOnAnIndexedFieldBecomesIn() throws ParseException {
+        IndexCatalog indexCatalog = IndexCatalog.Builder.create(new InMemoryIndexSource().add("my_table",
+                index("a_1", new Document("a", 1)))).build();
+        IndexPlan indexPlan = new QueryConverter("select * from my_table where a = 1 or a = 2 or a = 3")
+                .plan(indexCatalog);
+        assertEquals(new Document("a", new Document("$in", Arrays.asList(1L, 2L, 3L))), indexPlan.getQuery());
+        assertEquals("a_1", indexPlan.getIndex().getName());
+
+        indexPlan = new QueryConverter("select * from my_table where b = 1 and (a = 1 or a = 2)").plan(indexCatalog);
+        assertEquals(new Document("$and", Arrays.asList(new Document("a", new Document("$in", Arrays.asList(1L, 2L))),
+                new Document("b", 1L))), indexPlan.getQuery());
+
+        indexPlan = new QueryConverter("select * from my_table where b = 1 or b = 2").plan(indexCatalog);
+        assertEquals(new Document("$or", Arrays.asList(new Document("b", 1L), new Document("b", 2L))),
+                indexPlan.getQuery());
+        assertEquals(Arrays.asList("$or on my_table scans the collection, because no index starts with one of the "
+                + "fields [b]"), indexPlan.getWarnings());
+    }
+
+    @Test
+    public void sortWithLimitWithoutAnIndexIsReported() throws ParseException {
+        IndexCatalog indexCatalog = IndexCatalog.Builder.create(new InMemoryIndexSource().add("my_table",
+                index("a_1", new Document("a", 1)),
+                index("c_1_b_1", new Document("c", 1).append("b", 1)))).build();
+        IndexPlan indexPlan = new QueryConverter("select * from my_table where a = 1 order by b desc limit 10")
+                .plan(indexCatalog);
+        assertEquals("a_1", indexPlan.getIndex().getName());
+        assertEquals(Arrays.asList("ORDER BY {\"b\": -1} with LIMIT 10 on my_table sorts the matching documents in "
+                + "memory, because no index has the sort keys after the keys of the equality conditions"),
+                indexPlan.getWarnings());
+
+        assertEquals(Collections.emptyList(), new QueryConverter("select * from my_table where a = 1 order by b desc")
+                .plan(indexCatalog).getWarnings());
+        assertEquals(Collections.emptyList(), new QueryConverter("select count(*) from my_table where a = 1")
+                .plan(indexCatalog).getWarnings());
+
+        indexPlan = new QueryConverter("select * from my_table where c = 1 order by b desc limit 10")
+                .plan(indexCatalog);
+        assertEquals("c_1_b_1", indexPlan.getIndex().getName());
+        assertEquals(Collections.emptyList(), indexPlan.getWarnings());
+    }
+
+    @Test
+    public void sortWithLimitIsReportedWhenTheChosenIndexDoesNotCoverIt() throws ParseException {
+        IndexCatalog indexCatalog = IndexCatalog.Builder.create(new InMemoryIndexSource().add("my_table",
+                index("a_1", new Document("a", 1)),
+                index("b_1", new Document("b", 1)))).build();
+        IndexPlan indexPlan = new QueryConverter("select * from my_table where a = 1 order by b limit 10")
+                .plan(indexCatalog);
+        assertEquals("a_1", indexPlan.getIndex().getName());
+        assertEquals(Arrays.asList("ORDER BY {\"b\": 1} with LIMIT 10 on my_table sorts the matching documents in "
+                + "memory, because the chosen index a_1 doesn't have the sort keys after the keys of the equality "
+                + "conditions, b_1 has them but fits fewer conditions"), indexPlan.getWarnings());
+
+        indexPlan = new QueryConverter("select * from my_table where c = 1 order by b limit 10").plan(indexCatalog);
+        assertEquals("b_1", indexPlan.getIndex().getName());
+        assertEquals(Collections.emptyList(), indexPlan.getWarnings());
+    }
+
+    @Test
+    public void sortDirectionsMustAllMatchOrAllBeReversed() throws ParseException {
+        IndexCatalog indexCatalog = IndexCatalog.Builder.create(new InMemoryIndexSource().add("my_table",
+                index("a_1_b_-1", new Document("a", 1).append("b", -1)))).build();
+        assertEquals("a_1_b_-1", new QueryConverter("select * from my_table order by a desc, b asc limit 1")
+                .plan(indexCatalog).getIndex().getName());
+        IndexPlan indexPlan = new QueryConverter("select * from my_table order by a, b limit 1").plan(indexCatalog);
+        assertNull(indexPlan.getIndex());
+        assertFalse(indexPlan.getWarnings().isEmpty());
+    }
+
+    private static Document index(String name, Document keys) {
+        return new Document("v", 2).append("key", keys).append("name", name);
+    }
+
+    private static final class InMemoryIndexSource implements IndexSource {
+        private final Map<String, List<Document>> collections = new HashMap<>();
+        private final List<String> calls = new ArrayList<>();
+
+        private InMemoryIndexSource add(String collectionName, Document... indexes) {
+            collections.put(collectionName, Arrays.asList(indexes));
+            return this;
+        }
+
+        @Override
+        public Iterable<Document> listIndexes(String collectionName) {
+            calls.add(collectionName);
+            List<Document> indexes = collections.get(collectionName);
+            return indexes != null ? indexes : new ArrayList<Document>();
+        }
+    }
+}
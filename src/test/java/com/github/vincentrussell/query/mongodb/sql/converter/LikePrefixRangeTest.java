@@ -0,0 +1,94 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import com.github.vincentrussell.query.mongodb.sql.converter.util.RegexTranslator;
+import org.bson.Document;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LikePrefixRangeTest {
+
+    @Before
+    public void before() {
+        System.setProperty(QueryConverter.D_LIKE_PREFIX_RANGE, "true");
+    }
+
+    @After
+    public void after() {
+        System.clearProperty(QueryConverter.D_LIKE_PREFIX_RANGE);
+        System.clearProperty(QueryConverter.D_LIKE_PREFIX_RANGE_KEEP_REGEX);
+    }
+
+    @Test
+    public void prefixLikeBecomesARange() throws ParseException {
+        assertEquals(new Document("value", new Document("$gte", "abc").append("$lt", "abd")), query("abc%"));
+        assertEquals(new Document("value", new Document("$gte", "ab z").append("$lt", "ab {")), query("ab z%%"));
+    }
+
+    @Test
+    public void otherPatternsStayRegularExpressions() throws ParseException {
+        for (String like : Arrays.asList("%abc", "%abc%", "a_c%", "[a-c]%", "a%c%", "a.c%", "a+%", "abc", "%",
+                "ab\uFFFF%", "ab\uD83D\uDE00%")) {
+            assertEquals(like, new Document("value", new Document("$regex", RegexTranslator.likeToRegex(like))),
+                    query(like));
+        }
+    }
+
+    @Test
+    public void regexCanBeKept() throws ParseException {
+        System.setProperty(QueryConverter.D_LIKE_PREFIX_RANGE_KEEP_REGEX, "true");
+        assertEquals(new Document("value", new Document("$gte", "abc").append("$lt", "abd")
+                .append("$regex", "^abc.*$")), query("abc%"));
+    }
+
+    @Test
+    public void disabledByDefault() throws ParseException {
+        System.clearProperty(QueryConverter.D_LIKE_PREFIX_RANGE);
+        assertEquals(new Document("value", new Document("$regex", "^abc.*$")), query("abc%"));
+    }
+
+    @Test
+    public void rangeMatchesTheSameStringsAsTheRegex() {
+        String[] values = {"ab", "abc", "abcd", "abc\u00E9", "abd", "abb\uFFFF", "abc\uD83D\uDE00", "ABC", "abcabc",
+                "ab\uD7FFx", "ab\uE000", "\u00E9t\u00E9"};
+        for (String like : Arrays.asList("abc%", "ab%", "ab\uD7FF%", "\u00E9%")) {
+            String prefix = RegexTranslator.getLikePrefix(like);
+            String upperBound = RegexTranslator.getPrefixUpperBound(prefix);
+            Pattern pattern = Pattern.compile(RegexTranslator.likeToRegex(like));
+            for (String value : values) {
+                boolean inRange = compareCodePoints(value, prefix) >= 0 && compareCodePoints(value, upperBound) < 0;
+                assertEquals(like + " " + value, pattern.matcher(value).matches(), inRange);
+            }
+        }
+        assertEquals("ab\uE000", RegexTranslator.getPrefixUpperBound("ab\uD7FF"));
+        assertNull(RegexTranslator.getLikePrefix("%"));
+        assertTrue(compareCodePoints("ab\uD83D\uDE00", "ab\uE000") > 0);
+    }
+
+    private static Document query(String like) throws ParseException {
+        return new QueryConverter("select * from my_table where value like '" + like + "'").getMongoQuery().getQuery();
+    }
+
+    //the order of utf-8 bytes that mongo compares strings by
+    private static int compareCodePoints(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int ca = a.codePointAt(i);
+            int cb = b.codePointAt(j);
+            if (ca != cb) {
+                return ca < cb ? -1 : 1;
+            }
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+        }
+        return (a.length() - i) - (b.length() - j);
+    }
+}
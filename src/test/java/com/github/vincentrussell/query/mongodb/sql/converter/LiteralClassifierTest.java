@@ -0,0 +1,141 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import com.github.vincentrussell.query.mongodb.sql.converter.util.LiteralClassifier;
+import com.github.vincentrussell.query.mongodb.sql.converter.util.SqlUtils;
+import net.sf.jsqlparser.schema.Column;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LiteralClassifierTest {
+
+    private static final List<String> LITERALS = Arrays.asList("", " ", "0", "1", "-1", "+1", "-", "+", "007",
+            "9223372036854775807", "9223372036854775808", "-9223372036854775808", "-9223372036854775809",
+            "99999999999999999999", "\u0661\u0662", "1.5", "-1.5", ".5", "5.", ".", "1e3", "1E-3", "1e", "1e+",
+            "1.e5", "1.5f", "1.5D", "1.5x", "1d", "1ff", " 1.5 ", "\t2\n", " 1", "NaN", "-NaN", "NaNd", "Infinity",
+            "-Infinity", "+Infinity ", "infinity", "0x1p3", "0X1.8P1", "-0x.8p1", "0x1", "0x.p1", "0x1p", "0x1p3f",
+            "0xg", "1,5", "1_000", "true", "TRUE", "False", "fAlSe", "yes", "truee", "t", "abc", "'quoted'",
+            "it''s", "''''", "2016-12-12", "20161212", "2016-12-12T10:11:12.000Z", "2016-12-12t10:11:12.000z",
+            "2016-12-12T10:11:12.000+05:30", "+2016-12-12", "-2016-12-12", "2016-13-12", "2016-12-12 ",
+            "2016/12/12", "12-12-2016", "2016-12-12T10:11:12");
+
+    private static final Pattern SURROUNDED_IN_QUOTES = Pattern.compile("^\"(.+)*\"$");
+    private static final List<DateTimeFormatter> FORMATTERS = Arrays.asList(ISODateTimeFormat.dateTime(),
+            DateTimeFormat.forPattern("yyyy-MM-dd"), DateTimeFormat.forPattern("yyyyMMdd"));
+
+    @Test
+    public void numbersAreParsedLikeTheJdk() {
+        for (String literal : getLiterals()) {
+            assertEquals(literal, jdkNumber(literal), LiteralClassifier.parseNumber(literal));
+        }
+    }
+
+    @Test
+    public void booleans() {
+        for (String literal : getLiterals()) {
+            Boolean expected = literal.equalsIgnoreCase("true") || literal.equalsIgnoreCase("false")
+                    ? Boolean.valueOf(literal) : null;
+            assertEquals(literal, expected, LiteralClassifier.parseBoolean(literal));
+        }
+    }
+
+    @Test
+    public void stringsThatAreNotDatesAreRuledOut() {
+        for (String literal : getLiterals()) {
+            if (!LiteralClassifier.mayBeFormattedDate(literal)) {
+                for (DateTimeFormatter formatter : FORMATTERS) {
+                    try {
+                        formatter.parseDateTime(literal);
+                        throw new AssertionError(literal + " is a date");
+                    } catch (IllegalArgumentException e) {
+                        //expected
+                    }
+                }
+            }
+        }
+        assertTrue(LiteralClassifier.mayBeFormattedDate("2016-12-12T10:11:12.000Z"));
+        assertFalse(LiteralClassifier.mayBeFormattedDate("45 days ago"));
+    }
+
+    @Test
+    public void quotedColumnNames() {
+        for (String name : Arrays.asList("column", "\"column\"", "\"a b\"", "\"\"", "\"", "\"a", "a\"", "\"a\nb\"",
+                "\"a\u2028b\"", "\"a\"b\"", "t.\"column\"")) {
+            Matcher matcher = SURROUNDED_IN_QUOTES.matcher(name);
+            String expected = matcher.matches() ? matcher.group(1) : name;
+            assertEquals(name, expected, LiteralClassifier.unquote(name));
+            assertEquals(name, expected, SqlUtils.getStringValue(new Column(name)));
+        }
+    }
+
+    @Test
+    public void normalizedValuesAreUnchanged() throws ParseException {
+        for (String literal : getLiterals()) {
+            for (FieldType fieldType : Arrays.asList(FieldType.UNKNOWN, FieldType.STRING, FieldType.NUMBER,
+                    FieldType.BOOLEAN)) {
+                assertEquals(literal + " " + fieldType, referenceNormalizeValue(literal, fieldType),
+                        normalizeValue(literal, fieldType));
+            }
+        }
+    }
+
+    private static Object normalizeValue(String value, FieldType fieldType) {
+        try {
+            return SqlUtils.normalizeValue(value, fieldType);
+        } catch (ParseException e) {
+            return e.getMessage();
+        }
+    }
+
+    //normalizeValue before the literals were classified by scanning their characters
+    private static Object referenceNormalizeValue(String value, FieldType fieldType) {
+        if (FieldType.UNKNOWN.equals(fieldType)) {
+            return value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false") ? Boolean.valueOf(value) : value;
+        } else if (FieldType.STRING.equals(fieldType)) {
+            return value.replaceAll("''", "'");
+        } else if (FieldType.NUMBER.equals(fieldType)) {
+            Object number = jdkNumber(value);
+            return number != null ? number : "could not convert " + value + " to number";
+        }
+        return Boolean.valueOf(value);
+    }
+
+    private static Number jdkNumber(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e1) {
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e2) {
+                return null;
+            }
+        }
+    }
+
+    private static List<String> getLiterals() {
+        List<String> literals = new ArrayList<>(LITERALS);
+        Random random = new Random(42);
+        String alphabet = "0123456789+-.eExXpPfFdDaN ";
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder stringBuilder = new StringBuilder();
+            int length = 1 + random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                stringBuilder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            literals.add(stringBuilder.toString());
+        }
+        return literals;
+    }
+}
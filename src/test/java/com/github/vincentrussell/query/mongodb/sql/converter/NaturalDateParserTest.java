@@ -0,0 +1,45 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import com.github.vincentrussell.query.mongodb.sql.converter.util.NaturalDateParser;
+import com.joestelmach.natty.Parser;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class NaturalDateParserTest {
+
+    private static final long TOLERANCE_MILLIS = 5 * 1000;
+
+    @Test
+    public void sameDatesAsNatty() {
+        for (String text : Arrays.asList("now", "today", "TODAY", "yesterday", "tomorrow", "45 days ago",
+                "5000 days ago", "9999 days ago", "10000 days ago", "0 days ago", "01 days ago", "1 day ago",
+                " 45  DAYS ago ", "2 weeks ago", "3 months ago", "13 months ago", "1 year ago", "100 years ago",
+                "10 minutes ago", "2 hours ago", "30 seconds ago", "1 sec ago", "2 mins ago", "2 hrs ago",
+                "2 wks ago", "2 yrs ago", "2 mon ago", "in 3 days", "in 2 months", "3 days from now",
+                "3 weeks from now", "a day ago", "one day ago", "-3 days ago", "last monday", "next friday",
+                "today at noon", "yesterday 5pm", "45 days", "2016-12-12")) {
+            Date expected = new Parser().parse(text).get(0).getDates().get(0);
+            Date actual = NaturalDateParser.parse(text);
+            assertTrue(text + ": expected " + expected + " but was " + actual,
+                    Math.abs(expected.getTime() - actual.getTime()) < TOLERANCE_MILLIS);
+        }
+    }
+
+    @Test
+    public void unparseableTextIsRejectedEveryTime() {
+        for (int i = 0; i < 2; i++) {
+            try {
+                NaturalDateParser.parse("quarter hour ago");
+                fail("expected IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+                assertEquals("could not natural language date: quarter hour ago", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import com.google.common.collect.ImmutableMap;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PreciseFieldTypeTest {
+
+    private static final String OBJECT_ID = "53102b43bf1044ed8b0ba36b";
+    private static final String UUID_STRING = "3b241101-e2bb-4255-8caf-4136c566a962";
+
+    private static final Map<String, FieldType> FIELD_TYPES = ImmutableMap.<String, FieldType>builder()
+            .put("int32", FieldType.INT32)
+            .put("int64", FieldType.INT64)
+            .put("ratio", FieldType.DOUBLE)
+            .put("decimal", FieldType.DECIMAL128)
+            .put("ref", FieldType.OBJECTID)
+            .put("uuid", FieldType.UUID)
+            .build();
+
+    @Test
+    public void literalsHaveTheExactBsonType() throws ParseException {
+        QueryConverter queryConverter = new QueryConverter("select * from my_table where int32 = '5' and int64 = 6 "
+                + "and ratio = 7 and decimal = '0.1' and ref = '" + OBJECT_ID + "' and uuid = '" + UUID_STRING + "'",
+                FIELD_TYPES);
+        List<?> and = queryConverter.getMongoQuery().getQuery().get("$and", List.class);
+        assertEquals(Arrays.asList(new Document("int32", 5), new Document("int64", 6L), new Document("ratio", 7.0),
+                new Document("decimal", new Decimal128(new BigDecimal("0.1"))),
+                new Document("ref", new ObjectId(OBJECT_ID)), new Document("uuid", UUID.fromString(UUID_STRING))),
+                and);
+        assertEquals(Integer.class, ((Document) and.get(0)).get("int32").getClass());
+    }
+
+    @Test
+    public void inListsHaveTheExactBsonType() throws ParseException {
+        QueryConverter queryConverter = new QueryConverter("select * from my_table where int32 in (1, '2', 3) "
+                + "and ref not in ('" + OBJECT_ID + "')", FIELD_TYPES);
+        assertEquals(new Document("$and", Arrays.asList(
+                new Document("int32", new Document("$in", Arrays.asList(1, 2, 3))),
+                new Document("ref", new Document("$nin", Arrays.asList(new ObjectId(OBJECT_ID)))))),
+                queryConverter.getMongoQuery().getQuery());
+    }
+
+    @Test
+    public void valuesThatDoNotFitAreRejected() {
+        for (String where : Arrays.asList("int32 = 3000000000", "int32 = '1.5'", "int64 = 'abc'",
+                "int32 in (1, 3000000000)", "decimal = 'abc'", "ref = 'abc'", "uuid = 'abc'")) {
+            try {
+                new QueryConverter("select * from my_table where " + where, FIELD_TYPES);
+                fail(where + " should not convert");
+            } catch (ParseException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("could not convert")
+                        || e.getMessage().contains("too large"));
+            }
+        }
+    }
+
+    @Test
+    public void boundValuesHaveTheExactBsonType() throws ParseException {
+        PreparedQuery preparedQuery = QueryConverter.prepare(
+                "select * from my_table where int32 = ? and decimal = ?", FIELD_TYPES);
+        assertEquals(new Document("$and", Arrays.asList(new Document("int32", 5),
+                new Document("decimal", new Decimal128(new BigDecimal("2.50"))))),
+                preparedQuery.bind(5L, new BigDecimal("2.50")).getMongoQuery().getQuery());
+    }
+
+    @Test
+    public void joinVariablesAreFieldReferences() throws ParseException {
+        QueryConverter queryConverter = new QueryConverter("select t1.column1 from my_table as t1 "
+                + "join my_table2 as t2 on t1.ref = t2.ref where t2.int32 = '5'", FIELD_TYPES);
+        Document lookup = queryConverter.getMongoQuery().getJoinPipeline().get(0).get("$lookup", Document.class);
+        assertEquals(new Document("ref", "$ref"), lookup.get("let"));
+        Document match = (Document) lookup.get("pipeline", List.class).get(0);
+        assertEquals(new Document("int32", 5), match.get("$match", Document.class).get("$and", List.class).get(1));
+    }
+}
@@ -0,0 +1,187 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import com.google.common.collect.ImmutableMap;
+import org.bson.Document;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+public class PreparedQueryTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void positionalParameters() throws ParseException {
+        PreparedQuery preparedQuery = QueryConverter.prepare("select * from my_table where value = ? and name <> ?");
+        assertEquals(2, preparedQuery.getParameterCount());
+        MongoDBQueryHolder mongoDBQueryHolder = preparedQuery.bind(1L, "joe").getMongoQuery();
+        assertEquals("my_table", mongoDBQueryHolder.getCollection());
+        assertEquals(new Document("$and", Arrays.asList(new Document("value", 1L),
+                new Document("name", new Document("$ne", "joe")))), mongoDBQueryHolder.getQuery());
+    }
+
+    @Test
+    public void boundValuesMatchLiterals() throws ParseException {
+        String sql = "select * from my_table where value >= ? and active = ? and name in (?, ?)";
+        MongoDBQueryHolder bound = QueryConverter.prepare(sql).bind(5L, "true", "a", "b").getMongoQuery();
+        MongoDBQueryHolder literal = new QueryConverter(
+                "select * from my_table where value >= 5 and active = true and name in ('a', 'b')").getMongoQuery();
+        assertEquals(literal.getQuery(), bound.getQuery());
+    }
+
+    @Test
+    public void namedParameters() throws ParseException {
+        PreparedQuery preparedQuery = QueryConverter.prepare("select * from my_table where value = :value or other = :value");
+        assertEquals(0, preparedQuery.getParameterCount());
+        assertEquals(Collections.singleton("value"), preparedQuery.getParameterNames());
+        assertEquals(new Document("$or", Arrays.asList(new Document("value", "x"), new Document("other", "x"))),
+                preparedQuery.bind(ImmutableMap.of("value", "x")).getMongoQuery().getQuery());
+    }
+
+    @Test
+    public void boundValuesAreNormalizedWithTheFieldType() throws ParseException {
+        PreparedQuery preparedQuery = QueryConverter.prepare("select * from my_table where value = ? and created > ?",
+                ImmutableMap.of("value", FieldType.NUMBER, "created", FieldType.DATE));
+        Date date = new Date(0);
+        assertEquals(new Document("$and", Arrays.asList(new Document("value", 12L),
+                new Document("created", new Document("$gt", date)))),
+                preparedQuery.bind("12", date).getMongoQuery().getQuery());
+    }
+
+    @Test
+    public void limitAndOffsetParameters() throws ParseException {
+        PreparedQuery preparedQuery = QueryConverter.prepare("select * from my_table where value = ? limit ? offset ?");
+        MongoDBQueryHolder mongoDBQueryHolder = preparedQuery.bind(1L, 10, 20).getMongoQuery();
+        assertEquals(10, mongoDBQueryHolder.getLimit());
+        assertEquals(20, mongoDBQueryHolder.getOffset());
+    }
+
+    @Test
+    public void parametersInJoinPipeline() throws ParseException {
+        String sql = "select t1.column1, t2.column2 from my_table as t1 inner join my_table2 as t2 on t1.column = t2.column "
+                + "where t1.value = ? and t2.value = ?";
+        MongoDBQueryHolder bound = QueryConverter.prepare(sql).bind(1L, "abc").getMongoQuery();
+        MongoDBQueryHolder literal = new QueryConverter(sql.replaceFirst("\\?", "1").replaceFirst("\\?", "'abc'"))
+                .getMongoQuery();
+        assertEquals(literal.getJoinPipeline(), bound.getJoinPipeline());
+        assertEquals(literal.getQuery(), bound.getQuery());
+        assertTrue(bound.getJoinPipeline().toString().contains("abc"));
+    }
+
+    @Test
+    public void nullValue() throws ParseException {
+        assertEquals(new Document("value", null),
+                QueryConverter.prepare("select * from my_table where value = ?").bind((Object) null).getMongoQuery().getQuery());
+    }
+
+    @Test
+    public void bindingDoesNotChangeThePreparedQuery() throws ParseException {
+        PreparedQuery preparedQuery = QueryConverter.prepare("select * from my_table where value = ?");
+        MongoDBQueryHolder first = preparedQuery.bind(1L).getMongoQuery();
+        first.getQuery().put("value", 3L);
+        assertEquals(new Document("value", 2L), preparedQuery.bind(2L).getMongoQuery().getQuery());
+        assertEquals(new Document("value", 3L), first.getQuery());
+    }
+
+    @Test
+    public void writeBoundQuery() throws ParseException, IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        QueryConverter.prepare("select * from my_table where value = ?").bind("abc").write(byteArrayOutputStream);
+        assertEquals("db.my_table.find({\n" +
+                "  \"value\": \"abc\"\n" +
+                "})", byteArrayOutputStream.toString("UTF-8"));
+    }
+
+    @Test
+    public void wrongNumberOfParameters() throws ParseException {
+        expectedException.expect(ParseException.class);
+        expectedException.expectMessage("expected 2 positional parameter(s) but got 1");
+        QueryConverter.prepare("select * from my_table where value = ? and other = ?").bind(1L);
+    }
+
+    @Test
+    public void likeParametersAreRejected() throws ParseException {
+        expectedException.expect(ParseException.class);
+        expectedException.expectMessage("parameters are not supported in a LIKE ?");
+        QueryConverter.prepare("select * from my_table where a like ? and b = ?");
+    }
+
+    @Test
+    public void namedLikeParametersAreRejected() throws ParseException {
+        expectedException.expect(ParseException.class);
+        expectedException.expectMessage("parameters are not supported in a LIKE :p");
+        QueryConverter.prepare("select * from my_table where a like :p");
+    }
+
+    @Test
+    public void functionArgumentParametersAreRejected() throws ParseException {
+        expectedException.expect(ParseException.class);
+        expectedException.expectMessage("parameters are not supported in the arguments of regexMatch(a, ?)");
+        QueryConverter.prepare("select * from my_table where regexMatch(a, ?) = true");
+    }
+
+    @Test
+    public void parameterOnTheLeftIsRejected() throws ParseException {
+        expectedException.expect(ParseException.class);
+        expectedException.expectMessage("must be on the right side of the comparison");
+        QueryConverter.prepare("select * from my_table where ? = a");
+    }
+
+    @Test
+    public void parameterComparedToAFunctionIsRejected() throws ParseException {
+        expectedException.expect(ParseException.class);
+        expectedException.expectMessage("the parameter in objectId('_id') = ? can only be compared to a field");
+        QueryConverter.prepare("select * from my_table where objectId('_id') = ?");
+    }
+
+    @Test
+    public void parameterThatIsNotConvertedIsRejected() throws ParseException {
+        expectedException.expect(ParseException.class);
+        expectedException.expectMessage("the parameter ? at position 2 can not be bound");
+        QueryConverter.prepare("select * from my_table where value = ? limit ?, ?");
+    }
+
+    @Test
+    public void parameterCountIsTheNumberOfPlaceholders() throws ParseException {
+        assertEquals(3, QueryConverter.prepare("select * from my_table where a between ? and ? limit ?")
+                .getParameterCount());
+        assertEquals(2, QueryConverter.prepare("select * from my_table where a not in (?, ?)").getParameterCount());
+    }
+
+    @Test
+    public void negativeLimitIsRejected() throws ParseException {
+        expectedException.expect(ParseException.class);
+        expectedException.expectMessage("must be bound to an integer from 0 to 2147483647 but was -1");
+        QueryConverter.prepare("select * from my_table limit ?").bind(-1);
+    }
+
+    @Test
+    public void negativeOffsetIsRejected() throws ParseException {
+        expectedException.expect(ParseException.class);
+        expectedException.expectMessage("must be bound to an integer from 0 to 2147483647 but was -5");
+        QueryConverter.prepare("select * from my_table limit ? offset ?").bind(10, -5L);
+    }
+
+    @Test
+    public void limitAboveIntegerRangeIsRejected() throws ParseException {
+        expectedException.expect(ParseException.class);
+        expectedException.expectMessage("but was 2147483648");
+        QueryConverter.prepare("select * from my_table limit ?").bind(2147483648L);
+    }
+
+    @Test
+    public void missingNamedParameter() throws ParseException {
+        expectedException.expect(ParseException.class);
+        expectedException.expectMessage("no value bound for parameter :value");
+        QueryConverter.prepare("select * from my_table where value = :value").bind(ImmutableMap.of("other", 1L));
+    }
+}
@@ -0,0 +1,127 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ProjectionPushdownTest {
+
+    @After
+    public void after() {
+        System.clearProperty(QueryConverter.D_PROJECTION_PUSHDOWN);
+    }
+
+    @Test
+    public void pipelineIsUnchangedByDefault() throws ParseException {
+        assertEquals(Arrays.asList("$match", "$sort", "$limit", "$project"),
+                stages("select a, b as bb from my_table where c = 1 order by d limit 3"));
+    }
+
+    @Test
+    public void projectionAfterMatch() throws ParseException {
+        System.setProperty(QueryConverter.D_PROJECTION_PUSHDOWN, "true");
+        QueryPlan queryPlan = new QueryConverter("select a, b as bb from my_table where c = 1 order by d limit 3")
+                .compile();
+        assertEquals(Arrays.asList("$match", "$project", "$sort", "$limit", "$project"), stages(queryPlan));
+        assertEquals(new Document("a", 1).append("b", 1).append("d", 1), earlyProjection(queryPlan));
+    }
+
+    @Test
+    public void joinKeepsTheFieldsOfTheConditionsAndNotTheJoinedDocument() throws ParseException {
+        System.setProperty(QueryConverter.D_PROJECTION_PUSHDOWN, "true");
+        QueryPlan queryPlan = new QueryConverter("select t1.a, t2.b from my_table as t1 inner join other_table as t2 "
+                + "on t1.x = t2.y where t1.c = 1 and t2.d = 2 order by t1.e.f").compile();
+        assertEquals(Arrays.asList("$match", "$project", "$lookup", "$unwind", "$sort", "$project"),
+                stages(queryPlan));
+        assertEquals(new Document("a", 1).append("e", 1).append("x", 1), earlyProjection(queryPlan));
+
+        queryPlan = new QueryConverter("select t1.a, count(t2.b) from my_table as t1 inner join other_table as t2 "
+                + "on t1.x = t2.y group by t1.a").compile();
+        assertEquals(Arrays.asList("$project", "$lookup", "$unwind", "$group", "$project"), stages(queryPlan));
+        assertEquals(new Document("a", 1).append("x", 1), earlyProjection(queryPlan));
+    }
+
+    @Test
+    public void groupDirectlyAfterMatchIsUnchanged() throws ParseException {
+        System.setProperty(QueryConverter.D_PROJECTION_PUSHDOWN, "true");
+        assertEquals(Arrays.asList("$match", "$group", "$sort", "$project"),
+                stages("select a, sum(b) from my_table where c = 1 group by a order by a"));
+    }
+
+    @Test
+    public void writeShowsTheProjection() throws Exception {
+        System.setProperty(QueryConverter.D_PROJECTION_PUSHDOWN, "true");
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        new QueryConverter("select a as aa from my_table where c = 1 order by d limit 3")
+                .write(byteArrayOutputStream);
+        assertTrue(byteArrayOutputStream.toString("UTF-8").contains(
+                "\"$project\": {\n    \"a\": 1,\n    \"d\": 1\n  }\n},{\n  \"$sort\""));
+    }
+
+    @Test
+    public void pipelinesThatReadWholeDocumentsAreUnchanged() {
+        List<Document> selectAll = Arrays.asList(new Document("$match", new Document("c", 1)),
+                new Document("$lookup", new Document("from", "other_table").append("localField", "x")
+                        .append("foreignField", "y").append("as", "t2")),
+                new Document("$project", new Document()));
+        assertSame(selectAll, ProjectionPushdown.pushDown(selectAll));
+
+        List<Document> exclusion = Arrays.asList(new Document("$match", new Document("c", 1)),
+                new Document("$sort", new Document("d", 1)),
+                new Document("$project", new Document("_id", 0).append("b", 0)));
+        assertSame(exclusion, ProjectionPushdown.pushDown(exclusion));
+
+        List<Document> root = Arrays.asList(new Document("$match", new Document("c", 1)),
+                new Document("$sort", new Document("d", 1)),
+                new Document("$group", new Document("_id", "$a").append("first", new Document("$first", "$$ROOT"))));
+        assertSame(root, ProjectionPushdown.pushDown(root));
+
+        List<Document> text = Arrays.asList(new Document("$match", new Document("c", 1)),
+                new Document("$match", new Document("$text", new Document("$search", "word"))),
+                new Document("$project", new Document("a", 1)));
+        assertSame(text, ProjectionPushdown.pushDown(text));
+
+        List<Document> noProjection = Arrays.asList(new Document("$match", new Document("c", 1)),
+                new Document("$sort", new Document("d", 1)));
+        assertSame(noProjection, ProjectionPushdown.pushDown(noProjection));
+    }
+
+    @Test
+    public void countOnlyKeepsTheId() {
+        List<Document> pipeline = ProjectionPushdown.pushDown(Arrays.asList(new Document("$match", new Document()),
+                new Document("$skip", 10), new Document("$group", new Document("_id", null)
+                        .append("count", new Document("$sum", 1)))));
+        assertEquals(new Document("$project", new Document("_id", 1)), pipeline.get(1));
+    }
+
+    private static List<String> stages(String sql) throws ParseException {
+        return stages(new QueryConverter(sql).compile());
+    }
+
+    private static List<String> stages(QueryPlan queryPlan) {
+        List<String> stages = new ArrayList<>();
+        for (RawBsonDocument stage : queryPlan.getPipeline()) {
+            stages.add(stage.getFirstKey());
+        }
+        return stages;
+    }
+
+    private static Document earlyProjection(QueryPlan queryPlan) {
+        for (RawBsonDocument stage : queryPlan.getPipeline()) {
+            if ("$project".equals(stage.getFirstKey())) {
+                return Document.parse(stage.getDocument("$project").toJson());
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class QueryConverterBatchTest {
+
+    private static final String[] STATEMENTS = {
+            "select * from my_table where value = %d",
+            "select column1, column2 from my_table where value > %d and name like 'abc%%' order by column1 desc limit 10",
+            "select count(*) from my_table where value in (%d, 2, 3) or active = true",
+            "select column1, count(column2) from my_table where value <> %d group by column1",
+            "select t1.column1, t2.column2 from my_table as t1 inner join my_table2 as t2 on t1.column = t2.column where t1.value = %d",
+            "select * from my_table where date(column, 'YYYY-MM-DD') >= '2016-12-12' and value = %d",
+            "delete from my_table where value = %d"
+    };
+
+    @Test
+    public void resultsAreInInputOrderAndMatchSequentialConversion() throws Exception {
+        List<String> sqls = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            sqls.add(String.format(STATEMENTS[i % STATEMENTS.length], i));
+        }
+        List<BatchConversionResult> results = QueryConverter.convertAll(sqls,
+                BatchConversionOptions.Builder.create().parallelism(4).writeShellText(true).build());
+        assertEquals(sqls.size(), results.size());
+        for (int i = 0; i < sqls.size(); i++) {
+            BatchConversionResult result = results.get(i);
+            assertEquals(i, result.getIndex());
+            assertEquals(sqls.get(i), result.getSql());
+            assertTrue(result.getSql() + ": " + result.getParseException(), result.isSuccess());
+            QueryConverter expected = new QueryConverter(sqls.get(i));
+            assertEquals(expected.getMongoQuery().getQuery(), result.getMongoQuery().getQuery());
+            assertEquals(expected.getMongoQuery().getJoinPipeline(), result.getMongoQuery().getJoinPipeline());
+            assertNotNull(result.getShellText());
+        }
+    }
+
+    @Test
+    public void parseExceptionsDoNotStopTheBatch() throws Exception {
+        List<BatchConversionResult> results = QueryConverter.convertAll(Arrays.asList(
+                "select * from my_table where value = 1",
+                "select * from my_table where value == 1",
+                "select * from my_table where value = 2"),
+                BatchConversionOptions.Builder.create().build());
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertNull(results.get(1).getMongoQuery());
+        assertNotNull(results.get(1).getParseException());
+        assertTrue(results.get(2).isSuccess());
+        assertNull(results.get(2).getShellText());
+    }
+
+    @Test
+    public void callerOwnedExecutorAndCache() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(3);
+        try {
+            QueryConverterCache cache = QueryConverterCache.Builder.create().maximumSize(10).build();
+            List<String> sqls = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                sqls.add("select * from my_table where value = " + (i % 2));
+            }
+            List<BatchConversionResult> results = QueryConverter.convertAll(sqls, BatchConversionOptions.Builder.create()
+                    .executorService(executorService)
+                    .defaultFieldType(FieldType.STRING)
+                    .queryConverterCache(cache).build());
+            assertEquals("1", results.get(19).getMongoQuery().getQuery().get("value"));
+            assertEquals(2, cache.size());
+            assertEquals(20, cache.getHitCount() + cache.getMissCount());
+            assertFalse(executorService.isShutdown());
+        } finally {
+            executorService.shutdown();
+        }
+    }
+}
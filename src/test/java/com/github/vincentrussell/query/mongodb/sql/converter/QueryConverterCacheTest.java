@@ -0,0 +1,125 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import com.google.common.collect.ImmutableMap;
+import org.bson.Document;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class QueryConverterCacheTest {
+
+    @Test
+    public void sameSqlReturnsCachedConverter() throws ParseException {
+        QueryConverterCache cache = QueryConverterCache.Builder.create().maximumSize(10).build();
+        QueryConverter first = cache.get("select * from my_table where value = 1");
+        QueryConverter second = cache.get("select * from my_table where value = 1");
+        assertSame(first, second);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(new Document("value", 1L), second.getMongoQuery().getQuery());
+    }
+
+    @Test
+    public void fieldTypeMappingIsPartOfTheKey() throws ParseException {
+        QueryConverterCache cache = QueryConverterCache.Builder.create().maximumSize(10).build();
+        String sql = "select * from my_table where value = 1";
+        Map<String, FieldType> mapping = new HashMap<>();
+        mapping.put("value", FieldType.STRING);
+        QueryConverter unknown = cache.get(sql);
+        QueryConverter string = cache.get(sql, mapping);
+        QueryConverter stringDefault = cache.get(sql, FieldType.STRING);
+        assertNotSame(unknown, string);
+        assertNotSame(string, stringDefault);
+        assertEquals(new Document("value", 1L), unknown.getMongoQuery().getQuery());
+        assertEquals(new Document("value", "1"), string.getMongoQuery().getQuery());
+        assertSame(string, cache.get(sql, ImmutableMap.of("value", FieldType.STRING)));
+        assertEquals(3, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void resolverIsPartOfTheKeyByIdentity() throws ParseException {
+        QueryConverterCache cache = QueryConverterCache.Builder.create().maximumSize(10).build();
+        String sql = "select * from my_table where value = 1";
+        FieldTypeResolver resolver = FieldTypeResolver.compile(ImmutableMap.of("value", FieldType.STRING));
+        QueryConverter string = cache.get(sql, resolver, FieldType.UNKNOWN);
+        assertEquals(new Document("value", "1"), string.getMongoQuery().getQuery());
+        assertSame(string, cache.get(sql, resolver, FieldType.UNKNOWN));
+        assertNotSame(string, cache.get(sql, FieldTypeResolver.compile(ImmutableMap.of("value", FieldType.STRING)),
+                FieldType.UNKNOWN));
+        assertNotSame(string, cache.get(sql, ImmutableMap.of("value", FieldType.STRING)));
+        assertSame(cache.get(sql), cache.get(sql, FieldTypeResolver.empty(), FieldType.UNKNOWN));
+        assertEquals(4, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+    }
+
+    @Test
+    public void cacheIsBoundedByDefault() throws ParseException {
+        QueryConverterCache cache = QueryConverterCache.Builder.create().build();
+        for (int i = 0; i <= QueryConverterCache.Builder.DEFAULT_MAXIMUM_SIZE; i++) {
+            cache.get("select * from my_table where value = " + i);
+        }
+        assertTrue(cache.size() <= QueryConverterCache.Builder.DEFAULT_MAXIMUM_SIZE);
+        assertTrue(cache.getEvictionCount() > 0);
+    }
+
+    @Test
+    public void evictsWhenMaximumSizeIsReached() throws ParseException {
+        QueryConverterCache cache = QueryConverterCache.Builder.create().maximumSize(2).build();
+        for (int i = 0; i < 5; i++) {
+            cache.get("select * from my_table where value = " + i);
+        }
+        assertTrue(cache.size() <= 2);
+        assertEquals(3, cache.getEvictionCount());
+    }
+
+    @Test
+    public void evictsWhenMaximumWeightIsReached() throws ParseException {
+        String sql = "select * from my_table where value = ";
+        QueryConverterCache cache = QueryConverterCache.Builder.create().maximumWeight(sql.length() * 5).build();
+        for (int i = 0; i < 20; i++) {
+            cache.get(sql + i);
+        }
+        assertTrue(cache.size() <= 5);
+        assertEquals(20 - cache.size(), cache.getEvictionCount());
+    }
+
+    @Test
+    public void parseExceptionIsNotCached() throws ParseException {
+        QueryConverterCache cache = QueryConverterCache.Builder.create().maximumSize(10).build();
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.get("select * from my_table where value == 1");
+                fail("expected ParseException");
+            } catch (ParseException e) {
+                assertNotNull(e.getMessage());
+            }
+        }
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void cachedQueryCanNotBeModified() throws ParseException {
+        QueryConverterCache cache = QueryConverterCache.Builder.create().maximumSize(10).build();
+        QueryConverter queryConverter = cache.get("select * from my_table where value > 1 and value < 5");
+        Document query = queryConverter.getMongoQuery().getQuery();
+        ((Document) query.get("$and", List.class).get(0)).put("value", new Document("$gt", 2L));
+        query.put("other", 1L);
+        assertEquals(new Document("$and", Arrays.asList(new Document("value", new Document("$gt", 1L)),
+                new Document("value", new Document("$lt", 5L)))),
+                cache.get("select * from my_table where value > 1 and value < 5").getMongoQuery().getQuery());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void cachedQueryHolderCanNotBeReplaced() throws ParseException {
+        QueryConverterCache cache = QueryConverterCache.Builder.create().maximumSize(10).build();
+        QueryConverter queryConverter = cache.get("select * from my_table where value = 1");
+        queryConverter.getMongoQuery().setQuery(new Document());
+    }
+}
@@ -192,6 +192,25 @@ public class QueryConverterIT {
                 "}", firstDocument.toJson(jsonWriterSettings),false);
     }
 
+    @Test
+    public void compiledPlanQuery() throws ParseException {
+        QueryPlan queryPlan = new QueryConverter("select * from "+COLLECTION+" where address.street LIKE '%Street'").compile();
+        for (int i = 0; i < 2; i++) {
+            QueryResultIterator<Document> findIterable = queryPlan.run(mongoDatabase);
+            assertEquals(7499, Lists.newArrayList(findIterable).size());
+        }
+    }
+
+    @Test
+    public void compiledPlanGroupByQuery() throws ParseException {
+        QueryConverter queryConverter = new QueryConverter("select borough, count(borough) from "+COLLECTION+" where cuisine = 'Irish' group by borough");
+        QueryResultIterator<Document> expected = queryConverter.run(mongoDatabase);
+        QueryResultIterator<Document> actual = queryConverter.compile().run(mongoDatabase);
+        assertEquals(Lists.newArrayList(expected), Lists.newArrayList(actual));
+        assertEquals(Long.valueOf(TOTAL_TEST_RECORDS_PRIMER),
+                new QueryConverter("select count(*) from "+COLLECTION).compile().<Long>run(mongoDatabase));
+    }
+
     @Test
     public void objectIdQuery() throws ParseException, JSONException {
         mongoCollection.insertOne(new Document("_id", new ObjectId("54651022bffebc03098b4567")).append("key", "value1"));
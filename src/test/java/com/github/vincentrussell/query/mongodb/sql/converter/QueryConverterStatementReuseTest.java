@@ -0,0 +1,82 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+import org.bson.Document;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+
+public class QueryConverterStatementReuseTest {
+
+    private static final String JOIN_SQL = "select t1.column1, t2.column2 from my_table as t1 join my_table2 as t2 "
+            + "on t1.column = t2.column and t2.column2 = t1.column2 where t1.value = 1 and t2.other = \"a\" "
+            + "order by t1.column1 desc";
+
+    @Test
+    public void conversionDoesNotModifyTheStatement() throws JSQLParserException, ParseException, IOException {
+        Statement statement = CCJSqlParserUtil.parse(JOIN_SQL);
+        String sqlBefore = statement.toString();
+        String expected = write(new QueryConverter(JOIN_SQL));
+        assertEquals(expected, write(convert(statement, FieldType.UNKNOWN)));
+        assertEquals(sqlBefore, statement.toString());
+        assertEquals(expected, write(convert(statement, FieldType.UNKNOWN)));
+        assertEquals(sqlBefore, statement.toString());
+    }
+
+    @Test
+    public void sameStatementWithDifferentFieldTypes() throws JSQLParserException, ParseException {
+        Statement statement = CCJSqlParserUtil.parse("select * from my_table as t where t.value = 1 order by t.value");
+        assertEquals(new Document("value", 1L), convert(statement, FieldType.UNKNOWN).getMongoQuery().getQuery());
+        assertEquals(new Document("value", "1"), convert(statement, FieldType.STRING).getMongoQuery().getQuery());
+        assertEquals(new Document("value", 1L), convert(statement, FieldType.UNKNOWN).getMongoQuery().getQuery());
+        assertEquals(new Document("value", 1), convert(statement, FieldType.STRING).getMongoQuery().getSort());
+    }
+
+    @Test
+    public void sameStatementFromManyThreads() throws Exception {
+        final String sql = "select t.column1, count(*) as c from my_table as t where t.value > 1 "
+                + "group by t.column1 order by t.column1";
+        final Statement statement = CCJSqlParserUtil.parse(sql);
+        final String expected = write(new QueryConverter(sql));
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                futures.add(executorService.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return write(convert(statement, FieldType.UNKNOWN));
+                    }
+                }));
+            }
+            for (Future<String> future : futures) {
+                assertEquals(expected, future.get());
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        assertEquals(CCJSqlParserUtil.parse(sql).toString(), statement.toString());
+    }
+
+    private static QueryConverter convert(Statement statement, FieldType defaultFieldType) throws ParseException {
+        return new QueryConverter(statement, Collections.<String, FieldType>emptyMap(), defaultFieldType);
+    }
+
+    private static String write(QueryConverter queryConverter) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        queryConverter.write(byteArrayOutputStream);
+        return byteArrayOutputStream.toString("UTF-8");
+    }
+}
@@ -0,0 +1,127 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import org.bson.BsonDocument;
+import org.bson.BsonInt64;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class QueryPlanTest {
+
+    @After
+    public void after() {
+        System.clearProperty(QueryConverter.D_AGGREGATION_ALLOW_DISK_USE);
+        System.clearProperty(QueryConverter.D_AGGREGATION_BATCH_SIZE);
+    }
+
+    private static Document decode(BsonDocument bsonDocument) {
+        return new DocumentCodec().decode(bsonDocument.asBsonReader(), DecoderContext.builder().build());
+    }
+
+    @Test
+    public void findPlan() throws ParseException {
+        QueryConverter queryConverter = new QueryConverter("select column1 from my_table where value > 1 order by column1 desc limit 5 offset 10");
+        QueryPlan plan = queryConverter.compile();
+        assertEquals(QueryPlan.Operation.FIND, plan.getOperation());
+        assertEquals("my_table", plan.getCollection());
+        assertEquals(queryConverter.getMongoQuery().getQuery(), decode(plan.getFilter()));
+        assertEquals(queryConverter.getMongoQuery().getProjection(), decode(plan.getProjection()));
+        assertEquals(new Document("column1", -1), decode(plan.getSort()));
+        assertEquals(10, plan.getOffset());
+        assertEquals(5, plan.getLimit());
+        assertTrue(plan.getPipeline().isEmpty());
+    }
+
+    @Test
+    public void aggregationPlan() throws ParseException {
+        System.setProperty(QueryConverter.D_AGGREGATION_ALLOW_DISK_USE, "true");
+        System.setProperty(QueryConverter.D_AGGREGATION_BATCH_SIZE, "50");
+        QueryConverter queryConverter = new QueryConverter("select borough, count(borough) from my_table where cuisine = 'Irish' group by borough");
+        QueryPlan plan = queryConverter.compile();
+        System.setProperty(QueryConverter.D_AGGREGATION_BATCH_SIZE, "10");
+        assertEquals(QueryPlan.Operation.AGGREGATE, plan.getOperation());
+        List<Document> pipeline = new ArrayList<>();
+        for (RawBsonDocument stage : plan.getPipeline()) {
+            pipeline.add(decode(stage));
+        }
+        assertEquals(Arrays.asList(new Document("$match", new Document("cuisine", "Irish")),
+                new Document("$group", queryConverter.getMongoQuery().getProjection()),
+                new Document("$project", queryConverter.getMongoQuery().getAliasProjection())), pipeline);
+        assertEquals(Boolean.TRUE, plan.getAllowDiskUse());
+        assertEquals(Integer.valueOf(50), plan.getBatchSize());
+    }
+
+    @Test
+    public void otherOperations() throws ParseException {
+        assertEquals(QueryPlan.Operation.COUNT, new QueryConverter("select count(*) from my_table").compile().getOperation());
+        assertEquals(QueryPlan.Operation.DISTINCT, new QueryConverter("select distinct column1 from my_table").compile().getOperation());
+        QueryPlan deletePlan = new QueryConverter("delete from my_table where value = 1").compile();
+        assertEquals(QueryPlan.Operation.DELETE, deletePlan.getOperation());
+        assertEquals(new Document("value", 1L), decode(deletePlan.getFilter()));
+        assertNull(deletePlan.getAllowDiskUse());
+    }
+
+    @Test
+    public void planOfUnmodifiableConverterIsReused() throws ParseException {
+        QueryConverterCache cache = QueryConverterCache.Builder.create().maximumSize(10).build();
+        QueryConverter cached = cache.get("select * from my_table where value = 1");
+        assertSame(cached.compile(), cached.compile());
+        QueryConverter queryConverter = new QueryConverter("select * from my_table where value = 1");
+        QueryPlan first = queryConverter.compile();
+        queryConverter.getMongoQuery().getQuery().put("value", 2L);
+        assertEquals(new Document("value", 1L), decode(first.getFilter()));
+        assertEquals(new Document("value", 2L), decode(queryConverter.compile().getFilter()));
+    }
+
+    @Test
+    public void unmodifiableConverterSharedBetweenThreads() throws Exception {
+        String sql = "select t.column1, count(*) as c from my_table as t where t.value > 1 group by t.column1";
+        final QueryConverter shared = new QueryConverter(sql).toUnmodifiable();
+        assertSame(shared, shared.toUnmodifiable());
+        final String expected = write(new QueryConverter(sql));
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                futures.add(executorService.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        shared.getMongoQuery().getQuery().put("value", 2L);
+                        return write(shared);
+                    }
+                }));
+            }
+            for (Future<String> future : futures) {
+                assertEquals(expected, future.get());
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void planDocumentsCanNotBeModified() throws ParseException {
+        new QueryConverter("select * from my_table where value = 1").compile().getFilter().put("value", new BsonInt64(2L));
+    }
+
+    private static String write(QueryConverter queryConverter) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        queryConverter.write(byteArrayOutputStream);
+        return byteArrayOutputStream.toString("UTF-8");
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import com.github.vincentrussell.query.mongodb.sql.converter.util.RegexTranslator;
+import com.github.vincentrussell.query.mongodb.sql.converter.util.SqlUtils;
+import com.google.common.cache.CacheStats;
+import org.bson.Document;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RegexTranslatorTest {
+
+    @Test
+    public void sameRegexAsTranslatingEveryTime() {
+        for (int i = 0; i < 2; i++) {
+            for (String like : Arrays.asList("start%", "%start%", "st_rt", "[a-c]%", "%[a-c]_[de]", "", "%", "a.b",
+                    "[]", "[a]]")) {
+                assertEquals(like, "^" + SqlUtils.replaceRegexCharacters(like) + "$", RegexTranslator.likeToRegex(like));
+            }
+        }
+    }
+
+    @Test
+    public void likeAndRegexMatchAreTranslatedOnce() throws ParseException {
+        String sql = "select * from my_table where value like 'translated once %' "
+                + "and regexMatch(column,'^validated once [0-9]+$', 'i') = true";
+        CacheStats before = RegexTranslator.getStats();
+        for (int i = 0; i < 3; i++) {
+            QueryConverter queryConverter = new QueryConverter(sql);
+            assertEquals(new Document("$and", Arrays.asList(
+                    new Document("value", new Document("$regex", "^translated once .*$")),
+                    new Document("column", new Document("$regex", "^validated once [0-9]+$").append("$options", "i")))),
+                    queryConverter.getMongoQuery().getQuery());
+        }
+        CacheStats stats = RegexTranslator.getStats().minus(before);
+        assertEquals(2, stats.missCount());
+        assertEquals(4, stats.hitCount());
+    }
+
+    @Test
+    public void invalidRegexIsRejectedEveryTime() {
+        String message = null;
+        for (int i = 0; i < 2; i++) {
+            try {
+                new QueryConverter("select * from my_table where regexMatch(column,'[unclosed') = true");
+                fail("expected ParseException");
+            } catch (ParseException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("Unclosed character class"));
+                assertTrue(message == null || message.equals(e.getMessage()));
+                message = e.getMessage();
+            }
+        }
+    }
+}
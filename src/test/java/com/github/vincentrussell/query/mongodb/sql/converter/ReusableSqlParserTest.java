@@ -0,0 +1,78 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import com.github.vincentrussell.query.mongodb.sql.converter.util.ReusableSqlParser;
+import net.sf.jsqlparser.parser.CCJSqlParser;
+import net.sf.jsqlparser.parser.StringProvider;
+import org.bson.Document;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class ReusableSqlParserTest {
+
+    @After
+    public void after() {
+        System.clearProperty(ReusableSqlParser.D_REUSE_SQL_PARSER);
+    }
+
+    @Test
+    public void sameParserIsReusedOnTheSameThread() throws Exception {
+        final CCJSqlParser parser = ReusableSqlParser.forInput(new StringProvider("select * from my_table"));
+        assertSame(parser, ReusableSqlParser.forInput(new StringProvider("select * from other_table")));
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            CCJSqlParser otherThreadParser = executorService.submit(new Callable<CCJSqlParser>() {
+                @Override
+                public CCJSqlParser call() {
+                    return ReusableSqlParser.forInput(new StringProvider("select * from my_table"));
+                }
+            }).get();
+            assertNotSame(parser, otherThreadParser);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void newParserWhenReuseIsDisabled() {
+        System.setProperty(ReusableSqlParser.D_REUSE_SQL_PARSER, "false");
+        assertNotSame(ReusableSqlParser.forInput(new StringProvider("select * from my_table")),
+                ReusableSqlParser.forInput(new StringProvider("select * from my_table")));
+    }
+
+    @Test
+    public void failedParseDoesNotAffectTheNextStatement() throws ParseException {
+        try {
+            new QueryConverter("select * from my_table where value == 1");
+            fail("expected ParseException");
+        } catch (ParseException e) {
+            assertEquals("unable to parse complete sql string. one reason for this is the use of double equals (==).",
+                    e.getMessage());
+        }
+        try {
+            new QueryConverter("select * from my_table where");
+            fail("expected ParseException");
+        } catch (ParseException e) {
+            // expected
+        }
+        assertEquals(new Document("value", 1L),
+                new QueryConverter("select * from my_table where value = 1").getMongoQuery().getQuery());
+        assertEquals(new Document("name", "a"),
+                new QueryConverter("select * from other_table where name = \"a\"").getMongoQuery().getQuery());
+    }
+
+    @Test
+    public void positionalParametersAreNumberedFromOneForEveryStatement() throws ParseException {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(2, QueryConverter.prepare("select * from my_table where a = ? and b = ?").getParameterCount());
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import com.google.common.collect.ImmutableMap;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SchemaInferenceTest {
+
+    private final InMemorySampler sampler = new InMemorySampler();
+
+    @Test
+    public void inferTypesOfDottedPaths() {
+        sampler.collections.put("my_table", Arrays.asList(
+                new Document("_id", new ObjectId()).append("value", "a").append("count", 1)
+                        .append("created", new Date()).append("active", true)
+                        .append("nested", new Document("score", 1.5).append("name", "n"))
+                        .append("tags", Arrays.asList("x", "y"))
+                        .append("items", Arrays.asList(new Document("qty", 2L), new Document("qty", 3))),
+                new Document("value", "b").append("count", 2L).append("mixed", "1").append("empty", null),
+                new Document("mixed", 1).append("nested", new Document("score", 2)).append("price", new Decimal128(1))
+                        .append("amount", new Decimal128(2)).append("uuid", UUID.randomUUID()),
+                new Document("amount", 3.5)));
+        SchemaInference schemaInference = SchemaInference.Builder.create(sampler).build();
+        assertEquals(ImmutableMap.<String, FieldType>builder()
+                .put("_id", FieldType.OBJECTID)
+                .put("value", FieldType.STRING)
+                .put("count", FieldType.NUMBER)
+                .put("created", FieldType.DATE)
+                .put("active", FieldType.BOOLEAN)
+                .put("nested.score", FieldType.NUMBER)
+                .put("nested.name", FieldType.STRING)
+                .put("tags", FieldType.STRING)
+                .put("items.qty", FieldType.NUMBER)
+                .put("price", FieldType.DECIMAL128)
+                .put("amount", FieldType.NUMBER)
+                .put("uuid", FieldType.UUID)
+                .build(), schemaInference.getFieldTypes("my_table"));
+        assertEquals(FieldType.NUMBER, schemaInference.getFieldTypeResolver("my_table").resolve("nested.score"));
+        assertNull(schemaInference.getFieldTypeResolver("my_table").resolve("mixed"));
+        assertEquals(ImmutableMap.of(), schemaInference.getFieldTypes("other_table"));
+    }
+
+    @Test
+    public void collectionsAreSampledOnceUntilTheyExpire() throws InterruptedException {
+        sampler.collections.put("my_table", Arrays.asList(new Document("value", "a")));
+        SchemaInference schemaInference = SchemaInference.Builder.create(sampler).sampleSize(5).build();
+        schemaInference.getFieldTypes("my_table");
+        schemaInference.getFieldTypes("my_table");
+        assertEquals(Arrays.asList("my_table:5"), sampler.calls);
+
+        sampler.collections.put("my_table", Arrays.asList(new Document("value", 1)));
+        schemaInference.invalidate("my_table");
+        assertEquals(ImmutableMap.of("value", FieldType.NUMBER), schemaInference.getFieldTypes("my_table"));
+
+        SchemaInference expiring = SchemaInference.Builder.create(sampler)
+                .expireAfterWrite(1, TimeUnit.MILLISECONDS).build();
+        expiring.getFieldTypes("my_table");
+        Thread.sleep(20);
+        expiring.getFieldTypes("my_table");
+        assertEquals(Arrays.asList("my_table:5", "my_table:5", "my_table:100", "my_table:100"), sampler.calls);
+    }
+
+    @Test
+    public void queryConverterUsesTheInferredTypes() throws ParseException {
+        sampler.collections.put("my_table", Arrays.asList(new Document("value", "a").append("count", 1)
+                .append("nested", new Document("active", false))));
+        SchemaInference schemaInference = SchemaInference.Builder.create(sampler).build();
+        QueryConverter queryConverter = new QueryConverter(
+                "select * from my_table where value = 1 and count = '5' and nested.active = 'true' and other = '2'",
+                schemaInference, FieldType.UNKNOWN);
+        assertEquals(new Document("$and", Arrays.asList(new Document("value", "1"), new Document("count", 5L),
+                new Document("nested.active", true), new Document("other", "2"))),
+                queryConverter.getMongoQuery().getQuery());
+        assertEquals(Arrays.asList("my_table:100"), sampler.calls);
+    }
+
+    @Test
+    public void joinedCollectionsAreNotTypedWithTheInferredTypes() throws ParseException {
+        sampler.collections.put("my_table", Arrays.asList(new Document("value", "a").append("count", 1)));
+        SchemaInference schemaInference = SchemaInference.Builder.create(sampler).build();
+        QueryConverter queryConverter = new QueryConverter("select t1.value from my_table as t1 inner join "
+                + "other_table as t2 on t1.id = t2.id where t1.count = '5' and t2.value = 1 and t2.count = '5'",
+                schemaInference, FieldType.UNKNOWN);
+        assertEquals(new Document("count", 5L), queryConverter.getMongoQuery().getQuery());
+        Document lookup = (Document) queryConverter.getMongoQuery().getJoinPipeline().get(0).get("$lookup");
+        Document match = (Document) ((List<?>) lookup.get("pipeline")).get(0);
+        assertEquals(new Document("$match", new Document("$and", Arrays.asList(
+                new Document("$expr", new Document("$eq", Arrays.asList("$$id", "$id"))),
+                new Document("value", 1L), new Document("count", "5")))), match);
+    }
+
+    @Test(expected = ParseException.class)
+    public void subselectInTheFromClauseCannotBeInferred() throws ParseException {
+        new QueryConverter("select * from (select * from my_table) as t where value = 1",
+                SchemaInference.Builder.create(sampler).build(), FieldType.UNKNOWN);
+    }
+
+    private static final class InMemorySampler implements DocumentSampler {
+        private final Map<String, List<Document>> collections = new HashMap<>();
+        private final List<String> calls = new ArrayList<>();
+
+        @Override
+        public Iterable<Document> sample(String collectionName, int sampleSize) {
+            calls.add(collectionName + ":" + sampleSize);
+            List<Document> documents = collections.get(collectionName);
+            if (documents == null) {
+                return new ArrayList<>();
+            }
+            return documents.subList(0, Math.min(sampleSize, documents.size()));
+        }
+    }
+}
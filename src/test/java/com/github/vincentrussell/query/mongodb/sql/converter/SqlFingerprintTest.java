@@ -0,0 +1,76 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class SqlFingerprintTest {
+
+    @Test
+    public void literalsAreReplaced() throws ParseException {
+        SqlFingerprint fingerprint = SqlFingerprint.of("select column1 from my_table where value = 1 and name = 'joe' and amount > -2.5");
+        assertEquals("SELECT column1 FROM my_table WHERE value = ? AND name = ? AND amount > ?", fingerprint.getShape());
+        assertEquals(Arrays.<Object>asList(1L, "joe", -2.5), fingerprint.getValues());
+    }
+
+    @Test
+    public void statementsThatOnlyDifferInLiteralsHaveTheSameFingerprint() throws ParseException {
+        SqlFingerprint first = SqlFingerprint.of("select * from my_table where value = 1 and name in ('a', 'b')");
+        SqlFingerprint second = SqlFingerprint.of("SELECT *\n  FROM my_table\n WHERE value = 2\n   AND name IN ('c', 'd', 'e');");
+        assertEquals(first, second);
+        assertEquals(first.getHash(), second.getHash());
+        assertEquals("SELECT * FROM my_table WHERE value = ? AND name IN (?)", first.getShape());
+        assertEquals(Arrays.<Object>asList(2L, "c", "d", "e"), second.getValues());
+    }
+
+    @Test
+    public void differentShapesHaveDifferentFingerprints() throws ParseException {
+        SqlFingerprint first = SqlFingerprint.of("select * from my_table where value = 1");
+        SqlFingerprint second = SqlFingerprint.of("select * from my_table where value > 1");
+        SqlFingerprint third = SqlFingerprint.of("select * from my_table where Value = 1");
+        assertNotEquals(first.getHash(), second.getHash());
+        assertNotEquals(first.getHash(), third.getHash());
+    }
+
+    @Test
+    public void limitAndOffset() throws ParseException {
+        SqlFingerprint fingerprint = SqlFingerprint.of("select * from my_table where value = 'a' order by value limit 10 offset 20");
+        assertEquals("SELECT * FROM my_table WHERE value = ? ORDER BY value LIMIT ? OFFSET ?", fingerprint.getShape());
+        assertEquals(Arrays.<Object>asList("a", 10L, 20L), fingerprint.getValues());
+        assertEquals(fingerprint, SqlFingerprint.of("select * from my_table where value = 'b' order by value limit 5 offset 0"));
+    }
+
+    @Test
+    public void limitWithOffsetAndCount() throws ParseException {
+        SqlFingerprint fingerprint = SqlFingerprint.of("select * from my_table where a = 1 limit 5, 10");
+        assertEquals("SELECT * FROM my_table WHERE a = ? LIMIT ?, ?", fingerprint.getShape());
+        assertEquals(Arrays.<Object>asList(1L, 5L, 10L), fingerprint.getValues());
+        assertEquals(fingerprint, SqlFingerprint.of("select * from my_table where a = 2 limit 6, 20"));
+        assertEquals(fingerprint.getHash(), SqlFingerprint.of("select * from my_table where a = 2 limit 6, 20").getHash());
+    }
+
+    @Test
+    public void functionArgumentsAndNonLiteralInLists() throws ParseException {
+        SqlFingerprint fingerprint = SqlFingerprint.of("select * from my_table where date(column, 'YYYY-MM-DD') >= '2016-12-12' "
+                + "and value in (1, other) and deleted is null");
+        assertEquals("SELECT * FROM my_table WHERE date(column, ?) >= ? AND value IN (?, other) AND deleted IS NULL",
+                fingerprint.getShape());
+        assertEquals(Arrays.<Object>asList("YYYY-MM-DD", "2016-12-12", 1L), fingerprint.getValues());
+    }
+
+    @Test
+    public void deleteAndJoin() throws ParseException {
+        assertEquals("DELETE FROM my_table WHERE value = ?", SqlFingerprint.of("delete from my_table where value = 5").getShape());
+        assertEquals("SELECT t1.column1 FROM my_table AS t1 INNER JOIN my_table2 AS t2 ON t1.column = t2.column WHERE t2.value = ?",
+                SqlFingerprint.of("select t1.column1 from my_table as t1 inner join my_table2 as t2 on t1.column = t2.column "
+                        + "where t2.value = 3").getShape());
+    }
+
+    @Test
+    public void noLiterals() throws ParseException {
+        assertEquals(Collections.emptyList(), SqlFingerprint.of("select count(*) from my_table").getValues());
+    }
+}
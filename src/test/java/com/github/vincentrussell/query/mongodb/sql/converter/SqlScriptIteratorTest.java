@@ -0,0 +1,103 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import com.google.common.collect.Lists;
+import org.bson.Document;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SqlScriptIteratorTest {
+
+    @Test
+    public void iteratesOverStatements() throws IOException {
+        try (SqlScriptIterator iterator = new SqlScriptIterator(new StringReader(
+                "select * from my_table where value = 1;\n"
+                + ";\n"
+                + "delete from my_table where value = 2;\n"
+                + "select column1 from my_table2 where value = 3"))) {
+            List<BatchConversionResult> results = Lists.newArrayList(iterator);
+            assertEquals(3, results.size());
+            assertEquals(new Document("value", 1L), results.get(0).getMongoQuery().getQuery());
+            assertEquals(SQLCommandType.DELETE, results.get(1).getMongoQuery().getSqlCommandType());
+            assertEquals("my_table2", results.get(2).getMongoQuery().getCollection());
+            assertEquals(2, results.get(2).getIndex());
+            assertEquals("SELECT column1 FROM my_table2 WHERE value = 3", results.get(2).getSql());
+        }
+    }
+
+    @Test
+    public void statementsThatCanNotBeConvertedDoNotStopTheScript() throws IOException {
+        try (SqlScriptIterator iterator = new SqlScriptIterator(
+                "select * from my_table where value = 1;"
+                + "select * from my_table where value = = 1;"
+                + "select * from (select * from my_table);"
+                + "select * from my_table where value = 4;",
+                Collections.<String, FieldType>emptyMap(), FieldType.STRING)) {
+            List<BatchConversionResult> results = Lists.newArrayList(iterator);
+            assertEquals(4, results.size());
+            assertTrue(results.get(0).isSuccess());
+            assertFalse(results.get(1).isSuccess());
+            assertNull(results.get(1).getSql());
+            assertFalse(results.get(2).isSuccess());
+            assertEquals("Subselect not supported", results.get(2).getParseException().getMessage());
+            assertEquals(new Document("value", "4"), results.get(3).getMongoQuery().getQuery());
+        }
+    }
+
+    @Test
+    public void unsupportedStatementDoesNotStopTheScript() throws IOException {
+        try (SqlScriptIterator iterator = new SqlScriptIterator(
+                "select a from my_table where value = 1 union select a from my_table2 where value = 2;"
+                + "select * from my_table where value = 3;")) {
+            List<BatchConversionResult> results = Lists.newArrayList(iterator);
+            assertEquals(2, results.size());
+            assertFalse(results.get(0).isSuccess());
+            assertNotNull(results.get(0).getParseException().getCause());
+            assertTrue(results.get(1).isSuccess());
+            assertEquals(new Document("value", 3L), results.get(1).getMongoQuery().getQuery());
+        }
+    }
+
+    @Test
+    public void largeScript() throws IOException {
+        final int statements = 20000;
+        Reader reader = new Reader() {
+            private int statement = 0;
+            private String current = "";
+            private int position = 0;
+
+            @Override
+            public int read(char[] cbuf, int off, int len) {
+                if (position == current.length()) {
+                    if (statement == statements) {
+                        return -1;
+                    }
+                    current = "select * from my_table where value = " + statement++ + ";\n";
+                    position = 0;
+                }
+                int count = Math.min(len, current.length() - position);
+                current.getChars(position, position + count, cbuf, off);
+                position += count;
+                return count;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        int count = 0;
+        try (SqlScriptIterator iterator = new SqlScriptIterator(reader)) {
+            while (iterator.hasNext()) {
+                assertEquals(new Document("value", (long) count), iterator.next().getMongoQuery().getQuery());
+                count++;
+            }
+        }
+        assertEquals(statements, count);
+    }
+}
@@ -0,0 +1,141 @@
+package com.github.vincentrussell.query.mongodb.sql.converter;
+
+import net.sf.jsqlparser.expression.BinaryExpression;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.schema.Column;
+import org.bson.Document;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WidePredicateTest {
+
+    private static final int TERMS = 10000;
+    private static final long SMALL_STACK_SIZE = 256 * 1024;
+    private static final long MAXIMUM_MILLIS = 10000;
+
+    @Test
+    public void mixedNestingIsFlattened() throws ParseException {
+        QueryConverter queryConverter = new QueryConverter("select * from my_table where a = 1 and (b = 2 and "
+                + "(c = 3 or d = 4 or (e = 5 or f = 6))) and ((g = 7))");
+        assertEquals(new Document("$and", Arrays.asList(new Document("a", 1L), new Document("b", 2L),
+                new Document("$or", Arrays.asList(new Document("c", 3L), new Document("d", 4L),
+                        new Document("e", 5L), new Document("f", 6L))),
+                new Document("g", 7L))), queryConverter.getMongoQuery().getQuery());
+    }
+
+    @Test
+    public void negatedParenthesesAreNotFlattened() throws ParseException {
+        QueryConverter queryConverter = new QueryConverter(
+                "select * from my_table where a = 1 or not (b = 2 or c = 3)");
+        assertEquals(new Document("$or", Arrays.asList(new Document("a", 1L), new Document("$nor", Arrays.asList(
+                new Document("$or", Arrays.asList(new Document("b", 2L), new Document("c", 3L))))))),
+                queryConverter.getMongoQuery().getQuery());
+    }
+
+    @Test
+    public void tenThousandOrsFromSql() throws Exception {
+        final StringBuilder sql = new StringBuilder("select * from my_table where ");
+        for (int i = 0; i < TERMS; i++) {
+            sql.append(i > 0 ? " or " : "").append("value = ").append(i);
+        }
+        Document query = onSmallStack(new ConversionTask() {
+            @Override
+            public Document convert() throws ParseException {
+                return new QueryConverter(sql.toString()).getMongoQuery().getQuery();
+            }
+        });
+        assertFlat(query, "$or", TERMS);
+    }
+
+    @Test
+    public void tenThousandAndsNestedToTheRight() throws Exception {
+        Expression expression = equalsTo(TERMS - 1);
+        for (int i = TERMS - 2; i >= 0; i--) {
+            expression = new AndExpression(equalsTo(i), new Parenthesis(expression));
+        }
+        assertFlat(convertOnSmallStack(expression), "$and", TERMS);
+    }
+
+    @Test
+    public void tenThousandAlternatingAndsAndOrs() throws Exception {
+        Expression expression = equalsTo(TERMS - 1);
+        for (int i = TERMS - 2; i >= 0; i--) {
+            BinaryExpression binaryExpression = i % 2 == 0 ? new AndExpression(equalsTo(i), expression)
+                    : new OrExpression(equalsTo(i), expression);
+            expression = new Parenthesis(binaryExpression);
+        }
+        Document query = convertOnSmallStack(expression);
+        for (int i = 0; i < TERMS - 1; i++) {
+            List<?> operands = (List<?>) query.get(i % 2 == 0 ? "$and" : "$or");
+            assertEquals(2, operands.size());
+            assertEquals(new Document("value", (long) i), operands.get(0));
+            query = (Document) operands.get(1);
+        }
+        assertEquals(new Document("value", (long) TERMS - 1), query);
+    }
+
+    private static void assertFlat(Document query, String key, int terms) {
+        List<?> operands = (List<?>) query.get(key);
+        assertEquals(terms, operands.size());
+        for (int i = 0; i < terms; i++) {
+            assertEquals(new Document("value", (long) i), operands.get(i));
+        }
+    }
+
+    private static Document convertOnSmallStack(final Expression expression) throws Exception {
+        return onSmallStack(new ConversionTask() {
+            @Override
+            public Document convert() throws ParseException {
+                return (Document) new WhereCauseProcessor(FieldType.UNKNOWN, Collections.<String, FieldType>emptyMap())
+                        .parseExpression(new Document(), expression, null);
+            }
+        });
+    }
+
+    private static Document onSmallStack(final ConversionTask task) throws Exception {
+        final AtomicReference<Document> result = new AtomicReference<>();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread thread = new Thread(null, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    result.set(task.convert());
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            }
+        }, "wide-predicate", SMALL_STACK_SIZE);
+        long start = System.currentTimeMillis();
+        thread.start();
+        thread.join();
+        long millis = System.currentTimeMillis() - start;
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertTrue(millis + " ms", millis < MAXIMUM_MILLIS);
+        return result.get();
+    }
+
+    private static EqualsTo equalsTo(int value) {
+        EqualsTo equalsTo = new EqualsTo();
+        equalsTo.setLeftExpression(new Column("value"));
+        equalsTo.setRightExpression(new LongValue(value));
+        return equalsTo;
+    }
+
+    private interface ConversionTask {
+        Document convert() throws ParseException;
+    }
+}